@@ -30,7 +30,7 @@
 
 // Must be equal to Constants.Dictionary.MAX_WORD_LENGTH in Java
 #define MAX_WORD_LENGTH 48
-// Must be equal to BinaryDictionary.MAX_RESULTS in Java
+// Must be equal to SuggestionsExchangeBuffer.MAX_RESULTS in Java
 #define MAX_RESULTS 18
 // Must be equal to ProximityInfo.MAX_PROXIMITY_CHARS_SIZE in Java
 #define MAX_PROXIMITY_CHARS_SIZE 16
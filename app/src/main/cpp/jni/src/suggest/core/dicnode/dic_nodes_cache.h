@@ -45,6 +45,14 @@ class DicNodesCache {
 
     AK_FORCE_INLINE virtual ~DicNodesCache() {}
 
+    // The size of the dic nodes allocated by the queues of a cache, which sizeof doesn't count.
+    static AK_FORCE_INLINE size_t getPooledDicNodesSizeInBytes(
+            const bool usesLargeCapacityCache) {
+        const int capacity = usesLargeCapacityCache ?
+                LARGE_PRIORITY_QUEUE_CAPACITY : SMALL_PRIORITY_QUEUE_CAPACITY;
+        return (3 * capacity + MAX_RESULTS) * (sizeof(DicNode) + sizeof(DicNode *));
+    }
+
     AK_FORCE_INLINE void reset(const int nextActiveSize, const int terminalSize) {
         mInputIndex = 0;
         mLastCachedInputIndex = 0;
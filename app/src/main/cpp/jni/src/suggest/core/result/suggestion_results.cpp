@@ -48,6 +48,27 @@ void SuggestionResults::outputSuggestions(JNIEnv *env, jintArray outSuggestionCo
             mWeightOfLangModelVsSpatialModel);
 }
 
+void SuggestionResults::outputSuggestions(int *const outSuggestionCount,
+        int *const outCodePoints, int *const outScores, int *const outSpaceIndices,
+        int *const outTypes, int *const outAutoCommitFirstWordConfidence) {
+    int outputIndex = 0;
+    while (!mSuggestedWords.empty()) {
+        const SuggestedWord &suggestedWord = mSuggestedWords.top();
+        JniDataUtils::outputCodePoints(outCodePoints + outputIndex * MAX_WORD_LENGTH,
+                MAX_WORD_LENGTH /* maxLength */, suggestedWord.getCodePoint(),
+                suggestedWord.getCodePointCount(), true /* needsNullTermination */);
+        outScores[outputIndex] = suggestedWord.getScore();
+        outSpaceIndices[outputIndex] = suggestedWord.getIndexToPartialCommit();
+        outTypes[outputIndex] = suggestedWord.getType();
+        if (mSuggestedWords.size() == 1) {
+            *outAutoCommitFirstWordConfidence = suggestedWord.getAutoCommitFirstWordConfidence();
+        }
+        ++outputIndex;
+        mSuggestedWords.pop();
+    }
+    *outSuggestionCount = outputIndex;
+}
+
 void SuggestionResults::addPrediction(const int *const codePoints, const int codePointCount,
         const int probability) {
     if (probability == NOT_A_PROBABILITY) {
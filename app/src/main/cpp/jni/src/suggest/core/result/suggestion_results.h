@@ -38,6 +38,11 @@ class SuggestionResults {
             jintArray outScoresArray, jintArray outSpaceIndicesArray, jintArray outTypesArray,
             jintArray outAutoCommitFirstWordConfidenceArray,
             jfloatArray outWeightOfLangModelVsSpatialModel);
+    // Same as above, but writes to memory that Java can read, like a direct buffer. The weight of
+    // the language model is not output, use getWeightOfLangModelVsSpatialModel().
+    void outputSuggestions(int *const outSuggestionCount, int *const outCodePoints,
+            int *const outScores, int *const outSpaceIndices, int *const outTypes,
+            int *const outAutoCommitFirstWordConfidence);
     void addPrediction(const int *const codePoints, const int codePointCount, const int score);
     void addSuggestion(const int *const codePoints, const int codePointCount,
             const int score, const int type, const int indexToPartialCommit,
@@ -49,6 +54,10 @@ class SuggestionResults {
         mWeightOfLangModelVsSpatialModel = weightOfLangModelVsSpatialModel;
     }
 
+    float getWeightOfLangModelVsSpatialModel() const {
+        return mWeightOfLangModelVsSpatialModel;
+    }
+
     int getSuggestionCount() const {
         return mSuggestedWords.size();
     }
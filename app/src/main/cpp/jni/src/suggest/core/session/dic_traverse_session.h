@@ -50,6 +50,13 @@ class DicTraverseSession {
         delete traverseSession;
     }
 
+    // The approximate memory held by a session created by getSessionInstance() for a dictionary
+    // of this size.
+    static AK_FORCE_INLINE size_t getSessionSizeInBytes(const jlong dictSize) {
+        return sizeof(DicTraverseSession) + DicNodesCache::getPooledDicNodesSizeInBytes(
+                dictSize >= DICTIONARY_SIZE_THRESHOLD_TO_USE_LARGE_CACHE_FOR_SUGGESTION);
+    }
+
     AK_FORCE_INLINE DicTraverseSession(JNIEnv *env, jstring localeStr, bool usesLargeCache)
             : mPrevWordIdCount(0), mProximityInfo(nullptr), mDictionary(nullptr),
               mSuggestOptions(nullptr), mDicNodesCache(usesLargeCache), mMultiBigramMap(),
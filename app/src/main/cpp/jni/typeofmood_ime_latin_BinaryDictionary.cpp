@@ -18,7 +18,8 @@
 
 #include "typeofmood_ime_latin_BinaryDictionary.h"
 
-#include <cstring> // for memset()
+#include <algorithm>
+#include <cstring> // for memcpy() and memset()
 #include <vector>
 
 #include "defines.h"
@@ -175,18 +176,48 @@ static int latinime_BinaryDictionary_getFormatVersion(JNIEnv *env, jclass clazz,
     return headerPolicy->getFormatVersionNumber();
 }
 
+// The layout of the buffer getSuggestionsNative exchanges with Java, in 32 bit slots. Must be
+// kept in sync with SuggestionsExchangeBuffer.java.
+static const int MAX_SUGGEST_OPTIONS_SIZE = 8;
+// Header slots.
+static const int INPUT_SIZE = 0;
+static const int INPUT_POINTER_CAPACITY = 1;
+static const int PREV_WORD_COUNT = 2;
+static const int SUGGEST_OPTIONS_SIZE = 3;
+static const int IN_OUT_WEIGHT_OF_LANG_MODEL_VS_SPATIAL_MODEL = 4;
+static const int OUTPUT_SUGGESTION_COUNT = 5;
+static const int OUTPUT_AUTO_COMMIT_FIRST_WORD_CONFIDENCE = 6;
+static const int HEADER_SIZE = 8;
+// Offsets of the arrays.
+static const int SUGGEST_OPTIONS = HEADER_SIZE;
+static const int PREV_WORD_CODE_POINT_COUNTS = SUGGEST_OPTIONS + MAX_SUGGEST_OPTIONS_SIZE;
+static const int PREV_WORD_IS_BEGINNING_OF_SENTENCE =
+        PREV_WORD_CODE_POINT_COUNTS + MAX_PREV_WORD_COUNT_FOR_N_GRAM;
+static const int PREV_WORD_CODE_POINTS =
+        PREV_WORD_IS_BEGINNING_OF_SENTENCE + MAX_PREV_WORD_COUNT_FOR_N_GRAM;
+static const int INPUT_CODE_POINTS =
+        PREV_WORD_CODE_POINTS + MAX_PREV_WORD_COUNT_FOR_N_GRAM * MAX_WORD_LENGTH;
+static const int OUTPUT_CODE_POINTS = INPUT_CODE_POINTS + MAX_WORD_LENGTH;
+static const int OUTPUT_SCORES = OUTPUT_CODE_POINTS + MAX_WORD_LENGTH * MAX_RESULTS;
+static const int OUTPUT_SPACE_INDICES = OUTPUT_SCORES + MAX_RESULTS;
+static const int OUTPUT_TYPES = OUTPUT_SPACE_INDICES + MAX_RESULTS;
+// Followed by the x coordinates, the y coordinates, the times and the pointer ids of the input,
+// each taking INPUT_POINTER_CAPACITY slots.
+static const int INPUT_POINTERS = OUTPUT_TYPES + MAX_RESULTS;
+static const int INPUT_POINTER_ARRAY_COUNT = 4;
+
 static void latinime_BinaryDictionary_getSuggestions(JNIEnv *env, jclass clazz, jlong dict,
-        jlong proximityInfo, jlong dicTraverseSession, jintArray xCoordinatesArray,
-        jintArray yCoordinatesArray, jintArray timesArray, jintArray pointerIdsArray,
-        jintArray inputCodePointsArray, jint inputSize, jintArray suggestOptions,
-        jobjectArray prevWordCodePointArrays, jbooleanArray isBeginningOfSentenceArray,
-        jint prevWordCount, jintArray outSuggestionCount, jintArray outCodePointsArray,
-        jintArray outScoresArray, jintArray outSpaceIndicesArray, jintArray outTypesArray,
-        jintArray outAutoCommitFirstWordConfidenceArray,
-        jfloatArray inOutWeightOfLangModelVsSpatialModel) {
+        jlong proximityInfo, jlong dicTraverseSession, jobject suggestionsExchangeBuffer) {
+    int *const buffer = static_cast<int *>(
+            env->GetDirectBufferAddress(suggestionsExchangeBuffer));
+    if (!buffer) {
+        AKLOGE("Suggestions exchange buffer is not a direct buffer.");
+        ASSERT(false);
+        return;
+    }
+    // Assign 0 to the suggestion count here in case of returning earlier in this method.
+    buffer[OUTPUT_SUGGESTION_COUNT] = 0;
     Dictionary *dictionary = reinterpret_cast<Dictionary *>(dict);
-    // Assign 0 to outSuggestionCount here in case of returning earlier in this method.
-    JniDataUtils::putIntToArray(env, outSuggestionCount, 0 /* index */, 0);
     if (!dictionary) {
         return;
     }
@@ -196,54 +227,43 @@ static void latinime_BinaryDictionary_getSuggestions(JNIEnv *env, jclass clazz,
     if (!traverseSession) {
         return;
     }
-    // Input values
-    int xCoordinates[inputSize];
-    int yCoordinates[inputSize];
-    int times[inputSize];
-    int pointerIds[inputSize];
-    const jsize inputCodePointsLength = env->GetArrayLength(inputCodePointsArray);
-    int inputCodePoints[inputCodePointsLength];
-    env->GetIntArrayRegion(xCoordinatesArray, 0, inputSize, xCoordinates);
-    env->GetIntArrayRegion(yCoordinatesArray, 0, inputSize, yCoordinates);
-    env->GetIntArrayRegion(timesArray, 0, inputSize, times);
-    env->GetIntArrayRegion(pointerIdsArray, 0, inputSize, pointerIds);
-    env->GetIntArrayRegion(inputCodePointsArray, 0, inputCodePointsLength, inputCodePoints);
-
-    const jsize numberOfOptions = env->GetArrayLength(suggestOptions);
-    int options[numberOfOptions];
-    env->GetIntArrayRegion(suggestOptions, 0, numberOfOptions, options);
-    SuggestOptions givenSuggestOptions(options, numberOfOptions);
-
-    // Output values
-    /* By the way, let's check the output array length here to make sure */
-    const jsize outputCodePointsLength = env->GetArrayLength(outCodePointsArray);
-    if (outputCodePointsLength != (MAX_WORD_LENGTH * MAX_RESULTS)) {
-        AKLOGE("Invalid outputCodePointsLength: %d", outputCodePointsLength);
-        ASSERT(false);
-        return;
-    }
-    const jsize scoresLength = env->GetArrayLength(outScoresArray);
-    if (scoresLength != MAX_RESULTS) {
-        AKLOGE("Invalid scoresLength: %d", scoresLength);
-        ASSERT(false);
-        return;
-    }
-    const jsize outputAutoCommitFirstWordConfidenceLength =
-            env->GetArrayLength(outAutoCommitFirstWordConfidenceArray);
-    ASSERT(outputAutoCommitFirstWordConfidenceLength == 1);
-    if (outputAutoCommitFirstWordConfidenceLength != 1) {
-        // We only use the first result, as obviously we will only ever autocommit the first one
-        AKLOGE("Invalid outputAutoCommitFirstWordConfidenceLength: %d",
-                outputAutoCommitFirstWordConfidenceLength);
+    /* By the way, let's check the buffer size here to make sure */
+    const int inputSize = buffer[INPUT_SIZE];
+    const int inputPointerCapacity = buffer[INPUT_POINTER_CAPACITY];
+    const jlong bufferSize = env->GetDirectBufferCapacity(suggestionsExchangeBuffer);
+    if (inputSize < 0 || inputSize > inputPointerCapacity || bufferSize
+            < static_cast<jlong>(INPUT_POINTERS + INPUT_POINTER_ARRAY_COUNT * inputPointerCapacity)
+                    * static_cast<jlong>(sizeof(int))) {
+        AKLOGE("Invalid suggestions exchange buffer. inputSize: %d, capacity: %d, size: %lld",
+                inputSize, inputPointerCapacity, static_cast<long long>(bufferSize));
         ASSERT(false);
         return;
     }
+    // Input values
+    int *const xCoordinates = buffer + INPUT_POINTERS;
+    int *const yCoordinates = xCoordinates + inputPointerCapacity;
+    int *const times = yCoordinates + inputPointerCapacity;
+    int *const pointerIds = times + inputPointerCapacity;
+    int *const inputCodePoints = buffer + INPUT_CODE_POINTS;
+    SuggestOptions givenSuggestOptions(buffer + SUGGEST_OPTIONS,
+            std::min(buffer[SUGGEST_OPTIONS_SIZE], MAX_SUGGEST_OPTIONS_SIZE));
     float weightOfLangModelVsSpatialModel;
-    env->GetFloatArrayRegion(inOutWeightOfLangModelVsSpatialModel, 0, 1 /* len */,
-            &weightOfLangModelVsSpatialModel);
+    memcpy(&weightOfLangModelVsSpatialModel, buffer + IN_OUT_WEIGHT_OF_LANG_MODEL_VS_SPATIAL_MODEL,
+            sizeof(weightOfLangModelVsSpatialModel));
+    const size_t prevWordCount = static_cast<size_t>(std::max(0,
+            std::min(buffer[PREV_WORD_COUNT], MAX_PREV_WORD_COUNT_FOR_N_GRAM)));
+    int prevWordCodePointCount[MAX_PREV_WORD_COUNT_FOR_N_GRAM];
+    bool isBeginningOfSentence[MAX_PREV_WORD_COUNT_FOR_N_GRAM];
+    for (size_t i = 0; i < prevWordCount; ++i) {
+        const int codePointCount = buffer[PREV_WORD_CODE_POINT_COUNTS + i];
+        prevWordCodePointCount[i] =
+                (codePointCount < 0 || codePointCount > MAX_WORD_LENGTH) ? 0 : codePointCount;
+        isBeginningOfSentence[i] = buffer[PREV_WORD_IS_BEGINNING_OF_SENTENCE + i] != 0;
+    }
     SuggestionResults suggestionResults(MAX_RESULTS);
-    const NgramContext ngramContext = JniDataUtils::constructNgramContext(env,
-            prevWordCodePointArrays, isBeginningOfSentenceArray, prevWordCount);
+    const NgramContext ngramContext(
+            reinterpret_cast<const int (*)[MAX_WORD_LENGTH]>(buffer + PREV_WORD_CODE_POINTS),
+            prevWordCodePointCount, isBeginningOfSentence, prevWordCount);
     if (givenSuggestOptions.isGesture() || inputSize > 0) {
         // TODO: Use SuggestionResults to return suggestions.
         dictionary->getSuggestions(pInfo, traverseSession, xCoordinates, yCoordinates,
@@ -255,9 +275,12 @@ static void latinime_BinaryDictionary_getSuggestions(JNIEnv *env, jclass clazz,
     if (DEBUG_DICT) {
         suggestionResults.dumpSuggestions();
     }
-    suggestionResults.outputSuggestions(env, outSuggestionCount, outCodePointsArray,
-            outScoresArray, outSpaceIndicesArray, outTypesArray,
-            outAutoCommitFirstWordConfidenceArray, inOutWeightOfLangModelVsSpatialModel);
+    suggestionResults.outputSuggestions(buffer + OUTPUT_SUGGESTION_COUNT,
+            buffer + OUTPUT_CODE_POINTS, buffer + OUTPUT_SCORES, buffer + OUTPUT_SPACE_INDICES,
+            buffer + OUTPUT_TYPES, buffer + OUTPUT_AUTO_COMMIT_FIRST_WORD_CONFIDENCE);
+    weightOfLangModelVsSpatialModel = suggestionResults.getWeightOfLangModelVsSpatialModel();
+    memcpy(buffer + IN_OUT_WEIGHT_OF_LANG_MODEL_VS_SPATIAL_MODEL, &weightOfLangModelVsSpatialModel,
+            sizeof(weightOfLangModelVsSpatialModel));
 }
 
 static jint latinime_BinaryDictionary_getProbability(JNIEnv *env, jclass clazz, jlong dict,
@@ -270,6 +293,35 @@ static jint latinime_BinaryDictionary_getProbability(JNIEnv *env, jclass clazz,
     return dictionary->getProbability(CodePointArrayView(codePoints, codePointCount));
 }
 
+static void latinime_BinaryDictionary_getProbabilities(JNIEnv *env, jclass clazz, jlong dict,
+        jintArray codePointsArray, jintArray codePointCountsArray, jint wordCount,
+        jintArray outProbabilitiesArray) {
+    Dictionary *dictionary = reinterpret_cast<Dictionary *>(dict);
+    if (wordCount <= 0) return;
+    std::vector<int> probabilities(wordCount, NOT_A_PROBABILITY);
+    if (dictionary) {
+        const jsize codePointCount = env->GetArrayLength(codePointsArray);
+        std::vector<int> codePoints(codePointCount);
+        std::vector<int> codePointCounts(wordCount);
+        env->GetIntArrayRegion(codePointsArray, 0, codePointCount, codePoints.data());
+        env->GetIntArrayRegion(codePointCountsArray, 0, wordCount, codePointCounts.data());
+        int start = 0;
+        for (int i = 0; i < wordCount; ++i) {
+            const int wordCodePointCount = codePointCounts[i];
+            if (wordCodePointCount < 0 || start + wordCodePointCount > codePointCount) {
+                AKLOGE("Invalid code point count: %d, start: %d, total: %d",
+                        wordCodePointCount, start, codePointCount);
+                ASSERT(false);
+                break;
+            }
+            probabilities[i] = dictionary->getProbability(
+                    CodePointArrayView(codePoints.data() + start, wordCodePointCount));
+            start += wordCodePointCount;
+        }
+    }
+    env->SetIntArrayRegion(outProbabilitiesArray, 0, wordCount, probabilities.data());
+}
+
 static jint latinime_BinaryDictionary_getMaxProbabilityOfExactMatches(
         JNIEnv *env, jclass clazz, jlong dict, jintArray word) {
     Dictionary *dictionary = reinterpret_cast<Dictionary *>(dict);
@@ -325,6 +377,165 @@ static jint latinime_BinaryDictionary_getNextWord(JNIEnv *env, jclass clazz,
     return nextToken;
 }
 
+// The layout of the buffer getWordPropertiesNative fills, in 32 bit slots. Must be kept in sync
+// with WordPropertiesExchangeBuffer.java.
+// Header slots.
+static const int WORD_PROPERTY_BUFFER_SLOT_COUNT = 0;
+static const int OUTPUT_WORD_PROPERTY_COUNT = 1;
+static const int OUTPUT_WORD_PROPERTY_END = 2;
+static const int OUTPUT_SKIPPED_WORD_CODE_POINT_COUNT = 3;
+static const int OUTPUT_SKIPPED_WORD_IS_BEGINNING_OF_SENTENCE = 4;
+static const int WORD_PROPERTY_HEADER_SIZE = 8;
+// Offsets of the arrays.
+static const int OUTPUT_SKIPPED_WORD_CODE_POINTS = WORD_PROPERTY_HEADER_SIZE;
+// Followed by the word properties, up to the end of the buffer.
+static const int OUTPUT_WORD_PROPERTIES = OUTPUT_SKIPPED_WORD_CODE_POINTS + MAX_WORD_LENGTH;
+// Flags of a word property.
+static const int WORD_PROPERTY_FLAG_IS_NOT_A_WORD = 0x1;
+static const int WORD_PROPERTY_FLAG_IS_POSSIBLY_OFFENSIVE = 0x2;
+static const int WORD_PROPERTY_FLAG_HAS_NGRAMS = 0x4;
+static const int WORD_PROPERTY_FLAG_IS_BEGINNING_OF_SENTENCE = 0x8;
+// The probability, the timestamp, the level and the count.
+static const int WORD_PROPERTY_PROBABILITY_INFO_SIZE = 4;
+
+static bool outputCodePointsToWordPropertyBuffer(int *const buffer, const int end, int *const pos,
+        const int *const codePoints, const int codePointCount) {
+    // The code point count, then the code points.
+    if (*pos + 1 + codePointCount > end) {
+        return false;
+    }
+    buffer[*pos] = JniDataUtils::outputCodePoints(buffer + *pos + 1, codePointCount,
+            codePoints, codePointCount, false /* needsNullTermination */);
+    *pos += 1 + buffer[*pos];
+    return true;
+}
+
+static bool outputHistoricalInfoToWordPropertyBuffer(int *const buffer, const int end,
+        int *const pos, const int probability, const HistoricalInfo &historicalInfo) {
+    if (*pos + WORD_PROPERTY_PROBABILITY_INFO_SIZE > end) {
+        return false;
+    }
+    buffer[(*pos)++] = probability;
+    buffer[(*pos)++] = historicalInfo.getTimestamp();
+    buffer[(*pos)++] = historicalInfo.getLevel();
+    buffer[(*pos)++] = historicalInfo.getCount();
+    return true;
+}
+
+// Outputs a word property as laid out in WordPropertiesExchangeBuffer.java. Returns false if it
+// does not fit before the end, in which case the slots from pos on are garbage.
+static bool outputWordPropertyToBuffer(int *const buffer, const int end, int *const pos,
+        const WordProperty &wordProperty) {
+    const CodePointArrayView codePoints = wordProperty.getCodePoints();
+    if (!outputCodePointsToWordPropertyBuffer(buffer, end, pos, codePoints.data(),
+            codePoints.size())) {
+        return false;
+    }
+    const UnigramProperty &unigramProperty = wordProperty.getUnigramProperty();
+    const std::vector<NgramProperty> &ngrams = wordProperty.getNgramProperties();
+    // The flags, the probability info and the n-gram count.
+    if (*pos + 2 + WORD_PROPERTY_PROBABILITY_INFO_SIZE > end) {
+        return false;
+    }
+    buffer[(*pos)++] = (unigramProperty.isNotAWord() ? WORD_PROPERTY_FLAG_IS_NOT_A_WORD : 0)
+            | (unigramProperty.isPossiblyOffensive()
+                    ? WORD_PROPERTY_FLAG_IS_POSSIBLY_OFFENSIVE : 0)
+            | (ngrams.empty() ? 0 : WORD_PROPERTY_FLAG_HAS_NGRAMS)
+            | (unigramProperty.representsBeginningOfSentence()
+                    ? WORD_PROPERTY_FLAG_IS_BEGINNING_OF_SENTENCE : 0);
+    outputHistoricalInfoToWordPropertyBuffer(buffer, end, pos, unigramProperty.getProbability(),
+            unigramProperty.getHistoricalInfo());
+    buffer[(*pos)++] = static_cast<int>(ngrams.size());
+    for (const auto &ngramProperty : ngrams) {
+        const NgramContext *const ngramContext = ngramProperty.getNgramContext();
+        if (*pos + 1 > end) {
+            return false;
+        }
+        buffer[(*pos)++] = static_cast<int>(ngramContext->getPrevWordCount());
+        for (size_t i = 0; i < ngramContext->getPrevWordCount(); ++i) {
+            if (*pos + 1 > end) {
+                return false;
+            }
+            buffer[(*pos)++] = ngramContext->isNthPrevWordBeginningOfSentence(i + 1) ? 1 : 0;
+            const CodePointArrayView prevWordCodePoints =
+                    ngramContext->getNthPrevWordCodePoints(i + 1);
+            if (!outputCodePointsToWordPropertyBuffer(buffer, end, pos, prevWordCodePoints.data(),
+                    prevWordCodePoints.size())) {
+                return false;
+            }
+        }
+        const std::vector<int> *const targetCodePoints = ngramProperty.getTargetCodePoints();
+        if (!outputCodePointsToWordPropertyBuffer(buffer, end, pos, targetCodePoints->data(),
+                targetCodePoints->size())
+                || !outputHistoricalInfoToWordPropertyBuffer(buffer, end, pos,
+                        ngramProperty.getProbability(), ngramProperty.getHistoricalInfo())) {
+            return false;
+        }
+    }
+    return true;
+}
+
+// Method to iterate all words in the dictionary with their properties, many words at a time.
+// Starts from the word of the token, and fills the direct buffer with the properties of as many
+// words as it can hold. Words whose property does not fit are not output: the first one is
+// returned as the skipped word instead, and the iteration stops there. This method returns the
+// token of the word after the last one returned, or 0 when there is no more word.
+static jint latinime_BinaryDictionary_getWordProperties(JNIEnv *env, jclass clazz, jlong dict,
+        jint token, jobject wordPropertiesExchangeBuffer) {
+    int *const buffer = static_cast<int *>(
+            env->GetDirectBufferAddress(wordPropertiesExchangeBuffer));
+    if (!buffer) {
+        AKLOGE("Word properties exchange buffer is not a direct buffer.");
+        ASSERT(false);
+        return 0;
+    }
+    buffer[OUTPUT_WORD_PROPERTY_COUNT] = 0;
+    buffer[OUTPUT_WORD_PROPERTY_END] = OUTPUT_WORD_PROPERTIES;
+    buffer[OUTPUT_SKIPPED_WORD_CODE_POINT_COUNT] = -1;
+    Dictionary *dictionary = reinterpret_cast<Dictionary *>(dict);
+    if (!dictionary) return 0;
+    const int end = buffer[WORD_PROPERTY_BUFFER_SLOT_COUNT];
+    const jlong bufferSize = env->GetDirectBufferCapacity(wordPropertiesExchangeBuffer);
+    if (end < OUTPUT_WORD_PROPERTIES
+            || static_cast<jlong>(end) * static_cast<jlong>(sizeof(int)) > bufferSize) {
+        AKLOGE("Invalid word properties exchange buffer. slots: %d, size: %lld", end,
+                static_cast<long long>(bufferSize));
+        ASSERT(false);
+        return 0;
+    }
+    int wordCodePoints[MAX_WORD_LENGTH];
+    int wordCodePointCount = 0;
+    int wordPropertyCount = 0;
+    int pos = OUTPUT_WORD_PROPERTIES;
+    int nextToken = token;
+    do {
+        nextToken = dictionary->getNextWordAndNextToken(nextToken, wordCodePoints,
+                &wordCodePointCount);
+        if (wordCodePointCount <= 0) {
+            // The dictionary is empty.
+            continue;
+        }
+        const WordProperty wordProperty = dictionary->getWordProperty(
+                CodePointArrayView(wordCodePoints, wordCodePointCount));
+        const int start = pos;
+        if (!outputWordPropertyToBuffer(buffer, end, &pos, wordProperty)) {
+            // The word can't be fetched again from the dictionary once it has been iterated, so
+            // it is returned for the caller to get its property by itself.
+            pos = start;
+            buffer[OUTPUT_SKIPPED_WORD_IS_BEGINNING_OF_SENTENCE] =
+                    wordCodePoints[0] == CODE_POINT_BEGINNING_OF_SENTENCE ? 1 : 0;
+            buffer[OUTPUT_SKIPPED_WORD_CODE_POINT_COUNT] = JniDataUtils::outputCodePoints(
+                    buffer + OUTPUT_SKIPPED_WORD_CODE_POINTS, MAX_WORD_LENGTH, wordCodePoints,
+                    wordCodePointCount, false /* needsNullTermination */);
+            break;
+        }
+        ++wordPropertyCount;
+    } while (nextToken != 0);
+    buffer[OUTPUT_WORD_PROPERTY_COUNT] = wordPropertyCount;
+    buffer[OUTPUT_WORD_PROPERTY_END] = pos;
+    return nextToken;
+}
+
 static void latinime_BinaryDictionary_getWordProperty(JNIEnv *env, jclass clazz,
         jlong dict, jintArray word, jboolean isBeginningOfSentence, jintArray outCodePoints,
         jbooleanArray outFlags, jintArray outProbabilityInfo, jobject outNgramPrevWordsArray,
@@ -659,7 +870,7 @@ static const JNINativeMethod sMethods[] = {
     },
     {
         const_cast<char *>("getSuggestionsNative"),
-        const_cast<char *>("(JJJ[I[I[I[I[II[I[[I[ZI[I[I[I[I[I[I[F)V"),
+        const_cast<char *>("(JJJLjava/nio/ByteBuffer;)V"),
         reinterpret_cast<void *>(latinime_BinaryDictionary_getSuggestions)
     },
     {
@@ -667,6 +878,11 @@ static const JNINativeMethod sMethods[] = {
         const_cast<char *>("(J[I)I"),
         reinterpret_cast<void *>(latinime_BinaryDictionary_getProbability)
     },
+    {
+        const_cast<char *>("getProbabilitiesNative"),
+        const_cast<char *>("(J[I[II[I)V"),
+        reinterpret_cast<void *>(latinime_BinaryDictionary_getProbabilities)
+    },
     {
         const_cast<char *>("getMaxProbabilityOfExactMatchesNative"),
         const_cast<char *>("(J[I)I"),
@@ -689,6 +905,11 @@ static const JNINativeMethod sMethods[] = {
         const_cast<char *>("(JI[I[Z)I"),
         reinterpret_cast<void *>(latinime_BinaryDictionary_getNextWord)
     },
+    {
+        const_cast<char *>("getWordPropertiesNative"),
+        const_cast<char *>("(JILjava/nio/ByteBuffer;)I"),
+        reinterpret_cast<void *>(latinime_BinaryDictionary_getWordProperties)
+    },
     {
         const_cast<char *>("addUnigramEntryNative"),
         const_cast<char *>("(J[II[IIZZZI)Z"),
@@ -55,6 +55,10 @@ static void latinime_releaseDicTraverseSession(JNIEnv *env, jclass clazz, jlong
     DicTraverseSession::releaseSessionInstance(ts);
 }
 
+static jlong latinime_getDicTraverseSessionSize(JNIEnv *env, jclass clazz, jlong dictSize) {
+    return static_cast<jlong>(DicTraverseSession::getSessionSizeInBytes(dictSize));
+}
+
 static const JNINativeMethod sMethods[] = {
     {
         const_cast<char *>("setDicTraverseSessionNative"),
@@ -70,6 +74,11 @@ static const JNINativeMethod sMethods[] = {
         const_cast<char *>("releaseDicTraverseSessionNative"),
         const_cast<char *>("(J)V"),
         reinterpret_cast<void *>(latinime_releaseDicTraverseSession)
+    },
+    {
+        const_cast<char *>("getDicTraverseSessionSizeNative"),
+        const_cast<char *>("(J)J"),
+        reinterpret_cast<void *>(latinime_getDicTraverseSessionSize)
     }
 };
 
@@ -30,6 +30,13 @@ public final class EditorInfoCompatUtils {
             null /* receiver */, null /* defaultValue */, FIELD_IME_FLAG_FORCE_ASCII);
     private static final Field FIELD_HINT_LOCALES = CompatUtils.getField(
             EditorInfo.class, "hintLocales");
+    // Note that EditorInfo.IME_FLAG_NO_PERSONALIZED_LEARNING has been introduced
+    // in API level 26 (Build.VERSION_CODES.O).
+    private static final Field FIELD_IME_FLAG_NO_PERSONALIZED_LEARNING = CompatUtils.getField(
+            EditorInfo.class, "IME_FLAG_NO_PERSONALIZED_LEARNING");
+    private static final Integer OBJ_IME_FLAG_NO_PERSONALIZED_LEARNING =
+            (Integer) CompatUtils.getFieldValue(null /* receiver */, null /* defaultValue */,
+                    FIELD_IME_FLAG_NO_PERSONALIZED_LEARNING);
 
     private EditorInfoCompatUtils() {
         // This utility class is not publicly instantiable.
@@ -40,6 +47,11 @@ public final class EditorInfoCompatUtils {
         return (imeOptions & OBJ_IME_FLAG_FORCE_ASCII) != 0;
     }
 
+    public static boolean hasFlagNoPersonalizedLearning(final int imeOptions) {
+        if (OBJ_IME_FLAG_NO_PERSONALIZED_LEARNING == null) return false;
+        return (imeOptions & OBJ_IME_FLAG_NO_PERSONALIZED_LEARNING) != 0;
+    }
+
     public static String imeActionName(final int imeOptions) {
         final int actionId = imeOptions & EditorInfo.IME_MASK_ACTION;
         switch (actionId) {
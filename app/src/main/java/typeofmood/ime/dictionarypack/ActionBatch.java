@@ -22,6 +22,7 @@ import android.content.Context;
 import android.content.res.Resources;
 import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
+import android.os.SystemClock;
 import android.text.TextUtils;
 import android.util.Log;
 
@@ -31,7 +32,9 @@ import typeofmood.ime.latin.common.LocaleUtils;
 import typeofmood.ime.latin.utils.ApplicationUtils;
 import typeofmood.ime.latin.utils.DebugLogUtils;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Queue;
 
 /**
@@ -75,6 +78,8 @@ InstallAfterDownloadAction   |               |
   is available and we should forget about the old one.
 */
 public final class ActionBatch {
+    private static final String TAG = "DictionaryProvider:" + ActionBatch.class.getSimpleName();
+
     /**
      * A piece of update.
      *
@@ -86,23 +91,54 @@ public final class ActionBatch {
          * @param context the context to get system services, resources, databases
          */
         void execute(final Context context);
+
+        /**
+         * @return the id of the client whose metadata database this action works on.
+         */
+        String getClientId();
+    }
+
+    /**
+     * An action that has side effects outside of the metadata database.
+     *
+     * When run as part of a batch, all the database changes of the batch are made in a single
+     * transaction. Side effects, like calls to the DownloadManager, file deletions or installing
+     * a dictionary file through the content provider, are run in
+     * {@link #executeAfterCommit(Context)} once the transaction has been committed, so that they
+     * neither hold the transaction open nor happen for changes that are not committed.
+     */
+    public interface ActionWithSideEffects extends Action {
+        /**
+         * Execute the side effects of this action, after the database has been committed.
+         * @param context the context to get system services, resources, databases
+         */
+        void executeAfterCommit(final Context context);
     }
 
     /**
      * An action that starts downloading an available word list.
      */
-    public static final class StartDownloadAction implements Action {
+    public static final class StartDownloadAction implements ActionWithSideEffects {
         static final String TAG = "DictionaryProvider:" + StartDownloadAction.class.getSimpleName();
 
         private final String mClientId;
         // The data to download. May not be null.
         final WordListMetadata mWordList;
+        // The download to cancel after commit, if the word list was still downloading.
+        private long mDownloadIdToCancel = UpdateHandler.NOT_AN_ID;
+        // Whether the download should be started after commit.
+        private boolean mShouldDownload = false;
         public StartDownloadAction(final String clientId, final WordListMetadata wordList) {
             DebugLogUtils.l("New download action for client ", clientId, " : ", wordList);
             mClientId = clientId;
             mWordList = wordList;
         }
 
+        @Override
+        public String getClientId() {
+            return mClientId;
+        }
+
         @Override
         public void execute(final Context context) {
             if (null == mWordList) { // This should never happen
@@ -114,11 +150,10 @@ public final class ActionBatch {
             final ContentValues values = MetadataDbHelper.getContentValuesByWordListId(db,
                     mWordList.mId, mWordList.mVersion);
             final int status = values.getAsInteger(MetadataDbHelper.STATUS_COLUMN);
-            final DownloadManagerWrapper manager = new DownloadManagerWrapper(context);
             if (MetadataDbHelper.STATUS_DOWNLOADING == status) {
                 // The word list is still downloading. Cancel the download and revert the
                 // word list status to "available".
-                manager.remove(values.getAsLong(MetadataDbHelper.PENDINGID_COLUMN));
+                mDownloadIdToCancel = values.getAsLong(MetadataDbHelper.PENDINGID_COLUMN);
                 MetadataDbHelper.markEntryAsAvailable(db, mWordList.mId, mWordList.mVersion);
             } else if (MetadataDbHelper.STATUS_AVAILABLE != status
                     && MetadataDbHelper.STATUS_RETRYING != status) {
@@ -126,6 +161,16 @@ public final class ActionBatch {
                 Log.e(TAG, "Unexpected state of the word list '" + mWordList.mId + "' : " + status
                         + " for an upgrade action. Fall back to download.");
             }
+            mShouldDownload = true;
+        }
+
+        @Override
+        public void executeAfterCommit(final Context context) {
+            if (!mShouldDownload) return;
+            final DownloadManagerWrapper manager = new DownloadManagerWrapper(context);
+            if (UpdateHandler.NOT_AN_ID != mDownloadIdToCancel) {
+                manager.remove(mDownloadIdToCancel);
+            }
             // Download it.
             DebugLogUtils.l("Upgrade word list, downloading", mWordList.mRemoteFilename);
 
@@ -145,6 +190,8 @@ public final class ActionBatch {
             request.setVisibleInDownloadsUi(
                     res.getBoolean(R.bool.dict_downloads_visible_in_download_UI));
 
+            // This commits on its own, since it runs after the transaction of the batch.
+            final SQLiteDatabase db = MetadataDbHelper.getDb(context, mClientId);
             final long downloadId = UpdateHandler.registerDownloadRequest(manager, request, db,
                     mWordList.mId, mWordList.mVersion);
             Log.i(TAG, String.format("Starting the dictionary download with version:"
@@ -157,12 +204,16 @@ public final class ActionBatch {
     /**
      * An action that updates the database to reflect the status of a newly installed word list.
      */
-    public static final class InstallAfterDownloadAction implements Action {
+    public static final class InstallAfterDownloadAction implements ActionWithSideEffects {
         static final String TAG = "DictionaryProvider:"
                 + InstallAfterDownloadAction.class.getSimpleName();
         private final String mClientId;
         // The state to upgrade from. May not be null.
         final ContentValues mWordListValues;
+        // Whether the database has been updated and the file should be installed after commit.
+        private boolean mShouldInstall = false;
+        // The files of the old version of the word list, to delete after commit.
+        private List<String> mFilenamesToDelete;
 
         public InstallAfterDownloadAction(final String clientId,
                 final ContentValues wordListValues) {
@@ -172,6 +223,11 @@ public final class ActionBatch {
             mWordListValues = wordListValues;
         }
 
+        @Override
+        public String getClientId() {
+            return mClientId;
+        }
+
         @Override
         public void execute(final Context context) {
             if (null == mWordListValues) {
@@ -188,8 +244,15 @@ public final class ActionBatch {
 
             DebugLogUtils.l("Setting word list as installed");
             final SQLiteDatabase db = MetadataDbHelper.getDb(context, mClientId);
-            MetadataDbHelper.markEntryAsFinishedDownloadingAndInstalled(db, mWordListValues);
+            mFilenamesToDelete =
+                    MetadataDbHelper.markEntryAsFinishedDownloadingAndInstalled(db, mWordListValues);
+            mShouldInstall = true;
+        }
 
+        @Override
+        public void executeAfterCommit(final Context context) {
+            if (!mShouldInstall) return;
+            MetadataDbHelper.deleteWordListFiles(mFilenamesToDelete);
             // Install the downloaded file by un-compressing and moving it to the staging
             // directory. Ideally, we should do this before updating the DB, but the
             // installDictToStagingFromContentProvider() relies on the db being updated.
@@ -214,6 +277,11 @@ public final class ActionBatch {
             mWordList = wordList;
         }
 
+        @Override
+        public String getClientId() {
+            return mClientId;
+        }
+
         @Override
         public void execute(final Context context) {
             if (null == mWordList) {
@@ -238,17 +306,24 @@ public final class ActionBatch {
     /**
      * An action that disables a word list.
      */
-    public static final class DisableAction implements Action {
+    public static final class DisableAction implements ActionWithSideEffects {
         static final String TAG = "DictionaryProvider:" + DisableAction.class.getSimpleName();
         private final String mClientId;
         // The word list to disable. May not be null.
         final WordListMetadata mWordList;
+        // The download to cancel after commit, if the word list was still downloading.
+        private long mDownloadIdToCancel = UpdateHandler.NOT_AN_ID;
         public DisableAction(final String clientId, final WordListMetadata wordlist) {
             DebugLogUtils.l("New Disable action for client ", clientId, " : ", wordlist);
             mClientId = clientId;
             mWordList = wordlist;
         }
 
+        @Override
+        public String getClientId() {
+            return mClientId;
+        }
+
         @Override
         public void execute(final Context context) {
             if (null == mWordList) { // This should never happen
@@ -270,11 +345,17 @@ public final class ActionBatch {
                 }
                 // The word list is still downloading. Cancel the download and revert the
                 // word list status to "available".
-                final DownloadManagerWrapper manager = new DownloadManagerWrapper(context);
-                manager.remove(values.getAsLong(MetadataDbHelper.PENDINGID_COLUMN));
+                mDownloadIdToCancel = values.getAsLong(MetadataDbHelper.PENDINGID_COLUMN);
                 MetadataDbHelper.markEntryAsAvailable(db, mWordList.mId, mWordList.mVersion);
             }
         }
+
+        @Override
+        public void executeAfterCommit(final Context context) {
+            if (UpdateHandler.NOT_AN_ID == mDownloadIdToCancel) return;
+            final DownloadManagerWrapper manager = new DownloadManagerWrapper(context);
+            manager.remove(mDownloadIdToCancel);
+        }
     }
 
     /**
@@ -291,6 +372,11 @@ public final class ActionBatch {
             mWordList = wordlist;
         }
 
+        @Override
+        public String getClientId() {
+            return mClientId;
+        }
+
         @Override
         public void execute(final Context context) {
             if (null == mWordList) { // This should never happen
@@ -341,6 +427,11 @@ public final class ActionBatch {
             mWordList = wordlist;
         }
 
+        @Override
+        public String getClientId() {
+            return mClientId;
+        }
+
         @Override
         public void execute(final Context context) {
             if (null == mWordList) { // This should never happen
@@ -383,6 +474,11 @@ public final class ActionBatch {
             mWordList = wordlist;
         }
 
+        @Override
+        public String getClientId() {
+            return mClientId;
+        }
+
         @Override
         public void execute(final Context context) {
             if (null == mWordList) { // This should never happen
@@ -437,6 +533,11 @@ public final class ActionBatch {
             mHasNewerVersion = hasNewerVersion;
         }
 
+        @Override
+        public String getClientId() {
+            return mClientId;
+        }
+
         @Override
         public void execute(final Context context) {
             if (null == mWordList) { // This should never happen
@@ -508,6 +609,11 @@ public final class ActionBatch {
             mWordList = wordlist;
         }
 
+        @Override
+        public String getClientId() {
+            return mClientId;
+        }
+
         @Override
         public void execute(final Context context) {
             if (null == mWordList) { // This should never happen
@@ -547,6 +653,11 @@ public final class ActionBatch {
             mWordList = wordlist;
         }
 
+        @Override
+        public String getClientId() {
+            return mClientId;
+        }
+
         @Override
         public void execute(final Context context) {
             if (null == mWordList) { // This should never happen
@@ -606,20 +717,65 @@ public final class ActionBatch {
     /**
      * Execute this batch.
      *
+     * All the database changes are made in a single transaction per metadata database, so that
+     * a metadata update touching many word lists only commits once. A failing action is
+     * reported, and the changes it made before failing are committed along with the others, as
+     * they were when each statement committed on its own. Side effects of actions implementing
+     * {@link ActionWithSideEffects} are run after the commit.
+     *
      * @param context the context for getting resources, databases, system services.
      * @param reporter a Reporter to send errors to.
      */
     public void execute(final Context context, final ProblemReporter reporter) {
         DebugLogUtils.l("Executing a batch of actions");
-        Queue<Action> remainingActions = mActions;
-        while (!remainingActions.isEmpty()) {
-            final Action a = remainingActions.poll();
+        final long startTime = SystemClock.uptimeMillis();
+        final int actionCount = mActions.size();
+        int failedActionCount = 0;
+        final ArrayList<SQLiteDatabase> dbsInTransaction = new ArrayList<>();
+        final ArrayList<ActionWithSideEffects> actionsWithSideEffects = new ArrayList<>();
+        try {
+            Queue<Action> remainingActions = mActions;
+            while (!remainingActions.isEmpty()) {
+                final Action a = remainingActions.poll();
+                try {
+                    final SQLiteDatabase db = MetadataDbHelper.getDb(context, a.getClientId());
+                    if (!dbsInTransaction.contains(db)) {
+                        db.beginTransactionNonExclusive();
+                        dbsInTransaction.add(db);
+                    }
+                    a.execute(context);
+                    if (a instanceof ActionWithSideEffects) {
+                        actionsWithSideEffects.add((ActionWithSideEffects)a);
+                    }
+                } catch (Exception e) {
+                    ++failedActionCount;
+                    if (null != reporter)
+                        reporter.report(e);
+                }
+            }
+            // Like when each action committed on its own, a failed action does not prevent the
+            // others from being applied.
+            for (final SQLiteDatabase db : dbsInTransaction) {
+                db.setTransactionSuccessful();
+            }
+        } finally {
+            for (final SQLiteDatabase db : dbsInTransaction) {
+                db.endTransaction();
+            }
+        }
+        final long commitTime = SystemClock.uptimeMillis();
+        for (final ActionWithSideEffects a : actionsWithSideEffects) {
             try {
-                a.execute(context);
+                a.executeAfterCommit(context);
             } catch (Exception e) {
+                ++failedActionCount;
                 if (null != reporter)
                     reporter.report(e);
             }
         }
+        final long endTime = SystemClock.uptimeMillis();
+        Log.i(TAG, "Executed " + actionCount + " actions (" + failedActionCount + " failed) in "
+                + (endTime - startTime) + "ms, " + (commitTime - startTime) + "ms in database"
+                + " transaction, " + (endTime - commitTime) + "ms after commit");
     }
 }
@@ -22,6 +22,7 @@ import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 import android.text.TextUtils;
 import android.util.Log;
 
@@ -953,21 +954,26 @@ public class MetadataDbHelper extends SQLiteOpenHelper {
      * The metadata database contains information about ongoing processes, typically ongoing
      * downloads. This marks such an entry as having finished and having installed successfully,
      * so it becomes INSTALLED.
+     * This deletes the old entries of the word list before inserting the new one, so it should
+     * run in a transaction, like the one of an {@link ActionBatch}. It does not open one of its
+     * own, because a nested transaction failing would roll back the enclosing one as a whole.
      *
      * @param db the metadata database.
      * @param r content values about the entry to mark as processed.
+     * @return the files of the old version of the word list, which the caller should delete
+     *     once the transaction has been committed.
      */
-    public static void markEntryAsFinishedDownloadingAndInstalled(final SQLiteDatabase db,
-            final ContentValues r) {
+    public static List<String> markEntryAsFinishedDownloadingAndInstalled(
+            final SQLiteDatabase db, final ContentValues r) {
+        final List<String> filenames = new LinkedList<>();
         switch (r.getAsInteger(TYPE_COLUMN)) {
             case TYPE_BULK:
                 DebugLogUtils.l("Ended processing a wordlist");
                 // Updating a bulk word list is a three-step operation:
                 // - Add the new entry to the table
                 // - Remove the old entry from the table
-                // - Erase the old file
+                // - Erase the old file, which the caller does after commit
                 // We start by gathering the names of the files we should delete.
-                final List<String> filenames = new LinkedList<>();
                 final Cursor c = db.query(METADATA_TABLE_NAME,
                         new String[] { LOCAL_FILENAME_COLUMN },
                         LOCALE_COLUMN + " = ? AND " +
@@ -991,29 +997,35 @@ public class MetadataDbHelper extends SQLiteOpenHelper {
                     c.close();
                 }
                 r.put(STATUS_COLUMN, STATUS_INSTALLED);
-                db.beginTransactionNonExclusive();
                 // Delete all old entries. There should never be any stalled entries, but if
                 // there are, this deletes them.
                 db.delete(METADATA_TABLE_NAME,
                         WORDLISTID_COLUMN + " = ?",
                         new String[] { r.getAsString(WORDLISTID_COLUMN) });
                 db.insert(METADATA_TABLE_NAME, null, r);
-                db.setTransactionSuccessful();
-                db.endTransaction();
-                for (String filename : filenames) {
-                    try {
-                        final File f = new File(filename);
-                        f.delete();
-                    } catch (SecurityException e) {
-                        // No permissions to delete. Um. Can't do anything.
-                    } // I don't think anything else can be thrown
-                }
                 break;
             default:
                 // Unknown type: do nothing.
                 break;
         }
-     }
+        return filenames;
+    }
+
+    /**
+     * Deletes the files of word lists that are not in the database any more.
+     *
+     * @param filenames the names of the files to delete.
+     */
+    public static void deleteWordListFiles(final List<String> filenames) {
+        for (String filename : filenames) {
+            try {
+                final File f = new File(filename);
+                f.delete();
+            } catch (SecurityException e) {
+                // No permissions to delete. Um. Can't do anything.
+            } // I don't think anything else can be thrown
+        }
+    }
 
     /**
      * Removes a downloading entry from the database.
@@ -1045,6 +1057,14 @@ public class MetadataDbHelper extends SQLiteOpenHelper {
                 new String[] { id, Integer.toString(version) });
     }
 
+    private static final String MARK_ENTRY_AS_WHERE_CLAUSE =
+            " WHERE " + WORDLISTID_COLUMN + " = ? AND " + VERSION_COLUMN + " = ?";
+    private static final String MARK_ENTRY_AS_SQL = "UPDATE " + METADATA_TABLE_NAME
+            + " SET " + STATUS_COLUMN + " = ?" + MARK_ENTRY_AS_WHERE_CLAUSE;
+    private static final String MARK_ENTRY_AS_WITH_DOWNLOAD_ID_SQL = "UPDATE "
+            + METADATA_TABLE_NAME + " SET " + STATUS_COLUMN + " = ?, " + PENDINGID_COLUMN + " = ?"
+            + MARK_ENTRY_AS_WHERE_CLAUSE;
+
     /**
      * Internal method that sets the current status of an entry of the database.
      *
@@ -1056,14 +1076,26 @@ public class MetadataDbHelper extends SQLiteOpenHelper {
      */
     private static void markEntryAs(final SQLiteDatabase db, final String id,
             final int version, final int status, final long downloadId) {
-        final ContentValues values = MetadataDbHelper.getContentValuesByWordListId(db, id, version);
-        values.put(STATUS_COLUMN, status);
+        // The statement is compiled on each call rather than kept, as it holds its bound
+        // arguments and can't be shared across threads. The database keeps a cache of compiled
+        // SQL per connection, so this doesn't parse the SQL again.
+        final SQLiteStatement statement;
+        int index = 1;
         if (NOT_A_DOWNLOAD_ID != downloadId) {
-            values.put(MetadataDbHelper.PENDINGID_COLUMN, downloadId);
+            statement = db.compileStatement(MARK_ENTRY_AS_WITH_DOWNLOAD_ID_SQL);
+            statement.bindLong(index++, status);
+            statement.bindLong(index++, downloadId);
+        } else {
+            statement = db.compileStatement(MARK_ENTRY_AS_SQL);
+            statement.bindLong(index++, status);
+        }
+        try {
+            statement.bindString(index++, id);
+            statement.bindLong(index, version);
+            statement.executeUpdateDelete();
+        } finally {
+            statement.close();
         }
-        db.update(METADATA_TABLE_NAME, values,
-                WORDLISTID_COLUMN + " = ? AND " + VERSION_COLUMN + " = ?",
-                new String[] { id, Integer.toString(version) });
     }
 
     /**
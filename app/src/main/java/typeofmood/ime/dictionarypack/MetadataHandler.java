@@ -46,7 +46,20 @@ public class MetadataHandler {
      */
     private static List<WordListMetadata> makeMetadataObject(final Cursor results) {
         final ArrayList<WordListMetadata> buildingMetadata = new ArrayList<>();
+        readMetadataObjects(results, buildingMetadata, null);
+        return Collections.unmodifiableList(buildingMetadata);
+    }
+
+    /**
+     * Reads the data from the cursor and passes each word list to a list, an index, or both.
+     * @param results the cursor to read data from.
+     * @param outList the list to add word lists to, or null.
+     * @param outIndex the index to add word lists and their status to, or null.
+     */
+    private static void readMetadataObjects(final Cursor results,
+            final List<WordListMetadata> outList, final WordListMetadataIndex outIndex) {
         if (null != results && results.moveToFirst()) {
+            final int statusColumn = results.getColumnIndex(MetadataDbHelper.STATUS_COLUMN);
             final int localeColumn = results.getColumnIndex(MetadataDbHelper.LOCALE_COLUMN);
             final int typeColumn = results.getColumnIndex(MetadataDbHelper.TYPE_COLUMN);
             final int descriptionColumn =
@@ -66,7 +79,7 @@ public class MetadataHandler {
             final int formatVersionIndex =
                     results.getColumnIndex(MetadataDbHelper.FORMATVERSION_COLUMN);
             do {
-                buildingMetadata.add(new WordListMetadata(results.getString(idIndex),
+                final WordListMetadata wordList = new WordListMetadata(results.getString(idIndex),
                         results.getInt(typeColumn),
                         results.getString(descriptionColumn),
                         results.getLong(updateIndex),
@@ -78,10 +91,15 @@ public class MetadataHandler {
                         results.getString(remoteFilenameIndex),
                         results.getInt(versionIndex),
                         results.getInt(formatVersionIndex),
-                        0, results.getString(localeColumn)));
+                        0, results.getString(localeColumn));
+                if (null != outList) {
+                    outList.add(wordList);
+                }
+                if (null != outIndex) {
+                    outIndex.put(wordList, results.getInt(statusColumn));
+                }
             } while (results.moveToNext());
         }
-        return Collections.unmodifiableList(buildingMetadata);
     }
 
     /**
@@ -105,6 +123,26 @@ public class MetadataHandler {
         }
     }
 
+    /**
+     * Gets the whole metadata with the status of each word list, indexed by word list id.
+     * @param context The context to open files over.
+     * @param clientId the client id for retrieving the database. null for default (deprecated)
+     * @return The current metadata index.
+     */
+    public static WordListMetadataIndex getCurrentMetadataIndex(final Context context,
+            final String clientId) {
+        final WordListMetadataIndex index = new WordListMetadataIndex();
+        final Cursor results = MetadataDbHelper.queryCurrentMetadata(context, clientId);
+        try {
+            readMetadataObjects(results, null, index);
+        } finally {
+            if (null != results) {
+                results.close();
+            }
+        }
+        return index;
+    }
+
     /**
      * Gets the metadata, for a specific dictionary.
      *
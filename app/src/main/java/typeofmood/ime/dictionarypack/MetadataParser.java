@@ -91,6 +91,13 @@ public class MetadataParser {
                 0, arguments.get(LOCALE_FIELD_NAME));
     }
 
+    /**
+     * Receives word list metadata as it is parsed.
+     */
+    public interface WordListMetadataConsumer {
+        void consume(final WordListMetadata wordList);
+    }
+
     /**
      * Parses metadata in the JSON format.
      * @param input a stream reader expected to contain JSON formatted metadata.
@@ -100,15 +107,38 @@ public class MetadataParser {
      */
     public static List<WordListMetadata> parseMetadata(final InputStreamReader input)
             throws IOException, BadFormatException {
-        JsonReader reader = new JsonReader(input);
         final ArrayList<WordListMetadata> readInfo = new ArrayList<>();
+        parseMetadata(input, new WordListMetadataConsumer() {
+            @Override
+            public void consume(final WordListMetadata wordList) {
+                readInfo.add(wordList);
+            }
+        });
+        return Collections.unmodifiableList(readInfo);
+    }
+
+    /**
+     * Parses metadata in the JSON format, passing each word list to a consumer as soon as it has
+     * been read instead of building the whole metadata in memory.
+     * @param input a stream reader expected to contain JSON formatted metadata.
+     * @param consumer the consumer to pass each word list with a locale to.
+     * @return the number of word lists passed to the consumer.
+     * @throws IOException if the underlying reader throws IOException during reading.
+     * @throws BadFormatException if the data was not in the expected format.
+     */
+    public static int parseMetadata(final InputStreamReader input,
+            final WordListMetadataConsumer consumer) throws IOException, BadFormatException {
+        JsonReader reader = new JsonReader(input);
+        int count = 0;
         reader.beginArray();
         while (reader.hasNext()) {
             final WordListMetadata thisMetadata = parseOneWordList(reader);
-            if (!TextUtils.isEmpty(thisMetadata.mLocale))
-                readInfo.add(thisMetadata);
+            if (!TextUtils.isEmpty(thisMetadata.mLocale)) {
+                consumer.consume(thisMetadata);
+                ++count;
+            }
         }
-        return Collections.unmodifiableList(readInfo);
+        return count;
     }
 
 }
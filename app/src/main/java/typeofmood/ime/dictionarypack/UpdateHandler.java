@@ -31,6 +31,7 @@ import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
 import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
 import android.provider.Settings;
 import android.text.TextUtils;
 import android.util.Log;
@@ -55,7 +56,6 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Set;
 import java.util.TreeSet;
 
 import javax.annotation.Nullable;
@@ -587,19 +587,31 @@ public final class UpdateHandler {
     public static void handleMetadata(final Context context, final InputStream stream,
             final String clientId) throws IOException, BadFormatException {
         DebugLogUtils.l("Entering handleMetadata");
-        final List<WordListMetadata> newMetadata;
+        final long startTime = SystemClock.uptimeMillis();
+        // Index the current state first, so that the new metadata can be compared against it
+        // as it is parsed instead of being kept as a list and searched for each word list.
+        final WordListMetadataIndex currentMetadata =
+                MetadataHandler.getCurrentMetadataIndex(context, clientId);
+        final WordListMetadataIndex newMetadata = new WordListMetadataIndex();
+        final int wordListCount;
         final InputStreamReader reader = new InputStreamReader(stream);
         try {
             // According to the doc InputStreamReader buffers, so no need to add a buffering layer
-            newMetadata = MetadataHandler.readMetadata(reader);
+            wordListCount = MetadataParser.parseMetadata(reader, newMetadata);
         } finally {
             reader.close();
         }
+        final long parseEndTime = SystemClock.uptimeMillis();
 
-        DebugLogUtils.l("Downloaded metadata :", newMetadata);
-        PrivateLog.log("Downloaded metadata\n" + newMetadata);
+        DebugLogUtils.l("Downloaded metadata :", wordListCount, "word lists");
+        PrivateLog.log("Downloaded metadata with " + wordListCount + " word lists");
 
-        final ActionBatch actions = computeUpgradeTo(context, clientId, newMetadata);
+        final ActionBatch actions =
+                compareMetadataForUpgrade(clientId, currentMetadata, newMetadata);
+        Log.i(TAG, "Compared " + wordListCount + " downloaded word lists against "
+                + currentMetadata.size() + " known ones in "
+                + (SystemClock.uptimeMillis() - startTime) + "ms ("
+                + (parseEndTime - startTime) + "ms reading and parsing)");
         // TODO: Check with UX how we should report to the user
         // TODO: add an action to close the database
         actions.execute(context, new LogProblemReporter(TAG));
@@ -734,97 +746,100 @@ public final class UpdateHandler {
      * This method takes whole metadata sets directly and compares them, matching the wordlists in
      * each of them on the id. It creates an ActionBatch object that can be .execute()'d to perform
      * the actual upgrade from `from' to `to'.
+     * Both sets are indexed by id, so this runs in time linear in the number of word lists.
      *
-     * @param context the context to open databases on.
      * @param clientId the id of the client.
-     * @param from the dictionary descriptor (as a list of wordlists) to upgrade from.
-     * @param to the dictionary descriptor (as a list of wordlists) to upgrade to.
+     * @param from the dictionary descriptor (as an index of wordlists) to upgrade from.
+     * @param to the dictionary descriptor (as an index of wordlists) to upgrade to.
      * @return an ordered list of runnables to be called to upgrade.
      */
-    private static ActionBatch compareMetadataForUpgrade(final Context context,
-            final String clientId, @Nullable final List<WordListMetadata> from,
-            @Nullable final List<WordListMetadata> to) {
+    private static ActionBatch compareMetadataForUpgrade(final String clientId,
+            final WordListMetadataIndex from, final WordListMetadataIndex to) {
         final ActionBatch actions = new ActionBatch();
         // Upgrade existing word lists
         DebugLogUtils.l("Comparing dictionaries");
-        final Set<String> wordListIds = new TreeSet<>();
-        // TODO: Can these be null?
-        final List<WordListMetadata> fromList = (from == null) ? new ArrayList<WordListMetadata>()
-                : from;
-        final List<WordListMetadata> toList = (to == null) ? new ArrayList<WordListMetadata>()
-                : to;
-        for (WordListMetadata wlData : fromList) wordListIds.add(wlData.mId);
-        for (WordListMetadata wlData : toList) wordListIds.add(wlData.mId);
-        for (String id : wordListIds) {
-            final WordListMetadata currentInfo = MetadataHandler.findWordListById(fromList, id);
-            final WordListMetadata metadataInfo = MetadataHandler.findWordListById(toList, id);
-            // TODO: Remove the following unnecessary check, since we are now doing the filtering
-            // inside findWordListById.
-            final WordListMetadata newInfo = null == metadataInfo
-                    || metadataInfo.mFormatVersion > MAXIMUM_SUPPORTED_FORMAT_VERSION
-                            ? null : metadataInfo;
-            DebugLogUtils.l("Considering updating ", id, "currentInfo =", currentInfo);
-
-            if (null == currentInfo && null == newInfo) {
-                // This may happen if a new word list appeared that we can't handle.
-                if (null == metadataInfo) {
-                    // What happened? Bug in Set<>?
-                    Log.e(TAG, "Got an id for a wordlist that is neither in from nor in to");
-                } else {
-                    // We may come here if there is a new word list that we can't handle.
-                    Log.i(TAG, "Can't handle word list with id '" + id + "' because it has format"
-                            + " version " + metadataInfo.mFormatVersion + " and the maximum version"
-                            + " we can handle is " + MAXIMUM_SUPPORTED_FORMAT_VERSION);
-                }
+        for (final WordListMetadataIndex.Entry newEntry : to.entries()) {
+            final WordListMetadata metadataInfo = newEntry.mWordList;
+            final WordListMetadataIndex.Entry currentEntry = from.get(metadataInfo.mId);
+            if (null == currentEntry && !newEntry.isSupported()) {
+                // We may come here if there is a new word list that we can't handle.
+                Log.i(TAG, "Can't handle word list with id '" + metadataInfo.mId + "' because it"
+                        + " has format version " + metadataInfo.mFormatVersion + " and the maximum"
+                        + " version we can handle is " + MAXIMUM_SUPPORTED_FORMAT_VERSION);
+                continue;
+            }
+            addUpgradeActions(actions, clientId, currentEntry,
+                    newEntry.isSupported() ? metadataInfo : null);
+        }
+        for (final WordListMetadataIndex.Entry currentEntry : from.entries()) {
+            if (!currentEntry.isSupported() || to.containsId(currentEntry.mWordList.mId)) {
                 continue;
-            } else if (null == currentInfo) {
-                // This is the case where a new list that we did not know of popped on the server.
-                // Make it available.
+            }
+            addUpgradeActions(actions, clientId, currentEntry, null);
+        }
+        return actions;
+    }
+
+    /**
+     * Adds the actions needed to upgrade a single word list.
+     *
+     * @param actions the batch to add actions to.
+     * @param clientId the id of the client.
+     * @param currentEntry the current word list and its status, or null if we don't know it.
+     * @param newInfo the word list to upgrade to, or null if it is not in the new metadata.
+     */
+    private static void addUpgradeActions(final ActionBatch actions, final String clientId,
+            @Nullable final WordListMetadataIndex.Entry currentEntry,
+            @Nullable final WordListMetadata newInfo) {
+        final WordListMetadata currentInfo = null == currentEntry ? null : currentEntry.mWordList;
+        DebugLogUtils.l("Considering updating ", null == currentInfo ? newInfo : currentInfo,
+                "currentInfo =", currentInfo);
+        if (null == currentInfo && null == newInfo) {
+            // What happened? Bug in the index?
+            Log.e(TAG, "Got an id for a wordlist that is neither in from nor in to");
+        } else if (null == currentInfo) {
+            // This is the case where a new list that we did not know of popped on the server.
+            // Make it available.
+            actions.add(new ActionBatch.MakeAvailableAction(clientId, newInfo));
+        } else if (null == newInfo) {
+            // This is the case where an old list we had is not in the server data any more.
+            // Pass false to ForgetAction: this may be installed and we still want to apply
+            // a forget-like action (remove the URL) if it is, so we want to turn off the
+            // status == AVAILABLE check. If it's DELETING, this is the right thing to do,
+            // as we want to leave the record as long as Android Keyboard has not deleted it ;
+            // the record will be removed when the file is actually deleted.
+            actions.add(new ActionBatch.ForgetAction(clientId, currentInfo, false));
+        } else {
+            if (newInfo.mVersion == currentInfo.mVersion) {
+                if (TextUtils.equals(newInfo.mRemoteFilename, currentInfo.mRemoteFilename)) {
+                    // If the dictionary url hasn't changed, we should preserve the retryCount.
+                    newInfo.mRetryCount = currentInfo.mRetryCount;
+                }
+                // If it's the same id/version, we update the DB with the new values.
+                // It doesn't matter too much if they didn't change.
+                actions.add(new ActionBatch.UpdateDataAction(clientId, newInfo));
+            } else if (newInfo.mVersion > currentInfo.mVersion) {
+                // If it's a new version, it's a different entry in the database. Make it
+                // available, and if it's installed, also start the download.
+                final int status = currentEntry.mStatus;
                 actions.add(new ActionBatch.MakeAvailableAction(clientId, newInfo));
-            } else if (null == newInfo) {
-                // This is the case where an old list we had is not in the server data any more.
-                // Pass false to ForgetAction: this may be installed and we still want to apply
-                // a forget-like action (remove the URL) if it is, so we want to turn off the
-                // status == AVAILABLE check. If it's DELETING, this is the right thing to do,
-                // as we want to leave the record as long as Android Keyboard has not deleted it ;
-                // the record will be removed when the file is actually deleted.
-                actions.add(new ActionBatch.ForgetAction(clientId, currentInfo, false));
-            } else {
-                final SQLiteDatabase db = MetadataDbHelper.getDb(context, clientId);
-                if (newInfo.mVersion == currentInfo.mVersion) {
-                    if (TextUtils.equals(newInfo.mRemoteFilename, currentInfo.mRemoteFilename)) {
-                        // If the dictionary url hasn't changed, we should preserve the retryCount.
-                        newInfo.mRetryCount = currentInfo.mRetryCount;
-                    }
-                    // If it's the same id/version, we update the DB with the new values.
-                    // It doesn't matter too much if they didn't change.
-                    actions.add(new ActionBatch.UpdateDataAction(clientId, newInfo));
-                } else if (newInfo.mVersion > currentInfo.mVersion) {
-                    // If it's a new version, it's a different entry in the database. Make it
-                    // available, and if it's installed, also start the download.
-                    final ContentValues values = MetadataDbHelper.getContentValuesByWordListId(db,
-                            currentInfo.mId, currentInfo.mVersion);
-                    final int status = values.getAsInteger(MetadataDbHelper.STATUS_COLUMN);
-                    actions.add(new ActionBatch.MakeAvailableAction(clientId, newInfo));
-                    if (status == MetadataDbHelper.STATUS_INSTALLED
-                            || status == MetadataDbHelper.STATUS_DISABLED) {
-                        actions.add(new ActionBatch.StartDownloadAction(clientId, newInfo));
-                    } else {
-                        // Pass true to ForgetAction: this is indeed an update to a non-installed
-                        // word list, so activate status == AVAILABLE check
-                        // In case the status is DELETING, this is the right thing to do. It will
-                        // leave the entry as DELETING and remove its URL so that Android Keyboard
-                        // can delete it the next time it starts up.
-                        actions.add(new ActionBatch.ForgetAction(clientId, currentInfo, true));
-                    }
-                } else if (DEBUG) {
-                    Log.i(TAG, "Not updating word list " + id
-                            + " : current list timestamp is " + currentInfo.mLastUpdate
-                                    + " ; new list timestamp is " + newInfo.mLastUpdate);
+                if (status == MetadataDbHelper.STATUS_INSTALLED
+                        || status == MetadataDbHelper.STATUS_DISABLED) {
+                    actions.add(new ActionBatch.StartDownloadAction(clientId, newInfo));
+                } else {
+                    // Pass true to ForgetAction: this is indeed an update to a non-installed
+                    // word list, so activate status == AVAILABLE check
+                    // In case the status is DELETING, this is the right thing to do. It will
+                    // leave the entry as DELETING and remove its URL so that Android Keyboard
+                    // can delete it the next time it starts up.
+                    actions.add(new ActionBatch.ForgetAction(clientId, currentInfo, true));
                 }
+            } else if (DEBUG) {
+                Log.i(TAG, "Not updating word list " + newInfo.mId
+                        + " : current list timestamp is " + currentInfo.mLastUpdate
+                                + " ; new list timestamp is " + newInfo.mLastUpdate);
             }
         }
-        return actions;
     }
 
     /**
@@ -836,9 +851,15 @@ public final class UpdateHandler {
      */
     public static ActionBatch computeUpgradeTo(final Context context, final String clientId,
             final List<WordListMetadata> newMetadata) {
-        final List<WordListMetadata> currentMetadata =
-                MetadataHandler.getCurrentMetadata(context, clientId);
-        return compareMetadataForUpgrade(context, clientId, currentMetadata, newMetadata);
+        final WordListMetadataIndex currentMetadata =
+                MetadataHandler.getCurrentMetadataIndex(context, clientId);
+        final WordListMetadataIndex newMetadataIndex = new WordListMetadataIndex();
+        if (null != newMetadata) {
+            for (final WordListMetadata wordList : newMetadata) {
+                newMetadataIndex.consume(wordList);
+            }
+        }
+        return compareMetadataForUpgrade(clientId, currentMetadata, newMetadataIndex);
     }
 
     /**
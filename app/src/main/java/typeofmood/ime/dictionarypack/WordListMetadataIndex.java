@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package typeofmood.ime.dictionarypack;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+
+import javax.annotation.Nullable;
+
+/**
+ * An index of word list metadata by word list id.
+ *
+ * For each id, this keeps the word list with the biggest format version that is less or equal
+ * than the maximum supported format version, like {@link MetadataHandler#findWordListById} does,
+ * but lookups take constant time. If all the word lists for an id have a format version we can't
+ * handle, one of them is kept so that callers can report it, but {@link #get(String)} will not
+ * return it.
+ * Each word list comes with its status (as of MetadataDbHelper#STATUS_*) so that comparing
+ * metadata does not need another database lookup per word list.
+ */
+public class WordListMetadataIndex implements MetadataParser.WordListMetadataConsumer {
+    public static final class Entry {
+        public final WordListMetadata mWordList;
+        public final int mStatus;
+
+        public Entry(final WordListMetadata wordList, final int status) {
+            mWordList = wordList;
+            mStatus = status;
+        }
+
+        public boolean isSupported() {
+            return mWordList.mFormatVersion <= UpdateHandler.MAXIMUM_SUPPORTED_FORMAT_VERSION;
+        }
+    }
+
+    // Insertion order is kept so that actions computed from this index are in a stable order.
+    private final LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<>();
+
+    /**
+     * Adds a word list to the index, unless a better one with the same id is already there.
+     * @param wordList the word list metadata.
+     * @param status the status of this word list.
+     */
+    public void put(final WordListMetadata wordList, final int status) {
+        final Entry entry = new Entry(wordList, status);
+        final Entry existingEntry = mEntries.get(wordList.mId);
+        if (null == existingEntry || isBetter(entry, existingEntry)) {
+            mEntries.put(wordList.mId, entry);
+        }
+    }
+
+    private static boolean isBetter(final Entry candidate, final Entry current) {
+        if (candidate.isSupported() != current.isSupported()) {
+            return candidate.isSupported();
+        }
+        return candidate.isSupported()
+                && candidate.mWordList.mFormatVersion > current.mWordList.mFormatVersion;
+    }
+
+    @Override
+    public void consume(final WordListMetadata wordList) {
+        put(wordList, MetadataDbHelper.STATUS_UNKNOWN);
+    }
+
+    /**
+     * @param id the word list ID.
+     * @return the best supported entry for this id, or null if there is none.
+     */
+    @Nullable
+    public Entry get(final String id) {
+        final Entry entry = mEntries.get(id);
+        return null != entry && entry.isSupported() ? entry : null;
+    }
+
+    public boolean containsId(final String id) {
+        return mEntries.containsKey(id);
+    }
+
+    /**
+     * @return all entries, including the ones with a format version we can't handle.
+     */
+    public Collection<Entry> entries() {
+        return mEntries.values();
+    }
+
+    public int size() {
+        return mEntries.size();
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package typeofmood.ime.keyboard;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.InputType;
+import android.util.Log;
+import android.view.ContextThemeWrapper;
+import android.view.inputmethod.EditorInfo;
+import android.view.inputmethod.InputMethodInfo;
+import android.view.inputmethod.InputMethodSubtype;
+
+import typeofmood.ime.latin.RichInputMethodManager;
+import typeofmood.ime.latin.RichInputMethodSubtype;
+import typeofmood.ime.latin.utils.ResourceUtils;
+import typeofmood.ime.latin.utils.SubtypeLocaleUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long building keyboards takes, for debugging.
+ *
+ * The elements a user types with are built for each subtype of this IME, twice. The first pass
+ * starts from empty caches. The second pass only clears the built keyboards, so it reuses the
+ * keyboard texts resolved by the first one. The difference between the two passes is the time
+ * spent resolving texts, and the rest is mostly parsing the layouts. Both are logged.
+ */
+public final class KeyboardBuildBenchmark {
+    private static final String TAG = KeyboardBuildBenchmark.class.getSimpleName();
+
+    private static final int[] ELEMENT_IDS = {
+        KeyboardId.ELEMENT_ALPHABET,
+        KeyboardId.ELEMENT_ALPHABET_MANUAL_SHIFTED,
+        KeyboardId.ELEMENT_ALPHABET_AUTOMATIC_SHIFTED,
+        KeyboardId.ELEMENT_ALPHABET_SHIFT_LOCKED,
+        KeyboardId.ELEMENT_ALPHABET_SHIFT_LOCK_SHIFTED,
+        KeyboardId.ELEMENT_SYMBOLS,
+        KeyboardId.ELEMENT_SYMBOLS_SHIFTED,
+    };
+
+    private final Context mThemeContext;
+    private final int mKeyboardWidth;
+    private final int mKeyboardHeight;
+    private final InputMethodInfo mImi;
+    private final EditorInfo mEditorInfo = new EditorInfo();
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private int mSubtypeIndex;
+    private long mTotalColdNanos;
+    private long mTotalWarmTextsNanos;
+
+    private KeyboardBuildBenchmark(final Context context) {
+        mThemeContext = new ContextThemeWrapper(context,
+                KeyboardTheme.getKeyboardTheme(context).mStyleId);
+        final Resources res = mThemeContext.getResources();
+        mKeyboardWidth = ResourceUtils.getDefaultKeyboardWidth(res);
+        mKeyboardHeight = ResourceUtils.getDefaultKeyboardHeight(res);
+        mImi = RichInputMethodManager.getInstance().getInputMethodInfoOfThisIme();
+        mEditorInfo.inputType = InputType.TYPE_CLASS_TEXT;
+    }
+
+    /**
+     * Runs the benchmark on the UI thread, which owns the keyboard cache, one subtype at a time
+     * so that the UI stays responsive. This clears the keyboard cache, so the next keyboards
+     * shown are built again.
+     */
+    public static void run(final Context context) {
+        new KeyboardBuildBenchmark(context).benchmarkNextSubtype();
+    }
+
+    private void benchmarkNextSubtype() {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (mSubtypeIndex < mImi.getSubtypeCount()) {
+                    benchmarkSubtype(mImi.getSubtypeAt(mSubtypeIndex++));
+                    benchmarkNextSubtype();
+                } else {
+                    KeyboardLayoutSet.clearKeyboardCache();
+                    logTotals();
+                }
+            }
+        });
+    }
+
+    private void benchmarkSubtype(final InputMethodSubtype subtype) {
+        final KeyboardLayoutSet.Builder builder =
+                new KeyboardLayoutSet.Builder(mThemeContext, mEditorInfo);
+        builder.setKeyboardGeometry(mKeyboardWidth, mKeyboardHeight);
+        builder.setSubtype(RichInputMethodSubtype.getRichInputMethodSubtype(subtype));
+        final KeyboardLayoutSet layoutSet = builder.build();
+        KeyboardLayoutSet.clearKeyboardCache();
+        final long coldNanos = buildElements(layoutSet);
+        KeyboardLayoutSet.clearBuiltKeyboards();
+        final long warmTextsNanos = buildElements(layoutSet);
+        mTotalColdNanos += coldNanos;
+        mTotalWarmTextsNanos += warmTextsNanos;
+        Log.i(TAG, subtype.getLocale() + "/"
+                + SubtypeLocaleUtils.getKeyboardLayoutSetName(subtype) + ": "
+                + TimeUnit.NANOSECONDS.toMicros(coldNanos) + "us from scratch, "
+                + TimeUnit.NANOSECONDS.toMicros(warmTextsNanos) + "us with resolved texts");
+    }
+
+    private void logTotals() {
+        final int keyboardCount = mSubtypeIndex * ELEMENT_IDS.length;
+        if (0 == keyboardCount) {
+            return;
+        }
+        Log.i(TAG, mSubtypeIndex + " subtypes, " + keyboardCount + " keyboards: "
+                + TimeUnit.NANOSECONDS.toMillis(mTotalColdNanos) + "ms from scratch ("
+                + TimeUnit.NANOSECONDS.toMicros(mTotalColdNanos / keyboardCount)
+                + "us per keyboard), "
+                + TimeUnit.NANOSECONDS.toMillis(mTotalWarmTextsNanos) + "ms with resolved texts ("
+                + TimeUnit.NANOSECONDS.toMicros(mTotalWarmTextsNanos / keyboardCount)
+                + "us per keyboard)");
+    }
+
+    private static long buildElements(final KeyboardLayoutSet layoutSet) {
+        final long startTime = System.nanoTime();
+        for (final int elementId : ELEMENT_IDS) {
+            layoutSet.getKeyboard(elementId);
+        }
+        return System.nanoTime() - startTime;
+    }
+}
@@ -35,6 +35,7 @@ import typeofmood.ime.compat.InputMethodSubtypeCompatUtils;
 import typeofmood.ime.compat.UserManagerCompatUtils;
 import typeofmood.ime.keyboard.internal.KeyboardBuilder;
 import typeofmood.ime.keyboard.internal.KeyboardParams;
+import typeofmood.ime.keyboard.internal.KeyboardTextsSet;
 import typeofmood.ime.keyboard.internal.UniqueKeysCache;
 import typeofmood.ime.latin.InputAttributes;
 import typeofmood.ime.R;
@@ -49,6 +50,7 @@ import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.IOException;
 import java.lang.ref.SoftReference;
+import java.util.Arrays;
 import java.util.HashMap;
 
 import javax.annotation.Nonnull;
@@ -142,9 +144,16 @@ public final class KeyboardLayoutSet {
         clearKeyboardCache();
     }
 
-    private static void clearKeyboardCache() {
+    static void clearKeyboardCache() {
+        clearBuiltKeyboards();
+        KeyboardTextsSet.clearResolvedTextsCache();
+    }
+
+    // Clears the built keyboards, but keeps the keyboard texts resolved for them.
+    static void clearBuiltKeyboards() {
         sKeyboardCache.clear();
         sUniqueKeysCache.clear();
+        Arrays.fill(sForcibleKeyboardCache, null);
     }
 
     public static int getScriptId(final Resources resources,
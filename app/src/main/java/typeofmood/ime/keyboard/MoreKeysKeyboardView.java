@@ -174,6 +174,12 @@ public class MoreKeysKeyboardView extends KeyboardView implements MoreKeysPanel
         }
     }
 
+    @Override
+    public int getKeyCodeAt(final int x, final int y) {
+        final Key key = mKeyDetector.detectHitKey(x, y);
+        return key == null ? Constants.NOT_A_CODE : key.getCode();
+    }
+
     @Override
     public void onUpEvent(final int x, final int y, final int pointerId, final long eventTime) {
         if (mActivePointerId != pointerId) {
@@ -99,6 +99,16 @@ public interface MoreKeysPanel {
      */
     public void onUpEvent(final int x, final int y, final int pointerId, final long eventTime);
 
+    /**
+     * Get the code of the key at a point of the more keys panel.
+     *
+     * @param x translated x coordinate of the point
+     * @param y translated y coordinate of the point
+     * @return the code of the key at the point, or
+     *     {@link typeofmood.ime.latin.common.Constants#NOT_A_CODE} if there is none.
+     */
+    public int getKeyCodeAt(final int x, final int y);
+
     /**
      * Translate X-coordinate of touch event to the local X-coordinate of this
      * {@link MoreKeysPanel}.
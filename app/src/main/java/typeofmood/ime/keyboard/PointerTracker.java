@@ -30,6 +30,7 @@ import typeofmood.ime.keyboard.internal.GestureEnabler;
 import typeofmood.ime.keyboard.internal.GestureStrokeDrawingParams;
 import typeofmood.ime.keyboard.internal.GestureStrokeDrawingPoints;
 import typeofmood.ime.keyboard.internal.GestureStrokeRecognitionParams;
+import typeofmood.ime.keyboard.internal.KeystrokeRecorder;
 import typeofmood.ime.keyboard.internal.PointerTrackerQueue;
 import typeofmood.ime.keyboard.internal.TimerProxy;
 import typeofmood.ime.keyboard.internal.TypingTimeRecorder;
@@ -40,6 +41,7 @@ import typeofmood.ime.latin.common.InputPointers;
 import typeofmood.ime.latin.define.DebugFlags;
 import typeofmood.ime.latin.settings.Settings;
 import typeofmood.ime.latin.utils.ResourceUtils;
+import typeofmood.ime.latin.utils.StatsUtils;
 
 import java.util.ArrayList;
 
@@ -111,12 +113,18 @@ public final class PointerTracker implements PointerTrackerQueue.Element,
     private boolean mIsDetectingGesture = false; // per PointerTracker.
     private static boolean sInGesture = false;
     private static TypingTimeRecorder sTypingTimeRecorder;
+    private static final KeystrokeRecorder sKeystrokeRecorder = new KeystrokeRecorder();
 
     // The position and time at which first down event occurred.
     private long mDownTime;
     @Nonnull
     private int[] mDownCoordinates = CoordinateUtils.newInstance();
     private long mUpTime;
+    // The pressure and size of the last down event, and the code the current key sent if any,
+    // for {@link KeystrokeRecorder}.
+    private float mDownPressure = KeystrokeRecorder.NOT_A_PRESSURE;
+    private float mDownSize = KeystrokeRecorder.NOT_A_PRESSURE;
+    private int mKeystrokeCode = Constants.NOT_A_CODE;
 
     // The current key where this pointer is.
     private Key mCurrentKey = null;
@@ -201,6 +209,10 @@ public final class PointerTracker implements PointerTrackerQueue.Element,
         sPointerTrackerQueue.cancelAllPointerTrackers();
     }
 
+    public static KeystrokeRecorder getKeystrokeRecorder() {
+        return sKeystrokeRecorder;
+    }
+
     public static void setKeyboardActionListener(final KeyboardActionListener listener) {
         sListener = listener;
     }
@@ -291,6 +303,7 @@ public final class PointerTracker implements PointerTrackerQueue.Element,
         // Even if the key is disabled, it should respond if it is in the altCodeWhileTyping state.
         if (key.isEnabled() || altersCode) {
             sTypingTimeRecorder.onCodeInput(code, eventTime);
+            mKeystrokeCode = code;
             if (code == Constants.CODE_OUTPUT_TEXT) {
                 sListener.onTextInput(key.getOutputText());
             } else if (code != Constants.CODE_UNSPECIFIED) {
@@ -601,6 +614,8 @@ public final class PointerTracker implements PointerTrackerQueue.Element,
         switch (action) {
         case MotionEvent.ACTION_DOWN:
         case MotionEvent.ACTION_POINTER_DOWN:
+            mDownPressure = me.getPressure(index);
+            mDownSize = me.getSize(index);
             onDownEvent(x, y, eventTime, keyDetector);
             break;
         case MotionEvent.ACTION_UP:
@@ -670,6 +685,7 @@ public final class PointerTracker implements PointerTrackerQueue.Element,
 
     private void onDownEventInternal(final int x, final int y, final long eventTime) {
         Key key = onDownKey(x, y, eventTime);
+        mKeystrokeCode = Constants.NOT_A_CODE;
         // Key selection by dragging finger is allowed when 1) key selection by dragging finger is
         // enabled by configuration, 2) this pointer starts dragging from modifier key, or 3) this
         // pointer's KeyDetector always allows key selection by dragging finger, such as
@@ -961,6 +977,17 @@ public final class PointerTracker implements PointerTrackerQueue.Element,
         mIsDetectingGesture = false;
         final Key currentKey = mCurrentKey;
         mCurrentKey = null;
+        if (currentKey != null && !sInGesture) {
+            if (isShowingMoreKeysPanel() && !mIsTrackingForActionDisabled) {
+                // The key that is input is the one selected in the more keys panel.
+                final int moreKeyCode = mMoreKeysPanel.getKeyCodeAt(
+                        mMoreKeysPanel.translateX(x), mMoreKeysPanel.translateY(y));
+                if (moreKeyCode != Constants.NOT_A_CODE) {
+                    mKeystrokeCode = moreKeyCode;
+                }
+            }
+            recordKeystroke(currentKey, eventTime);
+        }
         final int currentRepeatingKeyCode = mCurrentRepeatingKeyCode;
         mCurrentRepeatingKeyCode = Constants.NOT_A_CODE;
         // Release the last pressed key.
@@ -1001,6 +1028,19 @@ public final class PointerTracker implements PointerTrackerQueue.Element,
         }
     }
 
+    private void recordKeystroke(final Key key, final long upTime) {
+        // Repeated and auto more keys codes are sent before the up event, and the key selected in
+        // a more keys panel is looked up before it is; plain keys send theirs in
+        // {@link #detectAndSendKey(Key,int,int,long)} right after this.
+        final int code = mKeystrokeCode != Constants.NOT_A_CODE ? mKeystrokeCode : key.getCode();
+        final int keyClass = KeystrokeRecorder.getKeyClass(code);
+        sKeystrokeRecorder.record(keyClass, mDownTime, upTime,
+                CoordinateUtils.x(mDownCoordinates), CoordinateUtils.y(mDownCoordinates),
+                mDownPressure, mDownSize);
+        StatsUtils.onKeystroke(keyClass, mDownTime, upTime,
+                sTypingTimeRecorder.isInFastTyping(mDownTime));
+    }
+
     @Override
     public void cancelTrackingForAction() {
         if (isShowingMoreKeysPanel()) {
@@ -17,6 +17,7 @@
 package typeofmood.ime.keyboard.internal;
 
 import android.content.Context;
+import android.content.res.Configuration;
 import android.content.res.Resources;
 import android.text.TextUtils;
 
@@ -25,6 +26,8 @@ import typeofmood.ime.latin.common.Constants;
 import typeofmood.ime.latin.utils.RunInLocale;
 import typeofmood.ime.latin.utils.SubtypeLocaleUtils;
 
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Locale;
 
 // TODO: Make this an immutable class.
@@ -40,6 +43,60 @@ public final class KeyboardTextsSet {
     private Locale mResourceLocale;
     private String mResourcePackageName;
     private String[] mTextsTable;
+    // Resolved texts by raw text for the current locale. See {@link #sResolvedTextsCache}.
+    private HashMap<String, String> mResolvedTexts;
+
+    /**
+     * Resolved texts by raw text, for each locale, resource package and resources configuration.
+     * Keyboards of a locale refer to the same texts again and again, in each element and each time
+     * they are rebuilt, and resolving a {@link #PREFIX_RESOURCE} reference switches the locale of
+     * the resources. The resources configuration is part of the key because the strings a
+     * {@link #PREFIX_RESOURCE} reference resolves to may depend on any of its qualifiers, like the
+     * MCC and MNC or the layout direction, and on the system locale for texts without a language.
+     * Cleared along with the keyboard cache so that texts of old configurations are not kept.
+     * This only saves resolving references again at runtime; layouts are still parsed from XML
+     * on each build, and resolving references ahead of time is still a TODO.
+     */
+    private static final HashMap<ResolvedTextsKey, HashMap<String, String>> sResolvedTextsCache =
+            new HashMap<>();
+
+    private static final class ResolvedTextsKey {
+        private final Locale mLocale;
+        private final String mResourcePackageName;
+        private final Configuration mConfiguration;
+        private final int mHashCode;
+
+        public ResolvedTextsKey(final Locale locale, final String resourcePackageName,
+                final Configuration configuration) {
+            mLocale = locale;
+            mResourcePackageName = resourcePackageName;
+            // The configuration of the resources is updated in place, so keep a copy.
+            mConfiguration = new Configuration(configuration);
+            mHashCode = Arrays.hashCode(new Object[] { locale, resourcePackageName,
+                    mConfiguration });
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) return true;
+            if (!(o instanceof ResolvedTextsKey)) return false;
+            final ResolvedTextsKey other = (ResolvedTextsKey)o;
+            return mLocale.equals(other.mLocale)
+                    && TextUtils.equals(mResourcePackageName, other.mResourcePackageName)
+                    && mConfiguration.equals(other.mConfiguration);
+        }
+
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+    }
+
+    public static void clearResolvedTextsCache() {
+        synchronized (sResolvedTextsCache) {
+            sResolvedTextsCache.clear();
+        }
+    }
 
     public void setLocale(final Locale locale, final Context context) {
         final Resources res = context.getResources();
@@ -57,6 +114,16 @@ public final class KeyboardTextsSet {
         mResourceLocale = SubtypeLocaleUtils.NO_LANGUAGE.equals(locale.toString()) ? null : locale;
         mResourcePackageName = resourcePackageName;
         mTextsTable = KeyboardTextsTable.getTextsTable(locale);
+        final ResolvedTextsKey cacheKey = new ResolvedTextsKey(locale, resourcePackageName,
+                res.getConfiguration());
+        synchronized (sResolvedTextsCache) {
+            HashMap<String, String> resolvedTexts = sResolvedTextsCache.get(cacheKey);
+            if (resolvedTexts == null) {
+                resolvedTexts = new HashMap<>();
+                sResolvedTextsCache.put(cacheKey, resolvedTexts);
+            }
+            mResolvedTexts = resolvedTexts;
+        }
     }
 
     public String getText(final String name) {
@@ -81,6 +148,23 @@ public final class KeyboardTextsSet {
         if (TextUtils.isEmpty(rawText)) {
             return null;
         }
+        final HashMap<String, String> resolvedTexts = mResolvedTexts;
+        if (resolvedTexts == null) {
+            return resolveTextReferenceInternal(rawText);
+        }
+        synchronized (resolvedTexts) {
+            if (resolvedTexts.containsKey(rawText)) {
+                return resolvedTexts.get(rawText);
+            }
+        }
+        final String text = resolveTextReferenceInternal(rawText);
+        synchronized (resolvedTexts) {
+            resolvedTexts.put(rawText, text);
+        }
+        return text;
+    }
+
+    private String resolveTextReferenceInternal(final String rawText) {
         int level = 0;
         String text = rawText;
         StringBuilder sb;
@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package typeofmood.ime.keyboard.internal;
+
+import typeofmood.ime.latin.common.Constants;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records keystroke dynamics (which class of key was hit, when it was pressed and released, where
+ * and how hard) into a preallocated ring buffer of primitive arrays.
+ *
+ * Recording is done on the UI thread and never allocates. Only the class of the key is recorded,
+ * not the character itself. A single consumer thread may {@link #drainTo(Batch)} the recorded
+ * keystrokes; if it falls behind by more than the capacity, the oldest keystrokes are dropped.
+ * The ring buffer is guarded by a lock, which is only held while a keystroke is written or a
+ * batch is copied out, so that the consumer never sees a keystroke that is half written.
+ */
+public final class KeystrokeRecorder {
+    public static final int KEY_CLASS_OTHER = 0;
+    public static final int KEY_CLASS_LETTER = 1;
+    public static final int KEY_CLASS_DIGIT = 2;
+    public static final int KEY_CLASS_SPACE = 3;
+    public static final int KEY_CLASS_PUNCTUATION = 4;
+    public static final int KEY_CLASS_DELETE = 5;
+    public static final int KEY_CLASS_ENTER = 6;
+    public static final int KEY_CLASS_MODIFIER = 7;
+
+    public static final float NOT_A_PRESSURE = -1.0f;
+
+    private static final int DEFAULT_CAPACITY = 1024; // Must be a power of 2.
+
+    private final int mMask;
+    private final int[] mKeyClasses;
+    private final long[] mDownTimes;
+    private final long[] mUpTimes;
+    private final int[] mXs;
+    private final int[] mYs;
+    private final float[] mPressures;
+    private final float[] mSizes;
+
+    // Total number of keystrokes ever recorded. Guarded by this object like the slots, and
+    // volatile so that it can be read without the lock.
+    private volatile long mWriteCount;
+    // Only accessed by the consumer thread.
+    private long mReadCount;
+    private final AtomicLong mDroppedCount = new AtomicLong();
+
+    public KeystrokeRecorder() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public KeystrokeRecorder(final int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of 2: " + capacity);
+        }
+        mMask = capacity - 1;
+        mKeyClasses = new int[capacity];
+        mDownTimes = new long[capacity];
+        mUpTimes = new long[capacity];
+        mXs = new int[capacity];
+        mYs = new int[capacity];
+        mPressures = new float[capacity];
+        mSizes = new float[capacity];
+    }
+
+    public static int getKeyClass(final int code) {
+        switch (code) {
+        case Constants.CODE_SPACE:
+            return KEY_CLASS_SPACE;
+        case Constants.CODE_DELETE:
+            return KEY_CLASS_DELETE;
+        case Constants.CODE_ENTER:
+        case Constants.CODE_SHIFT_ENTER:
+            return KEY_CLASS_ENTER;
+        case Constants.CODE_SHIFT:
+        case Constants.CODE_CAPSLOCK:
+        case Constants.CODE_SWITCH_ALPHA_SYMBOL:
+        case Constants.CODE_SYMBOL_SHIFT:
+        case Constants.CODE_ALPHA_FROM_EMOJI:
+        case Constants.CODE_EMOJI:
+        case Constants.CODE_LANGUAGE_SWITCH:
+            return KEY_CLASS_MODIFIER;
+        }
+        if (code < Constants.CODE_SPACE) {
+            return KEY_CLASS_OTHER;
+        }
+        if (Character.isLetter(code)) {
+            return KEY_CLASS_LETTER;
+        }
+        if (Character.isDigit(code)) {
+            return KEY_CLASS_DIGIT;
+        }
+        return KEY_CLASS_PUNCTUATION;
+    }
+
+    /**
+     * Records a keystroke. This must always be called from the same thread.
+     */
+    public void record(final int keyClass, final long downTime, final long upTime, final int x,
+            final int y, final float pressure, final float size) {
+        synchronized (this) {
+            final long writeCount = mWriteCount;
+            final int slot = (int)writeCount & mMask;
+            mKeyClasses[slot] = keyClass;
+            mDownTimes[slot] = downTime;
+            mUpTimes[slot] = upTime;
+            mXs[slot] = x;
+            mYs[slot] = y;
+            mPressures[slot] = pressure;
+            mSizes[slot] = size;
+            mWriteCount = writeCount + 1;
+        }
+    }
+
+    public long getRecordedCount() {
+        return mWriteCount;
+    }
+
+    /**
+     * @return the number of keystrokes that were overwritten before being drained.
+     */
+    public long getDroppedCount() {
+        return mDroppedCount.get();
+    }
+
+    /**
+     * Moves the keystrokes recorded since the last call into a batch. This must always be called
+     * from the same thread, which may differ from the recording thread.
+     * @param batch the batch to fill. Its previous contents are discarded.
+     * @return the number of keystrokes in the batch.
+     */
+    public int drainTo(final Batch batch) {
+        batch.mSize = 0;
+        final int capacity = mMask + 1;
+        final long readCount;
+        final int count;
+        synchronized (this) {
+            final long writeCount = mWriteCount;
+            if (writeCount - mReadCount > capacity) {
+                mDroppedCount.addAndGet(writeCount - mReadCount - capacity);
+                mReadCount = writeCount - capacity;
+            }
+            readCount = mReadCount;
+            count = (int)Math.min(writeCount - readCount, batch.capacity());
+            for (int i = 0; i < count; ++i) {
+                final int slot = (int)(readCount + i) & mMask;
+                batch.mKeyClasses[i] = mKeyClasses[slot];
+                batch.mDownTimes[i] = mDownTimes[slot];
+                batch.mUpTimes[i] = mUpTimes[slot];
+                batch.mXs[i] = mXs[slot];
+                batch.mYs[i] = mYs[slot];
+                batch.mPressures[i] = mPressures[slot];
+                batch.mSizes[i] = mSizes[slot];
+            }
+        }
+        batch.mSize = count;
+        mReadCount = readCount + count;
+        return count;
+    }
+
+    /**
+     * A reusable set of keystrokes, as parallel arrays of primitives.
+     */
+    public static final class Batch {
+        public final int[] mKeyClasses;
+        public final long[] mDownTimes;
+        public final long[] mUpTimes;
+        public final int[] mXs;
+        public final int[] mYs;
+        public final float[] mPressures;
+        public final float[] mSizes;
+        int mSize;
+
+        public Batch(final int capacity) {
+            mKeyClasses = new int[capacity];
+            mDownTimes = new long[capacity];
+            mUpTimes = new long[capacity];
+            mXs = new int[capacity];
+            mYs = new int[capacity];
+            mPressures = new float[capacity];
+            mSizes = new float[capacity];
+        }
+
+        public int capacity() {
+            return mKeyClasses.length;
+        }
+
+        public int size() {
+            return mSize;
+        }
+
+        public void setSize(final int size) {
+            if (size < 0 || size > capacity()) {
+                throw new IllegalArgumentException("Bad size " + size + " for capacity "
+                        + capacity());
+            }
+            mSize = size;
+        }
+    }
+}
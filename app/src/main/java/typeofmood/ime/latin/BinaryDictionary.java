@@ -31,6 +31,7 @@ import typeofmood.ime.latin.makedict.DictionaryHeader;
 import typeofmood.ime.latin.makedict.FormatSpec;
 import typeofmood.ime.latin.makedict.FormatSpec.DictionaryOptions;
 import typeofmood.ime.latin.makedict.UnsupportedFormatException;
+import typeofmood.ime.latin.makedict.WeightedString;
 import typeofmood.ime.latin.makedict.WordProperty;
 import typeofmood.ime.latin.settings.SettingsValuesForSuggestion;
 import typeofmood.ime.latin.utils.BinaryDictionaryUtils;
@@ -38,6 +39,7 @@ import typeofmood.ime.latin.utils.JniUtils;
 import typeofmood.ime.latin.utils.WordInputEventForPersonalization;
 
 import java.io.File;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -45,6 +47,7 @@ import java.util.Locale;
 import java.util.Map;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 /**
  * Implements a static, compacted, binary dictionary of standard words.
@@ -96,21 +99,133 @@ public final class BinaryDictionary extends Dictionary {
     private final boolean mIsUpdatable;
     private boolean mHasUpdated;
 
-    private final SparseArray<DicTraverseSession> mDicTraverseSessions = new SparseArray<>();
+    // Sessions held by a dictionary beyond this count are closed, least recently used first,
+    // unless they are being used.
+    private static final int MAX_TRAVERSE_SESSION_COUNT = 8;
 
-    // TODO: There should be a way to remove used DicTraverseSession objects from
-    // {@code mDicTraverseSessions}.
-    private DicTraverseSession getTraverseSession(final int traverseSessionId) {
-        synchronized(mDicTraverseSessions) {
+    // Copy-on-write, so that getting an existing session, which is what almost every call does,
+    // needs no locking. Sessions are only added and removed under
+    // {@link #mDicTraverseSessionsLock}.
+    private volatile SparseArray<DicTraverseSession> mDicTraverseSessions = new SparseArray<>();
+    // Sessions whose id has been released, kept to be reused for new ids, most recently released
+    // last.
+    private final ArrayList<DicTraverseSession> mReleasedDicTraverseSessions = new ArrayList<>();
+    private final Object mDicTraverseSessionsLock = new Object();
+
+    /**
+     * Gets the session of this id, and marks it as being used. {@link DicTraverseSession#release()}
+     * must be called after using it.
+     * @return the session, or null if the session of this id is being used by another thread.
+     */
+    private DicTraverseSession acquireTraverseSession(final int traverseSessionId) {
+        final DicTraverseSession existingSession = mDicTraverseSessions.get(traverseSessionId);
+        if (existingSession != null && existingSession.tryAcquire()) {
+            return existingSession;
+        }
+        synchronized (mDicTraverseSessionsLock) {
             DicTraverseSession traverseSession = mDicTraverseSessions.get(traverseSessionId);
+            if (traverseSession != null) {
+                if (traverseSession.tryAcquire()) {
+                    return traverseSession;
+                }
+                Log.e(TAG, "Traverse session " + traverseSessionId + " is already being used.");
+                return null;
+            }
+            traverseSession = acquireReleasedTraverseSessionLocked();
             if (traverseSession == null) {
+                closeTraverseSessionsOverLimitLocked(MAX_TRAVERSE_SESSION_COUNT - 1);
                 traverseSession = new DicTraverseSession(mLocale, mNativeDict, mDictSize);
-                mDicTraverseSessions.put(traverseSessionId, traverseSession);
+                traverseSession.tryAcquire();
             }
+            final SparseArray<DicTraverseSession> sessions = mDicTraverseSessions.clone();
+            sessions.put(traverseSessionId, traverseSession);
+            mDicTraverseSessions = sessions;
             return traverseSession;
         }
     }
 
+    private DicTraverseSession acquireReleasedTraverseSessionLocked() {
+        // The most recently released session is the most likely to be warm.
+        for (int i = mReleasedDicTraverseSessions.size() - 1; i >= 0; --i) {
+            final DicTraverseSession traverseSession = mReleasedDicTraverseSessions.get(i);
+            if (traverseSession.tryAcquire()) {
+                mReleasedDicTraverseSessions.remove(i);
+                return traverseSession;
+            }
+        }
+        return null;
+    }
+
+    private void closeTraverseSessionsOverLimitLocked(final int maxSessionCount) {
+        // Released sessions go first, oldest first.
+        for (int i = 0; i < mReleasedDicTraverseSessions.size()
+                && mDicTraverseSessions.size() + mReleasedDicTraverseSessions.size()
+                        > maxSessionCount;) {
+            if (mReleasedDicTraverseSessions.get(i).tryClose()) {
+                mReleasedDicTraverseSessions.remove(i);
+            } else {
+                ++i;
+            }
+        }
+        while (mDicTraverseSessions.size() + mReleasedDicTraverseSessions.size()
+                > maxSessionCount) {
+            final SparseArray<DicTraverseSession> sessions = mDicTraverseSessions;
+            final int closedIndex = closeLeastRecentlyUsedTraverseSession(sessions);
+            if (closedIndex < 0) {
+                // The remaining sessions are being used. The limit is exceeded for now.
+                return;
+            }
+            final SparseArray<DicTraverseSession> newSessions = sessions.clone();
+            newSessions.removeAt(closedIndex);
+            mDicTraverseSessions = newSessions;
+        }
+    }
+
+    /**
+     * Closes the least recently used session that is not being used.
+     * @return the index of the closed session, or -1 if all the sessions are being used.
+     */
+    private static int closeLeastRecentlyUsedTraverseSession(
+            final SparseArray<DicTraverseSession> sessions) {
+        final int sessionCount = sessions.size();
+        // Sessions being used can't be closed, so they are skipped by setting their bit.
+        final boolean[] isSkipped = new boolean[sessionCount];
+        for (int attempt = 0; attempt < sessionCount; ++attempt) {
+            int leastRecentlyUsedIndex = -1;
+            for (int i = 0; i < sessionCount; ++i) {
+                if (!isSkipped[i] && (leastRecentlyUsedIndex < 0
+                        || sessions.valueAt(i).getLastUsedTime() - sessions.valueAt(
+                                leastRecentlyUsedIndex).getLastUsedTime() < 0)) {
+                    leastRecentlyUsedIndex = i;
+                }
+            }
+            if (sessions.valueAt(leastRecentlyUsedIndex).tryClose()) {
+                return leastRecentlyUsedIndex;
+            }
+            isSkipped[leastRecentlyUsedIndex] = true;
+        }
+        return -1;
+    }
+
+    /**
+     * Tells that a session id is not going to be used for a while. Its session is kept to be
+     * reused for another id, and is closed first when there are too many sessions.
+     */
+    @Override
+    public void releaseTraverseSession(final int traverseSessionId) {
+        synchronized (mDicTraverseSessionsLock) {
+            final DicTraverseSession traverseSession = mDicTraverseSessions.get(traverseSessionId);
+            if (traverseSession == null) {
+                return;
+            }
+            final SparseArray<DicTraverseSession> sessions = mDicTraverseSessions.clone();
+            sessions.remove(traverseSessionId);
+            mDicTraverseSessions = sessions;
+            mReleasedDicTraverseSessions.add(traverseSession);
+            closeTraverseSessionsOverLimitLocked(MAX_TRAVERSE_SESSION_COUNT);
+        }
+    }
+
     /**
      * Constructs binary dictionary using existing dictionary file.
      * @param filename the name of the file to read through native code.
@@ -180,6 +295,9 @@ public final class BinaryDictionary extends Dictionary {
     private static native int getFormatVersionNative(long dict);
     private static native int getProbabilityNative(long dict, int[] word);
     private static native int getMaxProbabilityOfExactMatchesNative(long dict, int[] word);
+    // The words are packed one after the other in codePoints.
+    private static native void getProbabilitiesNative(long dict, int[] codePoints,
+            int[] codePointCounts, int wordCount, int[] outProbabilities);
     private static native int getNgramProbabilityNative(long dict, int[][] prevWordCodePointArrays,
             boolean[] isBeginningOfSentenceArray, int[] word);
     private static native void getWordPropertyNative(long dict, int[] word,
@@ -190,14 +308,14 @@ public final class BinaryDictionary extends Dictionary {
             ArrayList<int[]> outShortcutTargets, ArrayList<Integer> outShortcutProbabilities);
     private static native int getNextWordNative(long dict, int token, int[] outCodePoints,
             boolean[] outIsBeginningOfSentence);
+    // Fills wordPropertiesExchangeBuffer, a direct buffer laid out as described in
+    // WordPropertiesExchangeBuffer, and returns the next token.
+    private static native int getWordPropertiesNative(long dict, int token,
+            ByteBuffer wordPropertiesExchangeBuffer);
+    // All the inputs and outputs are in suggestionsExchangeBuffer, a direct buffer laid out as
+    // described in SuggestionsExchangeBuffer.
     private static native void getSuggestionsNative(long dict, long proximityInfo,
-            long traverseSession, int[] xCoordinates, int[] yCoordinates, int[] times,
-            int[] pointerIds, int[] inputCodePoints, int inputSize, int[] suggestOptions,
-            int[][] prevWordCodePointArrays, boolean[] isBeginningOfSentenceArray,
-            int prevWordCount, int[] outputSuggestionCount, int[] outputCodePoints,
-            int[] outputScores, int[] outputIndices, int[] outputTypes,
-            int[] outputAutoCommitFirstWordConfidence,
-            float[] inOutWeightOfLangModelVsSpatialModel);
+            long traverseSession, ByteBuffer suggestionsExchangeBuffer);
     private static native boolean addUnigramEntryNative(long dict, int[] word, int probability,
             int[] shortcutTarget, int shortcutProbability, boolean isBeginningOfSentence,
             boolean isNotAWord, boolean isPossiblyOffensive, int timestamp);
@@ -273,10 +391,27 @@ public final class BinaryDictionary extends Dictionary {
         if (!isValidDictionary()) {
             return null;
         }
-        final DicTraverseSession session = getTraverseSession(sessionId);
+        final DicTraverseSession session = acquireTraverseSession(sessionId);
+        if (session == null) {
+            return null;
+        }
+        try {
+            return getSuggestionsWithSession(session, composedData, ngramContext,
+                    proximityInfoHandle, settingsValuesForSuggestion, weightForLocale,
+                    inOutWeightOfLangModelVsSpatialModel);
+        } finally {
+            session.release();
+        }
+    }
+
+    private ArrayList<SuggestedWordInfo> getSuggestionsWithSession(
+            final DicTraverseSession session, final ComposedData composedData,
+            final NgramContext ngramContext, final long proximityInfoHandle,
+            final SettingsValuesForSuggestion settingsValuesForSuggestion,
+            final float weightForLocale, final float[] inOutWeightOfLangModelVsSpatialModel) {
+        final SuggestionsExchangeBuffer exchangeBuffer = session.mSuggestionsExchangeBuffer;
         Arrays.fill(session.mInputCodePoints, Constants.NOT_A_CODE);
-        ngramContext.outputToArray(session.mPrevWordCodePointArrays,
-                session.mIsBeginningOfSentenceArray);
+        exchangeBuffer.setNgramContext(ngramContext);
         final InputPointers inputPointers = composedData.mInputPointers;
         final boolean isGesture = composedData.mIsBatchMode;
         final int inputSize;
@@ -290,51 +425,41 @@ public final class BinaryDictionary extends Dictionary {
         } else {
             inputSize = inputPointers.getPointerSize();
         }
+        exchangeBuffer.setInputCodePoints(session.mInputCodePoints);
+        exchangeBuffer.setInputPointers(inputPointers, inputSize);
         session.mNativeSuggestOptions.setUseFullEditDistance(mUseFullEditDistance);
         session.mNativeSuggestOptions.setIsGesture(isGesture);
         session.mNativeSuggestOptions.setBlockOffensiveWords(
                 settingsValuesForSuggestion.mBlockPotentiallyOffensive);
         session.mNativeSuggestOptions.setWeightForLocale(weightForLocale);
+        exchangeBuffer.setSuggestOptions(session.mNativeSuggestOptions.getOptions());
         if (inOutWeightOfLangModelVsSpatialModel != null) {
-            session.mInputOutputWeightOfLangModelVsSpatialModel[0] =
-                    inOutWeightOfLangModelVsSpatialModel[0];
+            exchangeBuffer.setWeightOfLangModelVsSpatialModel(
+                    inOutWeightOfLangModelVsSpatialModel[0]);
         } else {
-            session.mInputOutputWeightOfLangModelVsSpatialModel[0] =
-                    Dictionary.NOT_A_WEIGHT_OF_LANG_MODEL_VS_SPATIAL_MODEL;
+            exchangeBuffer.setWeightOfLangModelVsSpatialModel(
+                    Dictionary.NOT_A_WEIGHT_OF_LANG_MODEL_VS_SPATIAL_MODEL);
         }
         // TOOD: Pass multiple previous words information for n-gram.
-        getSuggestionsNative(mNativeDict, proximityInfoHandle,
-                getTraverseSession(sessionId).getSession(), inputPointers.getXCoordinates(),
-                inputPointers.getYCoordinates(), inputPointers.getTimes(),
-                inputPointers.getPointerIds(), session.mInputCodePoints, inputSize,
-                session.mNativeSuggestOptions.getOptions(), session.mPrevWordCodePointArrays,
-                session.mIsBeginningOfSentenceArray, ngramContext.getPrevWordCount(),
-                session.mOutputSuggestionCount, session.mOutputCodePoints, session.mOutputScores,
-                session.mSpaceIndices, session.mOutputTypes,
-                session.mOutputAutoCommitFirstWordConfidence,
-                session.mInputOutputWeightOfLangModelVsSpatialModel);
+        getSuggestionsNative(mNativeDict, proximityInfoHandle, session.getSession(),
+                exchangeBuffer.getBuffer());
         if (inOutWeightOfLangModelVsSpatialModel != null) {
             inOutWeightOfLangModelVsSpatialModel[0] =
-                    session.mInputOutputWeightOfLangModelVsSpatialModel[0];
+                    exchangeBuffer.getWeightOfLangModelVsSpatialModel();
         }
-        final int count = session.mOutputSuggestionCount[0];
+        final int count = exchangeBuffer.getSuggestionCount();
         final ArrayList<SuggestedWordInfo> suggestions = new ArrayList<>();
         for (int j = 0; j < count; ++j) {
-            final int start = j * DICTIONARY_MAX_WORD_LENGTH;
-            int len = 0;
-            while (len < DICTIONARY_MAX_WORD_LENGTH
-                    && session.mOutputCodePoints[start + len] != 0) {
-                ++len;
-            }
-            if (len > 0) {
+            final String word = exchangeBuffer.getSuggestedWord(j);
+            if (word != null) {
                 suggestions.add(new SuggestedWordInfo(
-                        new String(session.mOutputCodePoints, start, len),
+                        word,
                         "" /* prevWordsContext */,
-                        (int)(session.mOutputScores[j] * weightForLocale),
-                        session.mOutputTypes[j],
+                        (int)(exchangeBuffer.getScore(j) * weightForLocale),
+                        exchangeBuffer.getType(j),
                         this /* sourceDict */,
-                        session.mSpaceIndices[j] /* indexOfTouchPointOfSecondWord */,
-                        session.mOutputAutoCommitFirstWordConfidence[0]));
+                        exchangeBuffer.getSpaceIndex(j) /* indexOfTouchPointOfSecondWord */,
+                        exchangeBuffer.getAutoCommitFirstWordConfidence()));
             }
         }
         return suggestions;
@@ -362,6 +487,74 @@ public final class BinaryDictionary extends Dictionary {
         return getProbabilityNative(mNativeDict, codePoints);
     }
 
+    @Override
+    public void markWordsInDictionary(final String[] words, final boolean[] inOutIsInDictionary) {
+        final int[] probabilities = new int[words.length];
+        getProbabilities(words, inOutIsInDictionary /* wordsToSkip */, probabilities);
+        for (int i = 0; i < words.length; i++) {
+            if (probabilities[i] != NOT_A_PROBABILITY) {
+                inOutIsInDictionary[i] = true;
+            }
+        }
+    }
+
+    @Override
+    public void getFrequencies(final String[] words, final int[] outFrequencies) {
+        getProbabilities(words, null /* wordsToSkip */, outFrequencies);
+    }
+
+    /**
+     * Gets the probabilities of many words with a single native call.
+     * @param wordsToSkip if not null, the words for which it is true are not looked up and get
+     * NOT_A_PROBABILITY.
+     */
+    private void getProbabilities(final String[] words, final boolean[] wordsToSkip,
+            final int[] outProbabilities) {
+        int wordCount = 0;
+        int codePointCount = 0;
+        for (int i = 0; i < words.length; i++) {
+            outProbabilities[i] = NOT_A_PROBABILITY;
+            if (!needsLookUp(words, wordsToSkip, i)) {
+                continue;
+            }
+            ++wordCount;
+            codePointCount += words[i].codePointCount(0, words[i].length());
+        }
+        if (wordCount == 0) {
+            return;
+        }
+        final int[] codePoints = new int[codePointCount];
+        final int[] codePointCounts = new int[wordCount];
+        int wordIndex = 0;
+        int codePointIndex = 0;
+        for (int i = 0; i < words.length; i++) {
+            if (!needsLookUp(words, wordsToSkip, i)) {
+                continue;
+            }
+            final String word = words[i];
+            final int start = codePointIndex;
+            for (int index = 0; index < word.length(); index = word.offsetByCodePoints(index, 1)) {
+                codePoints[codePointIndex++] = word.codePointAt(index);
+            }
+            codePointCounts[wordIndex++] = codePointIndex - start;
+        }
+        final int[] probabilities = new int[wordCount];
+        getProbabilitiesNative(mNativeDict, codePoints, codePointCounts, wordCount,
+                probabilities);
+        wordIndex = 0;
+        for (int i = 0; i < words.length; i++) {
+            if (!needsLookUp(words, wordsToSkip, i)) {
+                continue;
+            }
+            outProbabilities[i] = probabilities[wordIndex++];
+        }
+    }
+
+    private static boolean needsLookUp(final String[] words, final boolean[] wordsToSkip,
+            final int index) {
+        return (wordsToSkip == null || !wordsToSkip[index]) && !TextUtils.isEmpty(words[index]);
+    }
+
     @Override
     public int getMaxFrequencyOfExactMatches(final String word) {
         if (TextUtils.isEmpty(word)) {
@@ -417,6 +610,34 @@ public final class BinaryDictionary extends Dictionary {
                 outNgramTargets, outNgramProbabilityInfo);
     }
 
+    /**
+     * Gets the shortcut targets of a word, which only the word lists have. Whitelist entries are
+     * shortcuts with {@link FormatSpec#SHORTCUT_WHITELIST_FREQUENCY}.
+     * @return the shortcut targets, with their probabilities, or an empty list.
+     */
+    @Nonnull
+    public ArrayList<WeightedString> getShortcutTargets(final String word) {
+        final ArrayList<WeightedString> shortcutTargets = new ArrayList<>();
+        if (TextUtils.isEmpty(word)) {
+            return shortcutTargets;
+        }
+        final ArrayList<int[]> outShortcutTargets = new ArrayList<>();
+        final ArrayList<Integer> outShortcutProbabilities = new ArrayList<>();
+        getWordPropertyNative(mNativeDict, StringUtils.toCodePointArray(word),
+                false /* isBeginningOfSentence */, new int[DICTIONARY_MAX_WORD_LENGTH],
+                new boolean[FORMAT_WORD_PROPERTY_OUTPUT_FLAG_COUNT],
+                new int[FORMAT_WORD_PROPERTY_OUTPUT_PROBABILITY_INFO_COUNT],
+                new ArrayList<int[][]>(), new ArrayList<boolean[]>(), new ArrayList<int[]>(),
+                new ArrayList<int[]>(), outShortcutTargets, outShortcutProbabilities);
+        for (int i = 0; i < outShortcutTargets.size(); i++) {
+            shortcutTargets.add(new WeightedString(
+                    StringUtils.getStringFromNullTerminatedCodePointArray(
+                            outShortcutTargets.get(i)),
+                    outShortcutProbabilities.get(i)));
+        }
+        return shortcutTargets;
+    }
+
     public static class GetNextWordPropertyResult {
         public WordProperty mWordProperty;
         public int mNextToken;
@@ -441,16 +662,82 @@ public final class BinaryDictionary extends Dictionary {
                 getWordProperty(word, isBeginningOfSentence[0]), nextToken);
     }
 
+    /**
+     * Receives the word properties of a dictionary as it is iterated.
+     */
+    public interface WordPropertyConsumer {
+        /**
+         * @return false to stop iterating.
+         */
+        boolean onWordProperty(final WordProperty wordProperty);
+    }
+
+    /**
+     * Iterates all the words in the dictionary with their properties. Much faster than
+     * {@link #getNextWordProperty(int)}, as native code outputs the properties of many words at
+     * once to a buffer that is reused for the whole iteration. The dictionary must not be updated
+     * while it is iterated.
+     * @return false if the consumer stopped the iteration.
+     */
+    public boolean forEachWordProperty(final WordPropertyConsumer consumer) {
+        if (!isValidDictionary()) {
+            return true;
+        }
+        final WordPropertiesExchangeBuffer buffer = new WordPropertiesExchangeBuffer();
+        int token = 0;
+        do {
+            token = getWordPropertiesNative(mNativeDict, token, buffer.getBuffer());
+            buffer.startReading();
+            WordProperty wordProperty;
+            while (null != (wordProperty = buffer.readNextWordProperty())) {
+                if (!consumer.onWordProperty(wordProperty)) {
+                    return false;
+                }
+            }
+            if (buffer.hasSkippedWord() && !consumer.onWordProperty(getWordProperty(
+                    buffer.getSkippedWord(), buffer.isSkippedWordBeginningOfSentence()))) {
+                return false;
+            }
+        } while (token != 0);
+        return true;
+    }
+
+    /**
+     * Same as {@link #getNextWordProperty(int)}, but only gets the word, which is much faster.
+     * @param outCodePoints receives the code points of the word, followed by 0 if it is shorter
+     * than DICTIONARY_MAX_WORD_LENGTH, which must be the length of the array.
+     * @param outIsBeginningOfSentence receives whether the word is the beginning of sentence.
+     * @return the token to get the next word with, which is 0 after the last word.
+     */
+    public int getNextWord(final int token, final int[] outCodePoints,
+            final boolean[] outIsBeginningOfSentence) {
+        Arrays.fill(outCodePoints, 0);
+        return getNextWordNative(mNativeDict, token, outCodePoints, outIsBeginningOfSentence);
+    }
+
     // Add a unigram entry to binary dictionary with unigram attributes in native code.
     public boolean addUnigramEntry(
             final String word, final int probability, final boolean isBeginningOfSentence,
             final boolean isNotAWord, final boolean isPossiblyOffensive, final int timestamp) {
+        return addUnigramEntry(word, probability, null /* shortcutTarget */,
+                0 /* shortcutProbability */, isBeginningOfSentence, isNotAWord,
+                isPossiblyOffensive, timestamp);
+    }
+
+    // Add a unigram entry to binary dictionary with unigram attributes and a shortcut target in
+    // native code. The shortcut target is added to the ones the word already has.
+    public boolean addUnigramEntry(final String word, final int probability,
+            @Nullable final String shortcutTarget, final int shortcutProbability,
+            final boolean isBeginningOfSentence, final boolean isNotAWord,
+            final boolean isPossiblyOffensive, final int timestamp) {
         if (word == null || (word.isEmpty() && !isBeginningOfSentence)) {
             return false;
         }
         final int[] codePoints = StringUtils.toCodePointArray(word);
+        final int[] shortcutTargetCodePoints = TextUtils.isEmpty(shortcutTarget) ? null
+                : StringUtils.toCodePointArray(shortcutTarget);
         if (!addUnigramEntryNative(mNativeDict, codePoints, probability,
-                null /* shortcutTargetCodePoints */, 0 /* shortcutProbability */,
+                shortcutTargetCodePoints, shortcutProbability,
                 isBeginningOfSentence, isNotAWord, isPossiblyOffensive, timestamp)) {
             return false;
         }
@@ -622,6 +909,25 @@ public final class BinaryDictionary extends Dictionary {
         }
     }
 
+    /**
+     * @return the number of unigrams and bigrams in the dictionary, which grows with its size.
+     */
+    public int getEntryCount() {
+        if (!isValidDictionary()) {
+            return 0;
+        }
+        return getCountProperty(UNIGRAM_COUNT_QUERY) + getCountProperty(BIGRAM_COUNT_QUERY);
+    }
+
+    private int getCountProperty(final String query) {
+        try {
+            return Integer.parseInt(getPropertyNative(mNativeDict, query));
+        } catch (final NumberFormatException e) {
+            // Only updatable dictionaries answer.
+            return 0;
+        }
+    }
+
     @UsedForTesting
     public String getPropertyForGettingStats(final String query) {
         if (!isValidDictionary()) {
@@ -637,15 +943,20 @@ public final class BinaryDictionary extends Dictionary {
 
     @Override
     public void close() {
-        synchronized (mDicTraverseSessions) {
-            final int sessionsSize = mDicTraverseSessions.size();
+        synchronized (mDicTraverseSessionsLock) {
+            final SparseArray<DicTraverseSession> sessions = mDicTraverseSessions;
+            final int sessionsSize = sessions.size();
             for (int index = 0; index < sessionsSize; ++index) {
-                final DicTraverseSession traverseSession = mDicTraverseSessions.valueAt(index);
+                final DicTraverseSession traverseSession = sessions.valueAt(index);
                 if (traverseSession != null) {
                     traverseSession.close();
                 }
             }
-            mDicTraverseSessions.clear();
+            mDicTraverseSessions = new SparseArray<>();
+            for (final DicTraverseSession traverseSession : mReleasedDicTraverseSessions) {
+                traverseSession.close();
+            }
+            mReleasedDicTraverseSessions.clear();
         }
         closeInternalLocked();
     }
@@ -411,7 +411,8 @@ public final class BinaryDictionaryFileDumper {
      *
      * This will query a content provider for word list data for a given locale, and copy the
      * files locally so that they can be mmap'ed. This may overwrite previously cached word lists
-     * with newer versions if a newer version is made available by the content provider.
+     * with newer versions if a newer version is made available by the content provider. The
+     * word lists of the locale are then merged in the background.
      * @throw FileNotFoundException if the provider returns non-existent data.
      * @throw IOException if the provider-returned data could not be read.
      */
@@ -439,6 +440,9 @@ public final class BinaryDictionaryFileDumper {
         } finally {
             providerClient.release();
         }
+        // The word lists of the locale are merged now rather than when they are loaded, as it
+        // takes a while.
+        WordListMerger.asyncMergeInstalledWordLists(context, locale);
     }
 
     /**
@@ -21,28 +21,17 @@ import typeofmood.ime.latin.define.DecoderSpecificConstants;
 import typeofmood.ime.latin.utils.JniUtils;
 
 import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public final class DicTraverseSession {
     static {
         JniUtils.loadNativeLibrary();
     }
-    // Must be equal to MAX_RESULTS in native/jni/src/defines.h
-    private static final int MAX_RESULTS = 18;
     public final int[] mInputCodePoints =
             new int[DecoderSpecificConstants.DICTIONARY_MAX_WORD_LENGTH];
-    public final int[][] mPrevWordCodePointArrays =
-            new int[DecoderSpecificConstants.MAX_PREV_WORD_COUNT_FOR_N_GRAM][];
-    public final boolean[] mIsBeginningOfSentenceArray =
-            new boolean[DecoderSpecificConstants.MAX_PREV_WORD_COUNT_FOR_N_GRAM];
-    public final int[] mOutputSuggestionCount = new int[1];
-    public final int[] mOutputCodePoints =
-            new int[DecoderSpecificConstants.DICTIONARY_MAX_WORD_LENGTH * MAX_RESULTS];
-    public final int[] mSpaceIndices = new int[MAX_RESULTS];
-    public final int[] mOutputScores = new int[MAX_RESULTS];
-    public final int[] mOutputTypes = new int[MAX_RESULTS];
-    // Only one result is ever used
-    public final int[] mOutputAutoCommitFirstWordConfidence = new int[1];
-    public final float[] mInputOutputWeightOfLangModelVsSpatialModel = new float[1];
+    // Holds all the inputs and outputs of getting suggestions with this session.
+    final SuggestionsExchangeBuffer mSuggestionsExchangeBuffer = new SuggestionsExchangeBuffer();
 
     public final NativeSuggestOptions mNativeSuggestOptions = new NativeSuggestOptions();
 
@@ -50,15 +39,76 @@ public final class DicTraverseSession {
     private static native void initDicTraverseSessionNative(long nativeDicTraverseSession,
             long dictionary, int[] previousWord, int previousWordLength);
     private static native void releaseDicTraverseSessionNative(long nativeDicTraverseSession);
+    private static native long getDicTraverseSessionSizeNative(long dictSize);
+
+    // Gauges of the native sessions that are currently open in this process.
+    private static final AtomicInteger sLiveSessionCount = new AtomicInteger();
+    private static final AtomicLong sLiveSessionNativeBytes = new AtomicLong();
+
+    private static final int STATE_FREE = 0;
+    private static final int STATE_IN_USE = 1;
+    private static final int STATE_CLOSED = -1;
+    // Lets a pool close a session only when nobody is using it.
+    private final AtomicInteger mState = new AtomicInteger(STATE_FREE);
+    // Only used to find the least recently used session of a pool.
+    private volatile long mLastUsedTime;
 
     private long mNativeDicTraverseSession;
+    private final long mNativeSizeInBytes;
 
     public DicTraverseSession(Locale locale, long dictionary, long dictSize) {
         mNativeDicTraverseSession = createNativeDicTraverseSession(
                 locale != null ? locale.toString() : "", dictSize);
+        mNativeSizeInBytes = getDicTraverseSessionSizeNative(dictSize);
+        sLiveSessionCount.incrementAndGet();
+        sLiveSessionNativeBytes.addAndGet(mNativeSizeInBytes);
         initSession(dictionary);
     }
 
+    public static int getLiveSessionCount() {
+        return sLiveSessionCount.get();
+    }
+
+    /**
+     * @return the approximate native memory held by the sessions that are currently open.
+     */
+    public static long getLiveSessionNativeBytes() {
+        return sLiveSessionNativeBytes.get();
+    }
+
+    /**
+     * Marks this session as being used. {@link #release()} must be called after using it.
+     * @return false if the session is being used or has been closed, in which case it must not be
+     * used.
+     */
+    public boolean tryAcquire() {
+        if (!mState.compareAndSet(STATE_FREE, STATE_IN_USE)) {
+            return false;
+        }
+        mLastUsedTime = System.nanoTime();
+        return true;
+    }
+
+    public void release() {
+        mState.compareAndSet(STATE_IN_USE, STATE_FREE);
+    }
+
+    public long getLastUsedTime() {
+        return mLastUsedTime;
+    }
+
+    /**
+     * Closes this session unless it is being used.
+     * @return whether the session has been closed.
+     */
+    public boolean tryClose() {
+        if (!mState.compareAndSet(STATE_FREE, STATE_CLOSED)) {
+            return false;
+        }
+        closeInternal();
+        return true;
+    }
+
     public long getSession() {
         return mNativeDicTraverseSession;
     }
@@ -76,14 +126,17 @@ public final class DicTraverseSession {
         return setDicTraverseSessionNative(locale, dictSize);
     }
 
-    private void closeInternal() {
+    private synchronized void closeInternal() {
         if (mNativeDicTraverseSession != 0) {
             releaseDicTraverseSessionNative(mNativeDicTraverseSession);
             mNativeDicTraverseSession = 0;
+            sLiveSessionCount.decrementAndGet();
+            sLiveSessionNativeBytes.addAndGet(-mNativeSizeInBytes);
         }
     }
 
     public void close() {
+        mState.set(STATE_CLOSED);
         closeInternal();
     }
 
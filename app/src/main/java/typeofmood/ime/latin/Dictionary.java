@@ -133,6 +133,42 @@ public abstract class Dictionary {
         return NOT_A_PROBABILITY;
     }
 
+    /**
+     * Same as {@link #isValidWord(String)} for many words at once.
+     * @param words the words to search for.
+     * @param inOutIsValid set to true for each word that is valid. Words for which it already is
+     * true are not searched for.
+     */
+    public void markValidWords(final String[] words, final boolean[] inOutIsValid) {
+        markWordsInDictionary(words, inOutIsValid);
+    }
+
+    /**
+     * Same as {@link #isInDictionary(String)} for many words at once. Dictionaries that can look
+     * up many words faster than one by one override this.
+     * @param words the words to search for.
+     * @param inOutIsInDictionary set to true for each word that is in the dictionary. Words for
+     * which it already is true are not searched for.
+     */
+    public void markWordsInDictionary(final String[] words, final boolean[] inOutIsInDictionary) {
+        for (int i = 0; i < words.length; i++) {
+            if (!inOutIsInDictionary[i] && isInDictionary(words[i])) {
+                inOutIsInDictionary[i] = true;
+            }
+        }
+    }
+
+    /**
+     * Same as {@link #getFrequency(String)} for many words at once.
+     * @param words the words to get the frequency of.
+     * @param outFrequencies receives the frequency of each word.
+     */
+    public void getFrequencies(final String[] words, final int[] outFrequencies) {
+        for (int i = 0; i < words.length; i++) {
+            outFrequencies[i] = getFrequency(words[i]);
+        }
+    }
+
     /**
      * Compares the contents of the character array with the typed word and returns true if they
      * are the same.
@@ -160,6 +196,14 @@ public abstract class Dictionary {
         // empty base implementation
     }
 
+    /**
+     * Override to free what is kept for a session id that is not going to be used for a while.
+     * @param sessionId the session id passed to {@link #getSuggestions}.
+     */
+    public void releaseTraverseSession(final int sessionId) {
+        // empty base implementation
+    }
+
     /**
      * Subclasses may override to indicate that this Dictionary is not yet properly initialized.
      */
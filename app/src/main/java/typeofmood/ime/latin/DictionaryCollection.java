@@ -23,6 +23,7 @@ import typeofmood.ime.latin.common.ComposedData;
 import typeofmood.ime.latin.settings.SettingsValuesForSuggestion;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Locale;
@@ -99,6 +100,25 @@ public final class DictionaryCollection extends Dictionary {
         return maxFreq;
     }
 
+    @Override
+    public void markWordsInDictionary(final String[] words, final boolean[] inOutIsInDictionary) {
+        for (int i = mDictionaries.size() - 1; i >= 0; --i) {
+            mDictionaries.get(i).markWordsInDictionary(words, inOutIsInDictionary);
+        }
+    }
+
+    @Override
+    public void getFrequencies(final String[] words, final int[] outFrequencies) {
+        Arrays.fill(outFrequencies, 0, words.length, -1);
+        final int[] frequencies = new int[words.length];
+        for (int i = mDictionaries.size() - 1; i >= 0; --i) {
+            mDictionaries.get(i).getFrequencies(words, frequencies);
+            for (int j = 0; j < words.length; j++) {
+                outFrequencies[j] = Math.max(frequencies[j], outFrequencies[j]);
+            }
+        }
+    }
+
     @Override
     public int getMaxFrequencyOfExactMatches(final String word) {
         int maxFreq = -1;
@@ -114,6 +134,13 @@ public final class DictionaryCollection extends Dictionary {
         return !mDictionaries.isEmpty();
     }
 
+    @Override
+    public void releaseTraverseSession(final int sessionId) {
+        for (final Dictionary dict : mDictionaries) {
+            dict.releaseTraverseSession(sessionId);
+        }
+    }
+
     @Override
     public void close() {
         for (final Dictionary dict : mDictionaries)
@@ -27,6 +27,10 @@ public class DictionaryDumpBroadcastReceiver extends BroadcastReceiver {
     private static final String DOMAIN = "typeofmood.ime.latin";
     public static final String DICTIONARY_DUMP_INTENT_ACTION = DOMAIN + ".DICT_DUMP";
     public static final String DICTIONARY_NAME_KEY = "dictName";
+    // Optional: export the dictionary to a file in this format instead of dumping it to the log.
+    public static final String EXPORT_FORMAT_KEY = "exportFormat";
+    public static final String EXPORT_FORMAT_TEXT = "text";
+    public static final String EXPORT_FORMAT_BINARY = "binary";
 
     final LatinIME mLatinIme;
 
@@ -44,7 +48,16 @@ public class DictionaryDumpBroadcastReceiver extends BroadcastReceiver {
                       "but the dictionary name is not set.");
                 return;
             }
-            mLatinIme.dumpDictionaryForDebug(dictName);
+            final String exportFormat = intent.getStringExtra(EXPORT_FORMAT_KEY);
+            if (exportFormat == null) {
+                mLatinIme.dumpDictionaryForDebug(dictName);
+            } else if (exportFormat.equals(EXPORT_FORMAT_TEXT)
+                    || exportFormat.equals(EXPORT_FORMAT_BINARY)) {
+                mLatinIme.exportDictionaryForDebug(dictName,
+                        exportFormat.equals(EXPORT_FORMAT_TEXT));
+            } else {
+                Log.e(TAG, "Unknown dictionary export format: " + exportFormat);
+            }
         }
     }
 }
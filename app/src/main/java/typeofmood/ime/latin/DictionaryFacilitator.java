@@ -103,6 +103,12 @@ public interface DictionaryFacilitator {
      */
     void onFinishInput(Context context);
 
+    /**
+     * Called when the input view of {@link LatinIME} is hidden, after {@link #onStartInput}.
+     * Runs the maintenance of the dictionaries that is deferred while the user types.
+     */
+    void onFinishInputView();
+
     boolean isActive();
 
     Locale getLocale();
@@ -132,6 +138,20 @@ public interface DictionaryFacilitator {
 
     void closeDictionaries();
 
+    /**
+     * Opens the main dictionary of the locale the user is the most likely to switch to next in
+     * the background, so that suggestions are available as soon as the user switches to it.
+     * @param enabledLocales the locales the user can switch to.
+     */
+    void preloadMainDictionaryForNextLocale(final Context context,
+            final List<Locale> enabledLocales);
+
+    /**
+     * Tells the dictionaries that a session id is not going to be used for a while, so that they
+     * can reuse or free what they keep for it.
+     */
+    void releaseTraverseSession(final int sessionId);
+
     @UsedForTesting
     ExpandableBinaryDictionary getSubDictForTesting(final String dictName);
 
@@ -164,6 +184,13 @@ public interface DictionaryFacilitator {
 
     boolean isValidSpellingWord(final String word);
 
+    /**
+     * Same as {@link #isValidSpellingWord(String)} for many words at once, each dictionary
+     * looking up all of them in one go.
+     * @param outIsValid receives whether each word is valid.
+     */
+    void isValidSpellingWords(final String[] words, final boolean[] outIsValid);
+
     boolean isValidSuggestionWord(final String word);
 
     boolean clearUserHistoryDictionary(final Context context);
@@ -172,5 +199,11 @@ public interface DictionaryFacilitator {
 
     void dumpDictionaryForDebug(final String dictName);
 
+    /**
+     * Writes the words of a dynamic dictionary to a file in the background.
+     * @param asText whether to write the combined format, or else a compact binary format.
+     */
+    void exportDictionaryForDebug(final String dictName, final File file, final boolean asText);
+
     @Nonnull List<DictionaryStats> getDictionaryStats(final Context context);
 }
@@ -72,6 +72,7 @@ public class DictionaryFacilitatorImpl implements DictionaryFacilitator {
     private volatile CountDownLatch mLatchForWaitingLoadingMainDictionaries = new CountDownLatch(0);
     // To synchronize assigning mDictionaryGroup to ensure closing dictionaries.
     private final Object mLock = new Object();
+    private final MainDictionaryPreloader mMainDictionaryPreloader = new MainDictionaryPreloader();
 
     public static final Map<String, Class<? extends ExpandableBinaryDictionary>>
             DICT_TYPE_TO_CLASS = new HashMap<>();
@@ -221,12 +222,25 @@ public class DictionaryFacilitatorImpl implements DictionaryFacilitator {
 
     @Override
     public void onStartInput() {
+        ExpandableBinaryDictionary.setIsInputViewShown(true);
     }
 
     @Override
     public void onFinishInput(Context context) {
     }
 
+    @Override
+    public void onFinishInputView() {
+        ExpandableBinaryDictionary.setIsInputViewShown(false);
+        final DictionaryGroup dictionaryGroup = mDictionaryGroup;
+        for (final String dictType : DYNAMIC_DICTIONARY_TYPES) {
+            final ExpandableBinaryDictionary dictionary = dictionaryGroup.getSubDict(dictType);
+            if (dictionary != null) {
+                dictionary.asyncMaintainBinaryDictionary();
+            }
+        }
+    }
+
     @Override
     public boolean isActive() {
         return mDictionaryGroup.mLocale != null;
@@ -285,6 +299,10 @@ public class DictionaryFacilitatorImpl implements DictionaryFacilitator {
             @Nullable final String account,
             final String dictNamePrefix,
             @Nullable final DictionaryInitializationListener listener) {
+        if (!newLocale.equals(mDictionaryGroup.mLocale)) {
+            // Don't let a main dictionary preloaded for a wrong prediction slow this switch down.
+            mMainDictionaryPreloader.cancelPreload();
+        }
         final HashMap<Locale, ArrayList<String>> existingDictionariesToCleanup = new HashMap<>();
         // TODO: Make subDictTypesToUse configurable by resource or a static final list.
         final HashSet<String> subDictTypesToUse = new HashSet<>();
@@ -323,9 +341,13 @@ public class DictionaryFacilitatorImpl implements DictionaryFacilitator {
         final boolean noExistingDictsForThisLocale = (null == dictionaryGroupForLocale);
 
         final Dictionary mainDict;
-        if (forceReloadMainDictionary || noExistingDictsForThisLocale
-                || !dictionaryGroupForLocale.hasDict(Dictionary.TYPE_MAIN, account)) {
+        if (forceReloadMainDictionary) {
             mainDict = null;
+            // The kept main dictionary may be out of date as well.
+            mMainDictionaryPreloader.close();
+        } else if (noExistingDictsForThisLocale
+                || !dictionaryGroupForLocale.hasDict(Dictionary.TYPE_MAIN, account)) {
+            mainDict = mMainDictionaryPreloader.take(newLocale);
         } else {
             mainDict = dictionaryGroupForLocale.getDict(Dictionary.TYPE_MAIN);
             dictTypesToCleanupForLocale.remove(Dictionary.TYPE_MAIN);
@@ -351,13 +373,25 @@ public class DictionaryFacilitatorImpl implements DictionaryFacilitator {
 
         // Replace Dictionaries.
         final DictionaryGroup oldDictionaryGroup;
+        final boolean isMainDictionaryReady;
         synchronized (mLock) {
             oldDictionaryGroup = mDictionaryGroup;
             mDictionaryGroup = newDictionaryGroup;
-            if (hasAtLeastOneUninitializedMainDictionary()) {
+            isMainDictionaryReady = !hasAtLeastOneUninitializedMainDictionary();
+            if (!isMainDictionaryReady) {
                 asyncReloadUninitializedMainDictionaries(context, newLocale, listener);
             }
         }
+        final Locale oldLocale = oldDictionaryGroup.mLocale;
+        if (oldLocale != null && !oldLocale.equals(newLocale)) {
+            mMainDictionaryPreloader.onLocaleSwitched(oldLocale, newLocale,
+                    isMainDictionaryReady);
+            // The user may well switch back, so the main dictionary of the old locale is kept.
+            final Dictionary oldMainDict = oldDictionaryGroup.getDict(Dictionary.TYPE_MAIN);
+            if (oldMainDict != null && !forceReloadMainDictionary) {
+                mMainDictionaryPreloader.keep(oldLocale, oldMainDict);
+            }
+        }
         if (listener != null) {
             listener.onUpdateMainDictionaryAvailability(hasAtLeastOneInitializedMainDictionary());
         }
@@ -411,6 +445,7 @@ public class DictionaryFacilitatorImpl implements DictionaryFacilitator {
                 mainDict.close();
             }
         }
+        mMainDictionaryPreloader.onMainDictionaryLoaded(locale);
         if (listener != null) {
             listener.onUpdateMainDictionaryAvailability(hasAtLeastOneInitializedMainDictionary());
         }
@@ -454,11 +489,37 @@ public class DictionaryFacilitatorImpl implements DictionaryFacilitator {
             dictionaryGroupToClose = mDictionaryGroup;
             mDictionaryGroup = new DictionaryGroup();
         }
+        mMainDictionaryPreloader.close();
         for (final String dictType : ALL_DICTIONARY_TYPES) {
             dictionaryGroupToClose.closeDict(dictType);
         }
     }
 
+    @Override
+    public void preloadMainDictionaryForNextLocale(final Context context,
+            final List<Locale> enabledLocales) {
+        final Locale currentLocale = mDictionaryGroup.mLocale;
+        if (currentLocale == null) {
+            return;
+        }
+        final Locale nextLocale =
+                mMainDictionaryPreloader.predictNextLocale(currentLocale, enabledLocales);
+        if (nextLocale != null) {
+            mMainDictionaryPreloader.preload(context, nextLocale);
+        }
+    }
+
+    @Override
+    public void releaseTraverseSession(final int sessionId) {
+        final DictionaryGroup dictionaryGroup = mDictionaryGroup;
+        for (final String dictType : ALL_DICTIONARY_TYPES) {
+            final Dictionary dictionary = dictionaryGroup.getDict(dictType);
+            if (dictionary != null) {
+                dictionary.releaseTraverseSession(sessionId);
+            }
+        }
+    }
+
     @UsedForTesting
     public ExpandableBinaryDictionary getSubDictForTesting(final String dictName) {
         return mDictionaryGroup.getSubDict(dictName);
@@ -524,18 +585,15 @@ public class DictionaryFacilitatorImpl implements DictionaryFacilitator {
         }
 
         final String lowerCaseWord = originalWord.toLowerCase(getLocale());
-        final boolean lowerCaseValid = isValidSpellingWord(lowerCaseWord);
-        mValidSpellingWordWriteCache.put(lowerCaseWord, lowerCaseValid);
-
         final String capitalWord =
                 StringUtils.capitalizeFirstAndDowncaseRest(originalWord, getLocale());
-        final boolean capitalValid;
-        if (lowerCaseValid) {
-            // The lower case form of the word is valid, so the upper case must be valid.
-            capitalValid = true;
-        } else {
-            capitalValid = isValidSpellingWord(capitalWord);
-        }
+        final boolean[] isValid = new boolean[2];
+        isValidSpellingWords(new String[] { lowerCaseWord, capitalWord }, isValid);
+        final boolean lowerCaseValid = isValid[0];
+        mValidSpellingWordWriteCache.put(lowerCaseWord, lowerCaseValid);
+
+        // If the lower case form of the word is valid, the upper case must be valid.
+        final boolean capitalValid = lowerCaseValid || isValid[1];
         mValidSpellingWordWriteCache.put(capitalWord, capitalValid);
     }
 
@@ -653,6 +711,33 @@ public class DictionaryFacilitatorImpl implements DictionaryFacilitator {
         return isValidWord(word, ALL_DICTIONARY_TYPES);
     }
 
+    @Override
+    public void isValidSpellingWords(final String[] words, final boolean[] outIsValid) {
+        // Words that are in the cache or empty are not looked up.
+        final boolean[] isKnown = new boolean[words.length];
+        for (int i = 0; i < words.length; i++) {
+            outIsValid[i] = false;
+            if (TextUtils.isEmpty(words[i])) {
+                isKnown[i] = true;
+                continue;
+            }
+            if (mValidSpellingWordReadCache != null) {
+                final Boolean cachedValue = mValidSpellingWordReadCache.get(words[i]);
+                if (cachedValue != null) {
+                    outIsValid[i] = cachedValue;
+                    isKnown[i] = true;
+                }
+            }
+        }
+        final boolean[] isValidOrKnown = isKnown.clone();
+        markValidWords(words, isValidOrKnown, ALL_DICTIONARY_TYPES);
+        for (int i = 0; i < words.length; i++) {
+            if (!isKnown[i]) {
+                outIsValid[i] = isValidOrKnown[i];
+            }
+        }
+    }
+
     public boolean isValidSuggestionWord(final String word) {
         return isValidWord(word, ALL_DICTIONARY_TYPES);
     }
@@ -677,6 +762,30 @@ public class DictionaryFacilitatorImpl implements DictionaryFacilitator {
         return false;
     }
 
+    private void markValidWords(final String[] words, final boolean[] inOutIsValid,
+            final String[] dictionariesToCheck) {
+        if (mDictionaryGroup.mLocale == null) {
+            return;
+        }
+        for (final String dictType : dictionariesToCheck) {
+            final Dictionary dictionary = mDictionaryGroup.getDict(dictType);
+            if (null == dictionary) continue;
+            dictionary.markValidWords(words, inOutIsValid);
+            if (areAllTrue(inOutIsValid)) {
+                return;
+            }
+        }
+    }
+
+    private static boolean areAllTrue(final boolean[] array) {
+        for (final boolean value : array) {
+            if (!value) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private int getFrequency(final String word) {
         if (TextUtils.isEmpty(word)) {
             return Dictionary.NOT_A_PROBABILITY;
@@ -718,6 +827,18 @@ public class DictionaryFacilitatorImpl implements DictionaryFacilitator {
         dictToDump.dumpAllWordsForDebug();
     }
 
+    @Override
+    public void exportDictionaryForDebug(final String dictName, final File file,
+            final boolean asText) {
+        final ExpandableBinaryDictionary dictToExport = mDictionaryGroup.getSubDict(dictName);
+        if (dictToExport == null) {
+            Log.e(TAG, "Cannot export " + dictName + ". "
+                    + "The dictionary is not being used for suggestion or cannot be exported.");
+            return;
+        }
+        dictToExport.asyncExportWordProperties(file, asText);
+    }
+
     @Override
     @Nonnull public List<DictionaryStats> getDictionaryStats(final Context context) {
         final ArrayList<DictionaryStats> statsOfEnabledSubDicts = new ArrayList<>();
@@ -731,6 +852,20 @@ public class DictionaryFacilitatorImpl implements DictionaryFacilitator {
 
     @Override
     public String dump(final Context context) {
-        return "";
+        final StringBuilder sb = new StringBuilder("  Traverse sessions = ")
+                .append(DicTraverseSession.getLiveSessionCount())
+                .append(" (").append(DicTraverseSession.getLiveSessionNativeBytes())
+                .append(" native bytes)")
+                .append("\n  GC of dynamic dictionaries ")
+                .append(ExpandableBinaryDictionary.dumpGCStats())
+                .append("\n  Main dictionary preloading: ")
+                .append(mMainDictionaryPreloader.dump());
+        for (final String dictType : DYNAMIC_DICTIONARY_TYPES) {
+            final ExpandableBinaryDictionary dictionary = mDictionaryGroup.getSubDict(dictType);
+            if (dictionary == null) continue;
+            sb.append("\n  Word filter of ").append(dictType).append(" = ")
+                    .append(dictionary.dumpWordFilterStats());
+        }
+        return sb.toString();
     }
 }
@@ -98,6 +98,12 @@ public class DictionaryFacilitatorLruCache {
         }
     }
 
+    public void releaseTraverseSession(final int sessionId) {
+        synchronized (mLock) {
+            mDictionaryFacilitator.releaseTraverseSession(sessionId);
+        }
+    }
+
     public void closeDictionaries() {
         synchronized (mLock) {
             mDictionaryFacilitator.closeDictionaries();
@@ -53,6 +53,7 @@ public final class DictionaryFactory {
         }
 
         final LinkedList<Dictionary> dictList = new LinkedList<>();
+        final ArrayList<AssetFileAddress> validAssetFileList = new ArrayList<>();
         final ArrayList<AssetFileAddress> assetFileList =
                 BinaryDictionaryGetter.getDictionaryFiles(locale, context, true);
         if (null != assetFileList) {
@@ -62,6 +63,7 @@ public final class DictionaryFactory {
                                 false /* useFullEditDistance */, locale, Dictionary.TYPE_MAIN);
                 if (readOnlyBinaryDictionary.isValidDictionary()) {
                     dictList.add(readOnlyBinaryDictionary);
+                    validAssetFileList.add(f);
                 } else {
                     readOnlyBinaryDictionary.close();
                     // Prevent this dictionary to do any further harm.
@@ -70,6 +72,22 @@ public final class DictionaryFactory {
             }
         }
 
+        // Several word lists are merged into one dictionary when a word list is installed, which
+        // is faster to get suggestions from than all of them. Until the merged dictionary is
+        // built, the word lists are used.
+        if (validAssetFileList.size() > 1) {
+            final ReadOnlyBinaryDictionary mergedDictionary =
+                    WordListMerger.getMergedDictionary(context, locale, validAssetFileList);
+            if (null != mergedDictionary) {
+                for (final Dictionary dictionary : dictList) {
+                    dictionary.close();
+                }
+                return new DictionaryCollection(Dictionary.TYPE_MAIN, locale, mergedDictionary);
+            }
+        }
+        // Merged dictionaries of other word lists are of no use anymore.
+        WordListMerger.asyncRemoveMergedDictionaries(context, locale, validAssetFileList);
+
         // If the list is empty, that means we should not use any dictionary (for example, the user
         // explicitly disabled the main dictionary), so the following is okay. dictList is never
         // null, but if for some reason it is, DictionaryCollection handles it gracefully.
@@ -35,13 +35,19 @@ import typeofmood.ime.latin.utils.ExecutorUtils;
 import typeofmood.ime.latin.utils.WordInputEventForPersonalization;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -67,6 +73,32 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
 
     private static final int TIMEOUT_FOR_READ_OPS_IN_MILLISECONDS = 100;
 
+    private static final int WORD_FILTER_INITIAL_HASH_COUNT = 1024;
+
+    // While the input view is shown, whether a dictionary needs GC is only checked every this
+    // many updates.
+    private static final int UPDATE_COUNT_BETWEEN_GC_CHECKS_WHILE_TYPING = 16;
+    // Once a dictionary needs GC while the input view is shown, it may grow by this fraction of
+    // its entries before GC is run anyway. Its buffers need GC at 90% of their size and refuse
+    // updates when they are full, so this uses about half of the room that is left. An update adds
+    // at most a unigram and an n-gram for each previous word.
+    private static final float MAX_GROWTH_WITH_DEFERRED_GC_WHILE_TYPING = 0.05f;
+    private static final int MAX_ENTRY_COUNT_PER_UPDATE =
+            1 + DecoderSpecificConstants.MAX_PREV_WORD_COUNT_FOR_N_GRAM;
+    private static final int NO_DEFERRED_GC = -1;
+
+    /**
+     * Whether the input view is shown. GC of the dictionaries is then deferred until it is hidden,
+     * unless a dictionary has needed it for a while, so as not to block suggestions while the user
+     * types.
+     */
+    private static volatile boolean sIsInputViewShown;
+    // The GCs run while the input view was shown or hidden, and the time they took.
+    private static final AtomicLong sGCCountWhileTyping = new AtomicLong();
+    private static final AtomicLong sGCTimeWhileTypingNanos = new AtomicLong();
+    private static final AtomicLong sGCCountWhileIdle = new AtomicLong();
+    private static final AtomicLong sGCTimeWhileIdleNanos = new AtomicLong();
+
     /**
      * The maximum length of a word in this dictionary.
      */
@@ -87,6 +119,20 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
      */
     private BinaryDictionary mBinaryDictionary;
 
+    /**
+     * A filter of the words of mBinaryDictionary, or null if there is none. Answers lookups of
+     * words that are not in the dictionary without taking the lock. Words are added to it before
+     * they are added to the dictionary, and it is set to null before the dictionary is replaced,
+     * so that it never misses a word of the dictionary. Words are only added to it under the
+     * write lock, which makes its writer a single thread at a time.
+     */
+    private volatile WordBloomFilter mWordFilter;
+    // The lookups the filter was asked about, the ones it answered and the ones it let through
+    // for words that were not in the dictionary.
+    private final AtomicLong mWordFilterLookupCount = new AtomicLong();
+    private final AtomicLong mWordFilterMissCount = new AtomicLong();
+    private final AtomicLong mWordFilterFalsePositiveCount = new AtomicLong();
+
     /**
      * The name of this dictionary, used as a part of the filename for storing the binary
      * dictionary.
@@ -106,6 +152,14 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
 
     private Map<String, String> mAdditionalAttributeMap = null;
 
+    // Whether the dictionary has been updated since it was last maintained, the number of updates
+    // since whether it needs GC was last checked and, once it was found to need GC while the
+    // input view was shown, the number of updates it may still take before GC is run anyway, or
+    // NO_DEFERRED_GC. Only accessed with the write lock.
+    private boolean mNeedsMaintenance;
+    private int mUpdateCountSinceGCCheck;
+    private int mUpdateCountLeftWithDeferredGC = NO_DEFERRED_GC;
+
     /* A extension for a binary dictionary file. */
     protected static final String DICT_FILE_EXTENSION = ".dict";
 
@@ -186,6 +240,8 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
     }
 
     void closeBinaryDictionary() {
+        mWordFilter = null;
+        mNeedsMaintenance = false;
         if (mBinaryDictionary != null) {
             mBinaryDictionary.close();
             mBinaryDictionary = null;
@@ -234,6 +290,7 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
     }
 
     private void openBinaryDictionaryLocked() {
+        mWordFilter = null;
         mBinaryDictionary = new BinaryDictionary(
                 mDictFile.getAbsolutePath(), 0 /* offset */, mDictFile.length(),
                 true /* useFullEditDistance */, mLocale, mDictType, true /* isUpdatable */);
@@ -243,6 +300,106 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
         mBinaryDictionary = new BinaryDictionary(
                 mDictFile.getAbsolutePath(), true /* useFullEditDistance */, mLocale, mDictType,
                 DICTIONARY_FORMAT_VERSION, getHeaderAttributeMap());
+        mWordFilter = new WordBloomFilter(0 /* capacity */);
+    }
+
+    /**
+     * Builds the filter of the words of the dictionary, so that it is sized for them and answers
+     * for the words that were removed from it.
+     */
+    private void rebuildWordFilterLocked() {
+        mWordFilter = null;
+        if (mBinaryDictionary == null || !mBinaryDictionary.isValidDictionary()) {
+            return;
+        }
+        // The number of words is only known after going through all of them.
+        long[] hashes = new long[WORD_FILTER_INITIAL_HASH_COUNT];
+        int wordCount = 0;
+        final int[] codePoints = new int[DecoderSpecificConstants.DICTIONARY_MAX_WORD_LENGTH];
+        final boolean[] isBeginningOfSentence = new boolean[1];
+        int token = 0;
+        do {
+            token = mBinaryDictionary.getNextWord(token, codePoints, isBeginningOfSentence);
+            if (isBeginningOfSentence[0] || codePoints[0] == 0) {
+                continue;
+            }
+            if (wordCount == hashes.length) {
+                hashes = Arrays.copyOf(hashes, wordCount * 2);
+            }
+            hashes[wordCount++] = WordBloomFilter.hash(codePoints);
+        } while (token != 0);
+        // Leave room for the words to come.
+        final WordBloomFilter wordFilter = new WordBloomFilter(wordCount * 2);
+        for (int i = 0; i < wordCount; ++i) {
+            wordFilter.addHash(hashes[i]);
+        }
+        mWordFilter = wordFilter;
+    }
+
+    // The filter may hold more words than it is sized for until the update that adds them is
+    // done. It is then rebuilt from the dictionary by rebuildWordFilterIfFullLocked(), which
+    // has all of them by then.
+    private void addToWordFilterLocked(final CharSequence word) {
+        final WordBloomFilter wordFilter = mWordFilter;
+        if (wordFilter != null) {
+            wordFilter.add(word);
+        }
+    }
+
+    private void addToWordFilterLocked(final int[] codePoints) {
+        final WordBloomFilter wordFilter = mWordFilter;
+        if (wordFilter != null) {
+            wordFilter.add(codePoints);
+        }
+    }
+
+    private void addToWordFilterLocked(@Nonnull final NgramContext ngramContext) {
+        for (int i = 1; i <= ngramContext.getPrevWordCount(); ++i) {
+            addToWordFilterLocked(ngramContext.getNthPrevWord(i));
+        }
+    }
+
+    /**
+     * Rebuilds the filter if it holds more words than it is sized for. Must be called after the
+     * words added to the filter have been added to the dictionary, so that the new filter has
+     * them too.
+     */
+    private void rebuildWordFilterIfFullLocked() {
+        final WordBloomFilter wordFilter = mWordFilter;
+        if (wordFilter != null && wordFilter.isFull()) {
+            rebuildWordFilterLocked();
+        }
+    }
+
+    /**
+     * @return whether the word is known not to be in the dictionary without looking it up.
+     */
+    private boolean isFilteredOut(@Nullable final WordBloomFilter wordFilter, final String word) {
+        if (wordFilter == null) {
+            return false;
+        }
+        mWordFilterLookupCount.incrementAndGet();
+        if (wordFilter.mightContain(word)) {
+            return false;
+        }
+        mWordFilterMissCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * @return the numbers of lookups answered by the filter of the words of this dictionary.
+     */
+    public String dumpWordFilterStats() {
+        final WordBloomFilter wordFilter = mWordFilter;
+        final long missCount = mWordFilterMissCount.get();
+        final long falsePositiveCount = mWordFilterFalsePositiveCount.get();
+        final long negativeCount = missCount + falsePositiveCount;
+        return (wordFilter == null ? "no filter" : wordFilter.getWordCount() + " words")
+                + ", lookups = " + mWordFilterLookupCount.get()
+                + ", avoided = " + missCount
+                + ", false positives = " + falsePositiveCount
+                + (negativeCount == 0 ? ""
+                        : " (" + (falsePositiveCount * 100 / negativeCount) + "%)");
     }
 
     public void clear() {
@@ -272,10 +429,78 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
 
     protected void runGCIfRequiredLocked(final boolean mindsBlockByGC) {
         if (mBinaryDictionary.needsToRunGC(mindsBlockByGC)) {
-            mBinaryDictionary.flushWithGC();
+            runGCLocked();
+        }
+    }
+
+    private void runGCLocked() {
+        mUpdateCountSinceGCCheck = 0;
+        mUpdateCountLeftWithDeferredGC = NO_DEFERRED_GC;
+        final long startTime = System.nanoTime();
+        mBinaryDictionary.flushWithGC();
+        rebuildWordFilterLocked();
+        final long gcTimeNanos = System.nanoTime() - startTime;
+        if (sIsInputViewShown) {
+            sGCCountWhileTyping.incrementAndGet();
+            sGCTimeWhileTypingNanos.addAndGet(gcTimeNanos);
+        } else {
+            sGCCountWhileIdle.incrementAndGet();
+            sGCTimeWhileIdleNanos.addAndGet(gcTimeNanos);
         }
     }
 
+    /**
+     * Runs GC if required before an update. While the input view is shown, GC is left to
+     * {@link #asyncMaintainBinaryDictionary()}, unless the dictionary has grown too much since
+     * it started needing it for its size.
+     */
+    private void runGCIfRequiredForUpdateLocked() {
+        mNeedsMaintenance = true;
+        if (!sIsInputViewShown) {
+            mUpdateCountSinceGCCheck = 0;
+            mUpdateCountLeftWithDeferredGC = NO_DEFERRED_GC;
+            runGCIfRequiredLocked(true /* mindsBlockByGC */);
+            return;
+        }
+        if (mUpdateCountLeftWithDeferredGC != NO_DEFERRED_GC) {
+            if (--mUpdateCountLeftWithDeferredGC <= 0) {
+                runGCLocked();
+            }
+            return;
+        }
+        if (++mUpdateCountSinceGCCheck < UPDATE_COUNT_BETWEEN_GC_CHECKS_WHILE_TYPING) {
+            return;
+        }
+        mUpdateCountSinceGCCheck = 0;
+        if (!mBinaryDictionary.needsToRunGC(true /* mindsBlockByGC */)) {
+            return;
+        }
+        // The dictionary may have needed GC since the previous check.
+        mUpdateCountLeftWithDeferredGC = (int)(mBinaryDictionary.getEntryCount()
+                * MAX_GROWTH_WITH_DEFERRED_GC_WHILE_TYPING / MAX_ENTRY_COUNT_PER_UPDATE)
+                - UPDATE_COUNT_BETWEEN_GC_CHECKS_WHILE_TYPING;
+        if (mUpdateCountLeftWithDeferredGC <= 0) {
+            runGCLocked();
+        }
+    }
+
+    /**
+     * Tells whether the input view is shown, during which the dictionaries defer their GC.
+     */
+    public static void setIsInputViewShown(final boolean isInputViewShown) {
+        sIsInputViewShown = isInputViewShown;
+    }
+
+    /**
+     * @return the numbers of GCs run while the user was typing or not, and the time they took.
+     */
+    public static String dumpGCStats() {
+        return "while typing = " + sGCCountWhileTyping.get() + " ("
+                + TimeUnit.NANOSECONDS.toMillis(sGCTimeWhileTypingNanos.get()) + "ms)"
+                + ", while idle = " + sGCCountWhileIdle.get() + " ("
+                + TimeUnit.NANOSECONDS.toMillis(sGCTimeWhileIdleNanos.get()) + "ms)";
+    }
+
     private void updateDictionaryWithWriteLock(@Nonnull final Runnable updateTask) {
         reloadDictionaryIfRequired();
         final Runnable task = new Runnable() {
@@ -284,7 +509,7 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
                 if (getBinaryDictionary() == null) {
                     return;
                 }
-                runGCIfRequiredLocked(true /* mindsBlockByGC */);
+                runGCIfRequiredForUpdateLocked();
                 updateTask.run();
             }
         };
@@ -306,10 +531,12 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
 
     protected void addUnigramLocked(final String word, final int frequency,
             final boolean isNotAWord, final boolean isPossiblyOffensive, final int timestamp) {
+        addToWordFilterLocked(word);
         if (!mBinaryDictionary.addUnigramEntry(word, frequency,
                 false /* isBeginningOfSentence */, isNotAWord, isPossiblyOffensive, timestamp)) {
             Log.e(TAG, "Cannot add unigram entry. word: " + word);
         }
+        rebuildWordFilterIfFullLocked();
     }
 
     /**
@@ -324,7 +551,7 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
                 if (binaryDictionary == null) {
                     return;
                 }
-                runGCIfRequiredLocked(true /* mindsBlockByGC */);
+                runGCIfRequiredForUpdateLocked();
                 if (!binaryDictionary.removeUnigramEntry(word)) {
                     if (DEBUG) {
                         Log.i(TAG, "Cannot remove unigram entry: " + word);
@@ -346,7 +573,7 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
                 if (getBinaryDictionary() == null) {
                     return;
                 }
-                runGCIfRequiredLocked(true /* mindsBlockByGC */);
+                runGCIfRequiredForUpdateLocked();
                 addNgramEntryLocked(ngramContext, word, frequency, timestamp);
             }
         });
@@ -354,12 +581,15 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
 
     protected void addNgramEntryLocked(@Nonnull final NgramContext ngramContext, final String word,
             final int frequency, final int timestamp) {
+        addToWordFilterLocked(ngramContext);
+        addToWordFilterLocked(word);
         if (!mBinaryDictionary.addNgramEntry(ngramContext, word, frequency, timestamp)) {
             if (DEBUG) {
                 Log.i(TAG, "Cannot add n-gram entry.");
                 Log.i(TAG, "  NgramContext: " + ngramContext + ", word: " + word);
             }
         }
+        rebuildWordFilterIfFullLocked();
     }
 
     /**
@@ -374,6 +604,8 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
                 if (binaryDictionary == null) {
                     return;
                 }
+                addToWordFilterLocked(ngramContext);
+                addToWordFilterLocked(word);
                 if (!binaryDictionary.updateEntriesForWordWithNgramContext(ngramContext, word,
                         isValidWord, count, timestamp)) {
                     if (DEBUG) {
@@ -381,6 +613,7 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
                                 + " context: " + ngramContext.toString());
                     }
                 }
+                rebuildWordFilterIfFullLocked();
             }
         });
     }
@@ -405,9 +638,17 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
                     if (binaryDictionary == null) {
                         return;
                     }
+                    mNeedsMaintenance = true;
+                    for (final WordInputEventForPersonalization inputEvent : inputEvents) {
+                        for (int i = 0; i < inputEvent.mPrevWordsCount; ++i) {
+                            addToWordFilterLocked(inputEvent.mPrevWordArray[i]);
+                        }
+                        addToWordFilterLocked(inputEvent.mTargetWord);
+                    }
                     binaryDictionary.updateEntriesForInputEvents(
                             inputEvents.toArray(
                                     new WordInputEventForPersonalization[inputEvents.size()]));
+                    rebuildWordFilterIfFullLocked();
                 } finally {
                     if (callback != null) {
                         callback.onFinished();
@@ -452,9 +693,31 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
         return null;
     }
 
+    @Override
+    public void releaseTraverseSession(final int sessionId) {
+        boolean lockAcquired = false;
+        try {
+            lockAcquired = mLock.readLock().tryLock(
+                    TIMEOUT_FOR_READ_OPS_IN_MILLISECONDS, TimeUnit.MILLISECONDS);
+            if (lockAcquired && mBinaryDictionary != null) {
+                mBinaryDictionary.releaseTraverseSession(sessionId);
+            }
+        } catch (final InterruptedException e) {
+            Log.e(TAG, "Interrupted tryLock() in releaseTraverseSession().", e);
+        } finally {
+            if (lockAcquired) {
+                mLock.readLock().unlock();
+            }
+        }
+    }
+
     @Override
     public boolean isInDictionary(final String word) {
         reloadDictionaryIfRequired();
+        final WordBloomFilter wordFilter = mWordFilter;
+        if (isFilteredOut(wordFilter, word)) {
+            return false;
+        }
         boolean lockAcquired = false;
         try {
             lockAcquired = mLock.readLock().tryLock(
@@ -463,7 +726,11 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
                 if (mBinaryDictionary == null) {
                     return false;
                 }
-                return isInDictionaryLocked(word);
+                final boolean isInDictionary = isInDictionaryLocked(word);
+                if (!isInDictionary && wordFilter != null) {
+                    mWordFilterFalsePositiveCount.incrementAndGet();
+                }
+                return isInDictionary;
             }
         } catch (final InterruptedException e) {
             Log.e(TAG, "Interrupted tryLock() in isInDictionary().", e);
@@ -480,6 +747,53 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
         return mBinaryDictionary.isInDictionary(word);
     }
 
+    @Override
+    public void markWordsInDictionary(final String[] words, final boolean[] inOutIsInDictionary) {
+        reloadDictionaryIfRequired();
+        // The words to look up are the ones that are neither known to be in the dictionary nor
+        // filtered out.
+        final WordBloomFilter wordFilter = mWordFilter;
+        final boolean[] isNotLookedUp = inOutIsInDictionary.clone();
+        boolean hasWordsToLookUp = false;
+        for (int i = 0; i < words.length; ++i) {
+            if (!isNotLookedUp[i]) {
+                isNotLookedUp[i] = isFilteredOut(wordFilter, words[i]);
+                hasWordsToLookUp |= !isNotLookedUp[i];
+            }
+        }
+        if (!hasWordsToLookUp) {
+            return;
+        }
+        boolean lockAcquired = false;
+        try {
+            lockAcquired = mLock.readLock().tryLock(
+                    TIMEOUT_FOR_READ_OPS_IN_MILLISECONDS, TimeUnit.MILLISECONDS);
+            if (lockAcquired) {
+                if (mBinaryDictionary == null) {
+                    return;
+                }
+                final boolean[] isFound = isNotLookedUp.clone();
+                mBinaryDictionary.markWordsInDictionary(words, isFound);
+                for (int i = 0; i < words.length; ++i) {
+                    if (isNotLookedUp[i]) {
+                        continue;
+                    }
+                    if (isFound[i]) {
+                        inOutIsInDictionary[i] = true;
+                    } else if (wordFilter != null) {
+                        mWordFilterFalsePositiveCount.incrementAndGet();
+                    }
+                }
+            }
+        } catch (final InterruptedException e) {
+            Log.e(TAG, "Interrupted tryLock() in markWordsInDictionary().", e);
+        } finally {
+            if (lockAcquired) {
+                mLock.readLock().unlock();
+            }
+        }
+    }
+
     @Override
     public int getMaxFrequencyOfExactMatches(final String word) {
         reloadDictionaryIfRequired();
@@ -532,6 +846,7 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
                 removeBinaryDictionaryLocked();
             }
         }
+        rebuildWordFilterLocked();
     }
 
     /**
@@ -625,14 +940,42 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
         asyncExecuteTaskWithWriteLock(new Runnable() {
             @Override
             public void run() {
-                final BinaryDictionary binaryDictionary = getBinaryDictionary();
-                if (binaryDictionary == null) {
+                if (getBinaryDictionary() == null) {
                     return;
                 }
-                if (binaryDictionary.needsToRunGC(false /* mindsBlockByGC */)) {
-                    binaryDictionary.flushWithGC();
-                } else {
-                    binaryDictionary.flush();
+                flushBinaryDictionaryLocked();
+            }
+        });
+    }
+
+    private void flushBinaryDictionaryLocked() {
+        mNeedsMaintenance = false;
+        mUpdateCountSinceGCCheck = 0;
+        mUpdateCountLeftWithDeferredGC = NO_DEFERRED_GC;
+        // Not minding the operations blocked by GC, it also decays the dictionary when due.
+        if (mBinaryDictionary.needsToRunGC(false /* mindsBlockByGC */)) {
+            runGCLocked();
+        } else {
+            mBinaryDictionary.flush();
+        }
+    }
+
+    /**
+     * Runs the GC and the flush deferred while the user was typing. The dictionary is only
+     * flushed if it has been updated since it was last maintained, but whether it needs GC,
+     * which includes decaying it when due, is checked anyway.
+     */
+    public void asyncMaintainBinaryDictionary() {
+        asyncExecuteTaskWithWriteLock(new Runnable() {
+            @Override
+            public void run() {
+                if (getBinaryDictionary() == null) {
+                    return;
+                }
+                if (mNeedsMaintenance) {
+                    flushBinaryDictionaryLocked();
+                } else if (mBinaryDictionary.needsToRunGC(false /* mindsBlockByGC */)) {
+                    runGCLocked();
                 }
             }
         });
@@ -696,18 +1039,62 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
                 } catch (final UnsupportedFormatException e) {
                     Log.d(tag, "Cannot fetch header information.", e);
                 }
-                int token = 0;
-                do {
-                    final BinaryDictionary.GetNextWordPropertyResult result =
-                            binaryDictionary.getNextWordProperty(token);
-                    final WordProperty wordProperty = result.mWordProperty;
-                    if (wordProperty == null) {
-                        Log.d(tag, " dictionary is empty.");
-                        break;
+                final int[] wordCount = new int[1];
+                binaryDictionary.forEachWordProperty(
+                        new BinaryDictionary.WordPropertyConsumer() {
+                            @Override
+                            public boolean onWordProperty(final WordProperty wordProperty) {
+                                Log.d(tag, wordProperty.toString());
+                                ++wordCount[0];
+                                return true;
+                            }
+                        });
+                if (wordCount[0] == 0) {
+                    Log.d(tag, " dictionary is empty.");
+                }
+            }
+        });
+    }
+
+    /**
+     * Writes the header attributes and the words of the dictionary to a file in the background.
+     * @param asText whether to write the combined format, or else the binary format of
+     * {@link WordPropertyExporter}.
+     */
+    public void asyncExportWordProperties(final File file, final boolean asText) {
+        reloadDictionaryIfRequired();
+        asyncExecuteTaskWithLock(mLock.readLock(), new Runnable() {
+            @Override
+            public void run() {
+                final BinaryDictionary binaryDictionary = getBinaryDictionary();
+                if (binaryDictionary == null) {
+                    return;
+                }
+                final long startTime = System.nanoTime();
+                OutputStream out = null;
+                try {
+                    final Map<String, String> attributes =
+                            binaryDictionary.getHeader().mDictionaryOptions.mAttributes;
+                    out = new FileOutputStream(file);
+                    final int wordCount = asText
+                            ? WordPropertyExporter.exportAsText(binaryDictionary, attributes,
+                                    new OutputStreamWriter(out, "UTF-8"))
+                            : WordPropertyExporter.exportAsBinary(binaryDictionary, attributes,
+                                    out);
+                    Log.i(TAG, "Exported " + wordCount + " words of " + mDictName + " in "
+                            + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime)
+                            + "ms");
+                } catch (final IOException | UnsupportedFormatException e) {
+                    Log.e(TAG, "Cannot export " + mDictName + " to " + file, e);
+                } finally {
+                    if (null != out) {
+                        try {
+                            out.close();
+                        } catch (final IOException e) {
+                            // Ignore.
+                        }
                     }
-                    Log.d(tag, wordProperty.toString());
-                    token = result.mNextToken;
-                } while (token != 0);
+                }
             }
         });
     }
@@ -727,18 +1114,15 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
                 if (binaryDictionary == null) {
                     return;
                 }
-                int token = 0;
-                do {
-                    // TODO: We need a new API that returns *new* un-synced data.
-                    final BinaryDictionary.GetNextWordPropertyResult nextWordPropertyResult =
-                            binaryDictionary.getNextWordProperty(token);
-                    final WordProperty wordProperty = nextWordPropertyResult.mWordProperty;
-                    if (wordProperty == null) {
-                        break;
-                    }
-                    wordPropertyList.add(wordProperty);
-                    token = nextWordPropertyResult.mNextToken;
-                } while (token != 0);
+                // TODO: We need a new API that returns *new* un-synced data.
+                binaryDictionary.forEachWordProperty(
+                        new BinaryDictionary.WordPropertyConsumer() {
+                            @Override
+                            public boolean onWordProperty(final WordProperty wordProperty) {
+                                wordPropertyList.add(wordProperty);
+                                return true;
+                            }
+                        });
                 result.set(wordPropertyList.toArray(new WordProperty[wordPropertyList.size()]));
             }
         });
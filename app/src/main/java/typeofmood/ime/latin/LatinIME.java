@@ -48,6 +48,7 @@ import android.view.inputmethod.CompletionInfo;
 import android.view.inputmethod.EditorInfo;
 import android.view.inputmethod.InputMethodSubtype;
 
+import java.io.File;
 import java.io.FileDescriptor;
 import java.io.PrintWriter;
 import java.util.ArrayList;
@@ -194,6 +195,8 @@ public class LatinIME extends InputMethodService implements KeyboardActionListen
 
     public final UIHandler mHandler = new UIHandler(this);
 
+    private final StartupTracer mStartupTracer = new StartupTracer();
+
     // Loading the native library eagerly to avoid unexpected UnsatisfiedLinkError at the initial
     // JNI call as much as possible.
     static {
@@ -212,14 +215,23 @@ public class LatinIME extends InputMethodService implements KeyboardActionListen
 
     @Override
     public void onCreate() {
+        mStartupTracer.start();
         Settings.init(this);
         DebugFlags.init(PreferenceManager.getDefaultSharedPreferences(this));
+        mStartupTracer.endPhase("Settings.init");
         RichInputMethodManager.init(this);
         mRichImm = RichInputMethodManager.getInstance();
+        mStartupTracer.endPhase("RichInputMethodManager.init");
         KeyboardSwitcher.init(this);
+        mStartupTracer.endPhase("KeyboardSwitcher.init");
         AudioAndHapticFeedbackManager.init(this);
+        mStartupTracer.endPhase("AudioAndHapticFeedbackManager.init");
+        // The keyboard view reads the accessibility state as soon as it is created.
         AccessibilityUtils.init(this);
+        mStartupTracer.endPhase("AccessibilityUtils.init");
+        // The keystroke logger has to be there for the first input view.
         mStatsUtilsManager.onCreate(this /* context */, mDictionaryFacilitator);
+        mStartupTracer.endPhase("StatsUtilsManager.onCreate");
         super.onCreate();
 
         mHandler.onCreate();
@@ -228,6 +240,7 @@ public class LatinIME extends InputMethodService implements KeyboardActionListen
         // {@link #resetDictionaryFacilitatorIfNecessary()}.
         loadSettings();
         resetDictionaryFacilitatorIfNecessary();
+        mStartupTracer.endPhase("loadSettings");
 
         // Register to receive ringer mode change.
         final IntentFilter filter = new IntentFilter();
@@ -253,8 +266,10 @@ public class LatinIME extends InputMethodService implements KeyboardActionListen
         hideSoftInputFilter.addAction(ACTION_HIDE_SOFT_INPUT);
         // comment out mHideSoftInputReceiver due to lack of system signature
         //registerReceiver(mHideSoftInputReceiver, hideSoftInputFilter, PERMISSION_HIDE_SOFT_INPUT, null /* scheduler */);
+        mStartupTracer.endPhase("registerReceivers");
 
         StatsUtils.onCreate(mSettings.getCurrent(), mRichImm);
+        mStartupTracer.endPhase("StatsUtils.onCreate");
     }
 
     // Has to be package-visible for unit tests
@@ -339,6 +354,20 @@ public class LatinIME extends InputMethodService implements KeyboardActionListen
                     settingsValues.mAutoCorrectionThreshold);
         }
         mInputLogic.mSuggest.setPlausibilityThreshold(settingsValues.mPlausibilityThreshold);
+        mDictionaryFacilitator.preloadMainDictionaryForNextLocale(this /* context */,
+                getEnabledSubtypeLocales());
+    }
+
+    private List<Locale> getEnabledSubtypeLocales() {
+        final ArrayList<Locale> locales = new ArrayList<>();
+        for (final InputMethodSubtype subtype : mRichImm.getMyEnabledInputMethodSubtypeList(
+                true /* allowsImplicitlySelectedSubtypes */)) {
+            final Locale locale = SubtypeLocaleUtils.getSubtypeLocale(subtype);
+            if (!locales.contains(locale)) {
+                locales.add(locale);
+            }
+        }
+        return locales;
     }
 
     /**
@@ -438,7 +467,7 @@ public class LatinIME extends InputMethodService implements KeyboardActionListen
     @Override
     public void onStartInputView(final EditorInfo editorInfo, final boolean restarting) {
         mHandler.onStartInputView(editorInfo, restarting);
-        mStatsUtilsManager.onStartInputView();
+        mStatsUtilsManager.onStartInputView(editorInfo);
     }
 
     @Override
@@ -651,12 +680,14 @@ public class LatinIME extends InputMethodService implements KeyboardActionListen
                 currentSettingsValues.mGestureTrailEnabled,
                 currentSettingsValues.mGestureFloatingPreviewTextEnabled);
 
+        mStartupTracer.onInputViewStarted();
         if (TRACE) Debug.startMethodTracing("/data/trace/latinime");
     }
 
     @Override
     public void onWindowShown() {
         super.onWindowShown();
+        mStartupTracer.onWindowShown();
         setNavigationBarVisibility(isInputViewShown());
     }
 
@@ -668,6 +699,7 @@ public class LatinIME extends InputMethodService implements KeyboardActionListen
             mainKeyboardView.closing();
         }
         setNavigationBarVisibility(false);
+        mDictionaryFacilitator.onFinishInputView();
     }
 
     void onFinishInputInternal() {
@@ -683,6 +715,7 @@ public class LatinIME extends InputMethodService implements KeyboardActionListen
     void onFinishInputViewInternal(final boolean finishingInput) {
         super.onFinishInputView(finishingInput);
         cleanupInternalStateForFinishInput();
+        mDictionaryFacilitator.onFinishInputView();
     }
 
     private void cleanupInternalStateForFinishInput() {
@@ -1523,6 +1556,14 @@ public class LatinIME extends InputMethodService implements KeyboardActionListen
         mDictionaryFacilitator.dumpDictionaryForDebug(dictName);
     }
 
+    public void exportDictionaryForDebug(final String dictName, final boolean asText) {
+        if (!mDictionaryFacilitator.isActive()) {
+            resetDictionaryFacilitatorIfNecessary();
+        }
+        final File file = new File(getFilesDir(), dictName + (asText ? ".txt" : ".bin"));
+        mDictionaryFacilitator.exportDictionaryForDebug(dictName, file, asText);
+    }
+
     public void debugDumpStateAndCrashWithException(final String context) {
         final SettingsValues settingsValues = mSettings.getCurrent();
         final StringBuilder s = new StringBuilder(settingsValues.toString());
@@ -1545,6 +1586,9 @@ public class LatinIME extends InputMethodService implements KeyboardActionListen
         final SettingsValues settingsValues = mSettings.getCurrent();
         p.println(settingsValues.dump());
         p.println(mDictionaryFacilitator.dump(this /* context */));
+        p.println(mInputLogic.mSuggest.dump());
+        p.println(mInputLogic.mConnection.dump());
+        p.println(mStartupTracer.dump());
         // TODO: Dump all settings values
     }
 
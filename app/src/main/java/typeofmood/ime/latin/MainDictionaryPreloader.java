@@ -0,0 +1,328 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package typeofmood.ime.latin;
+
+import android.content.Context;
+import android.util.Log;
+
+import typeofmood.ime.latin.utils.ExecutorUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Keeps the main dictionary of the locale the user is the most likely to switch to next opened,
+ * so that suggestions are available as soon as the user switches to it.
+ *
+ * The locale is the one the user switched to the most from the current one, or else the one the
+ * language switch key leads to. The main dictionary of the locale the user switches from is kept,
+ * as switching back and forth between two languages is the most common. Other main dictionaries
+ * are opened in the background, and their files are read ahead so that their pages are in memory.
+ * This runs on its own low priority executor, so that a wrong prediction does not delay the
+ * dictionaries actually used, and it is cancelled as soon as the user switches locales.
+ */
+final class MainDictionaryPreloader {
+    private static final String TAG = MainDictionaryPreloader.class.getSimpleName();
+
+    // Main dictionaries are only preloaded if their files are at most that large.
+    private static final long MAX_PRELOADED_DICTIONARY_BYTES = 24 * 1024 * 1024;
+    private static final int READ_AHEAD_BUFFER_SIZE = 64 * 1024;
+
+    // The number of times the user switched from a locale to another one.
+    private final HashMap<Locale, HashMap<Locale, Integer>> mSwitchCounts = new HashMap<>();
+
+    // The main dictionary that is kept and its locale, or null. The locale is set as soon as its
+    // dictionary starts being preloaded.
+    private Locale mLocale;
+    private Dictionary mMainDictionary;
+    // The task preloading the main dictionary of mLocale, or null.
+    private Future<?> mPreloadFuture;
+
+    // The locale switched to whose main dictionary is being loaded, and when it was switched to.
+    private Locale mPendingSwitchLocale;
+    private long mPendingSwitchStartTimeNanos;
+    // The locale switches the main dictionary was ready for, and the ones it had to be loaded
+    // for, along with the total time it took.
+    private int mPreloadedSwitchCount;
+    private int mLoadedSwitchCount;
+    private long mLoadedSwitchTimeNanos;
+
+    /**
+     * Records a switch from a locale to another one.
+     * @param isMainDictionaryReady whether the main dictionary of the new locale could be used
+     * right away. Otherwise, {@link #onMainDictionaryLoaded(Locale)} must be called once it is.
+     */
+    public synchronized void onLocaleSwitched(@Nonnull final Locale oldLocale,
+            @Nonnull final Locale newLocale, final boolean isMainDictionaryReady) {
+        HashMap<Locale, Integer> switchCounts = mSwitchCounts.get(oldLocale);
+        if (null == switchCounts) {
+            switchCounts = new HashMap<>();
+            mSwitchCounts.put(oldLocale, switchCounts);
+        }
+        final Integer switchCount = switchCounts.get(newLocale);
+        switchCounts.put(newLocale, null == switchCount ? 1 : switchCount + 1);
+        if (isMainDictionaryReady) {
+            ++mPreloadedSwitchCount;
+            mPendingSwitchLocale = null;
+        } else {
+            mPendingSwitchLocale = newLocale;
+            mPendingSwitchStartTimeNanos = System.nanoTime();
+        }
+    }
+
+    public synchronized void onMainDictionaryLoaded(@Nonnull final Locale locale) {
+        if (locale.equals(mPendingSwitchLocale)) {
+            ++mLoadedSwitchCount;
+            mLoadedSwitchTimeNanos += System.nanoTime() - mPendingSwitchStartTimeNanos;
+            mPendingSwitchLocale = null;
+        }
+    }
+
+    /**
+     * @return the locale the user is the most likely to switch to from the current one, or null
+     * if there is no other enabled locale.
+     */
+    @Nullable
+    public synchronized Locale predictNextLocale(@Nonnull final Locale currentLocale,
+            @Nonnull final List<Locale> enabledLocales) {
+        final HashMap<Locale, Integer> switchCounts = mSwitchCounts.get(currentLocale);
+        Locale mostSwitchedToLocale = null;
+        int maxSwitchCount = 0;
+        if (null != switchCounts) {
+            for (final Locale locale : enabledLocales) {
+                final Integer switchCount = switchCounts.get(locale);
+                if (null != switchCount && switchCount > maxSwitchCount) {
+                    mostSwitchedToLocale = locale;
+                    maxSwitchCount = switchCount;
+                }
+            }
+        }
+        if (null != mostSwitchedToLocale) {
+            return mostSwitchedToLocale;
+        }
+        // The locale the language switch key leads to.
+        final int currentIndex = enabledLocales.indexOf(currentLocale);
+        for (int i = 1; i <= enabledLocales.size(); ++i) {
+            final Locale locale = enabledLocales.get((currentIndex + i) % enabledLocales.size());
+            if (!locale.equals(currentLocale)) {
+                return locale;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Keeps an opened main dictionary instead of the one kept so far.
+     */
+    public void keep(@Nonnull final Locale locale, @Nonnull final Dictionary mainDictionary) {
+        final Dictionary dictionaryToClose;
+        synchronized (this) {
+            cancelPreloadLocked();
+            dictionaryToClose = mMainDictionary;
+            mLocale = locale;
+            mMainDictionary = mainDictionary;
+        }
+        if (null != dictionaryToClose) {
+            dictionaryToClose.close();
+        }
+    }
+
+    /**
+     * Opens the main dictionary of the locale in the background and keeps it instead of the one
+     * kept so far, unless it is already kept or too large.
+     */
+    public void preload(final Context context, @Nonnull final Locale locale) {
+        final Dictionary dictionaryToClose;
+        synchronized (this) {
+            if (locale.equals(mLocale)) {
+                return;
+            }
+            cancelPreloadLocked();
+            dictionaryToClose = mMainDictionary;
+            mLocale = locale;
+            mMainDictionary = null;
+            mPreloadFuture = ExecutorUtils.getBackgroundExecutor(
+                    ExecutorUtils.DICTIONARY_PRELOADING).submit(new Runnable() {
+                @Override
+                public void run() {
+                    if (!isPreloading(locale) || !readAheadMainDictionaryFiles(context, locale)
+                            || !isPreloading(locale)) {
+                        return;
+                    }
+                    final Dictionary mainDictionary =
+                            DictionaryFactory.createMainDictionaryFromManager(context, locale);
+                    synchronized (MainDictionaryPreloader.this) {
+                        if (isPreloading(locale)) {
+                            mMainDictionary = mainDictionary;
+                            mPreloadFuture = null;
+                            return;
+                        }
+                    }
+                    mainDictionary.close();
+                }
+            });
+        }
+        if (null != dictionaryToClose) {
+            dictionaryToClose.close();
+        }
+    }
+
+    /**
+     * Cancels the preloading of a main dictionary, if it is not opened yet. This is called when
+     * the user switches locales, so that the dictionaries of the new locale are loaded first.
+     */
+    public synchronized void cancelPreload() {
+        cancelPreloadLocked();
+    }
+
+    private void cancelPreloadLocked() {
+        if (null == mPreloadFuture) {
+            return;
+        }
+        mPreloadFuture.cancel(true /* mayInterruptIfRunning */);
+        mPreloadFuture = null;
+        if (null == mMainDictionary) {
+            mLocale = null;
+        }
+    }
+
+    private synchronized boolean isPreloading(@Nonnull final Locale locale) {
+        return locale.equals(mLocale) && null == mMainDictionary
+                && !Thread.currentThread().isInterrupted();
+    }
+
+    /**
+     * @return the main dictionary kept for the locale, which the caller then owns, or null if
+     * there is none or it is still being opened.
+     */
+    @Nullable
+    public synchronized Dictionary take(@Nonnull final Locale locale) {
+        if (!locale.equals(mLocale)) {
+            return null;
+        }
+        cancelPreloadLocked();
+        final Dictionary mainDictionary = mMainDictionary;
+        mLocale = null;
+        mMainDictionary = null;
+        return mainDictionary;
+    }
+
+    public void close() {
+        final Dictionary dictionaryToClose;
+        synchronized (this) {
+            cancelPreloadLocked();
+            dictionaryToClose = mMainDictionary;
+            mLocale = null;
+            mMainDictionary = null;
+        }
+        if (null != dictionaryToClose) {
+            dictionaryToClose.close();
+        }
+    }
+
+    public synchronized String dump() {
+        return "preloaded = " + mLocale
+                + ", switches with the main dictionary ready = " + mPreloadedSwitchCount
+                + ", loaded = " + mLoadedSwitchCount
+                + (0 == mLoadedSwitchCount ? "" : " (" + TimeUnit.NANOSECONDS.toMillis(
+                        mLoadedSwitchTimeNanos / mLoadedSwitchCount) + "ms on average)");
+    }
+
+    /**
+     * Reads the files the main dictionary of the locale will be opened from, so that their pages
+     * are in memory when it is used.
+     * @return false if the files are too large to be preloaded.
+     */
+    private static boolean readAheadMainDictionaryFiles(final Context context,
+            final Locale locale) {
+        final ArrayList<AssetFileAddress> wordLists = BinaryDictionaryGetter.getDictionaryFiles(
+                locale, context, false /* notifyDictionaryPackForUpdates */);
+        if (null == wordLists) {
+            return true;
+        }
+        final ArrayList<AssetFileAddress> files = new ArrayList<>();
+        final File mergedFile = WordListMerger.getMergedDictionaryFileIfBuilt(context, locale,
+                wordLists);
+        if (null == mergedFile) {
+            files.addAll(wordLists);
+        } else {
+            // Version 4 dictionaries are directories of files.
+            final File[] mergedFiles = mergedFile.listFiles();
+            if (null != mergedFiles) {
+                for (final File file : mergedFiles) {
+                    files.add(AssetFileAddress.makeFromFile(file));
+                }
+            }
+        }
+        long totalLength = 0;
+        for (final AssetFileAddress file : files) {
+            if (null != file) {
+                totalLength += file.mLength;
+            }
+        }
+        if (totalLength > MAX_PRELOADED_DICTIONARY_BYTES) {
+            Log.i(TAG, "Not preloading the main dictionary of " + locale + ": " + totalLength
+                    + " bytes");
+            return false;
+        }
+        final byte[] buffer = new byte[READ_AHEAD_BUFFER_SIZE];
+        for (final AssetFileAddress file : files) {
+            if (null != file) {
+                readAhead(file, buffer);
+            }
+        }
+        return true;
+    }
+
+    private static void readAhead(final AssetFileAddress file, final byte[] buffer) {
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file.mFilename, "r");
+            raf.seek(file.mOffset);
+            long remaining = file.mLength;
+            // The preloading is cancelled by interrupting it.
+            while (remaining > 0 && !Thread.currentThread().isInterrupted()) {
+                final int read = raf.read(buffer, 0, (int)Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    break;
+                }
+                remaining -= read;
+            }
+        } catch (final IOException e) {
+            // Reading ahead is only an optimization.
+            Log.w(TAG, "Cannot read ahead " + file.mFilename, e);
+        } finally {
+            if (null != raf) {
+                try {
+                    raf.close();
+                } catch (final IOException e) {
+                    // Ignore.
+                }
+            }
+        }
+    }
+}
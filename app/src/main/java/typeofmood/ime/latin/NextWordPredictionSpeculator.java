@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package typeofmood.ime.latin;
+
+import typeofmood.ime.keyboard.Keyboard;
+import typeofmood.ime.latin.common.ComposedData;
+import typeofmood.ime.latin.common.InputPointers;
+import typeofmood.ime.latin.define.DecoderSpecificConstants;
+import typeofmood.ime.latin.settings.SettingsValuesForSuggestion;
+import typeofmood.ime.latin.utils.SuggestionResults;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Computes the predictions for the word after the one being composed before it is committed, so
+ * that they can be shown as soon as it is.
+ *
+ * While a word is composed, {@link Suggest} tells which word is the most likely to be committed,
+ * if it is confident enough about it. The predictions that follow that word are then computed in
+ * the background, on the thread that gets suggestions, and served instead of being computed again
+ * if the context predictions are requested for is the one they were computed for. They are
+ * discarded otherwise.
+ */
+final class NextWordPredictionSpeculator {
+    // The data of a word that is not composed yet.
+    private final ComposedData mEmptyComposedData = new ComposedData(
+            new InputPointers(DecoderSpecificConstants.DICTIONARY_MAX_WORD_LENGTH),
+            false /* isBatchMode */, "" /* typedWord */);
+
+    // The context of the predictions to compute, or null. The id changes each time it is set.
+    private NgramContext mPendingNgramContext;
+    private Keyboard mPendingKeyboard;
+    private SettingsValuesForSuggestion mPendingSettingsValuesForSuggestion;
+    private Locale mPendingLocale;
+    private int mPendingSpeculationId;
+
+    // The predictions computed in advance, or null, and what they were computed for.
+    private SuggestionResults mPredictions;
+    private NgramContext mNgramContext;
+    private boolean mBlockPotentiallyOffensive;
+    private Locale mLocale;
+    private long mComputeTimeNanos;
+
+    // The speculations that were computed, the ones that were served, along with the total time
+    // they took to be computed, and the predictions that were computed when requested.
+    private int mComputedCount;
+    private int mServedCount;
+    private long mServedTimeNanos;
+    private int mComputedOnRequestCount;
+    private long mComputedOnRequestTimeNanos;
+
+    /**
+     * Sets the context of the predictions to compute in advance, which is the one after the word
+     * that is the most likely to be committed. Predictions computed for another context are
+     * discarded.
+     * @param ngramContext the context, or null if no word is likely enough to be committed.
+     */
+    public synchronized void speculate(@Nullable final NgramContext ngramContext,
+            @Nonnull final Keyboard keyboard,
+            @Nonnull final SettingsValuesForSuggestion settingsValuesForSuggestion,
+            @Nullable final Locale locale) {
+        ++mPendingSpeculationId;
+        if (null != ngramContext && null != mPredictions && isForPredictions(ngramContext,
+                settingsValuesForSuggestion, locale)) {
+            // The predictions are already there.
+            clearPendingSpeculation();
+            return;
+        }
+        mPredictions = null;
+        mNgramContext = null;
+        mPendingNgramContext = ngramContext;
+        mPendingKeyboard = null == ngramContext ? null : keyboard;
+        mPendingSettingsValuesForSuggestion = null == ngramContext ? null
+                : settingsValuesForSuggestion;
+        mPendingLocale = locale;
+    }
+
+    public synchronized boolean hasPendingSpeculation() {
+        return null != mPendingNgramContext;
+    }
+
+    /**
+     * Computes the predictions of the pending speculation, if any.
+     */
+    public void computePendingSpeculation(
+            @Nonnull final DictionaryFacilitator dictionaryFacilitator) {
+        final NgramContext ngramContext;
+        final Keyboard keyboard;
+        final SettingsValuesForSuggestion settingsValuesForSuggestion;
+        final Locale locale;
+        final int speculationId;
+        synchronized (this) {
+            if (null == mPendingNgramContext) {
+                return;
+            }
+            ngramContext = mPendingNgramContext;
+            keyboard = mPendingKeyboard;
+            settingsValuesForSuggestion = mPendingSettingsValuesForSuggestion;
+            locale = mPendingLocale;
+            speculationId = mPendingSpeculationId;
+            clearPendingSpeculation();
+        }
+        final long startTimeNanos = System.nanoTime();
+        final SuggestionResults predictions = dictionaryFacilitator.getSuggestionResults(
+                mEmptyComposedData, ngramContext, keyboard, settingsValuesForSuggestion,
+                Suggest.SESSION_ID_TYPING, SuggestedWords.INPUT_STYLE_PREDICTION);
+        final long computeTimeNanos = System.nanoTime() - startTimeNanos;
+        synchronized (this) {
+            ++mComputedCount;
+            if (speculationId != mPendingSpeculationId) {
+                // The user went on typing in the meantime.
+                return;
+            }
+            mPredictions = predictions;
+            mNgramContext = ngramContext;
+            mBlockPotentiallyOffensive = settingsValuesForSuggestion.mBlockPotentiallyOffensive;
+            mLocale = locale;
+            mComputeTimeNanos = computeTimeNanos;
+        }
+    }
+
+    /**
+     * @return the predictions computed in advance for the context, which the caller then owns,
+     * or null if there are none. Any other predictions are discarded.
+     */
+    @Nullable
+    public synchronized SuggestionResults takePredictions(@Nonnull final NgramContext ngramContext,
+            @Nonnull final SettingsValuesForSuggestion settingsValuesForSuggestion,
+            @Nullable final Locale locale) {
+        ++mPendingSpeculationId;
+        clearPendingSpeculation();
+        final SuggestionResults predictions = mPredictions;
+        final boolean isForPredictions = null != predictions
+                && isForPredictions(ngramContext, settingsValuesForSuggestion, locale);
+        mPredictions = null;
+        mNgramContext = null;
+        if (!isForPredictions) {
+            return null;
+        }
+        ++mServedCount;
+        mServedTimeNanos += mComputeTimeNanos;
+        return predictions;
+    }
+
+    /**
+     * Records the time it took to compute predictions that had not been computed in advance.
+     */
+    public synchronized void onPredictionsComputed(final long computeTimeNanos) {
+        ++mComputedOnRequestCount;
+        mComputedOnRequestTimeNanos += computeTimeNanos;
+    }
+
+    public synchronized void discard() {
+        ++mPendingSpeculationId;
+        clearPendingSpeculation();
+        mPredictions = null;
+        mNgramContext = null;
+    }
+
+    public synchronized String dump() {
+        return "speculative predictions = " + mComputedCount
+                + ", served = " + mServedCount
+                + (0 == mComputedCount ? "" : " (" + (100 * mServedCount / mComputedCount) + "%)")
+                + (0 == mServedCount ? "" : ", saving " + TimeUnit.NANOSECONDS.toMicros(
+                        mServedTimeNanos / mServedCount) + "us on average")
+                + ", predictions computed on request = " + mComputedOnRequestCount
+                + (0 == mComputedOnRequestCount ? "" : " (" + TimeUnit.NANOSECONDS.toMicros(
+                        mComputedOnRequestTimeNanos / mComputedOnRequestCount)
+                        + "us on average)");
+    }
+
+    private boolean isForPredictions(@Nonnull final NgramContext ngramContext,
+            @Nonnull final SettingsValuesForSuggestion settingsValuesForSuggestion,
+            @Nullable final Locale locale) {
+        return ngramContext.equals(mNgramContext)
+                && settingsValuesForSuggestion.mBlockPotentiallyOffensive
+                        == mBlockPotentiallyOffensive
+                && (null == locale ? null == mLocale : locale.equals(mLocale));
+    }
+
+    private void clearPendingSpeculation() {
+        mPendingNgramContext = null;
+        mPendingKeyboard = null;
+        mPendingSettingsValuesForSuggestion = null;
+        mPendingLocale = null;
+    }
+}
@@ -22,6 +22,7 @@ import typeofmood.ime.annotations.UsedForTesting;
 import typeofmood.ime.latin.common.StringUtils;
 import typeofmood.ime.latin.define.DecoderSpecificConstants;
 
+import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 
@@ -219,6 +220,44 @@ public class NgramContext {
         }
     }
 
+    /**
+     * Same as {@link #outputToArray(int[][], boolean[])}, but writes to buffers with absolute
+     * puts, so that nothing is allocated.
+     * @param codePoints receives the code points of the i-th previous word from index
+     * i * maxCodePointCount.
+     * @param maxCodePointCount the maximum length of a word. Longer words are output as empty.
+     * @param codePointCounts receives the number of code points of each previous word.
+     * @param isBeginningOfSentence receives 1 for each previous word that is the beginning of a
+     * sentence and 0 otherwise.
+     */
+    public void outputToBuffers(final IntBuffer codePoints, final int maxCodePointCount,
+            final IntBuffer codePointCounts, final IntBuffer isBeginningOfSentence) {
+        final int prevWordCount = Math.min(mPrevWordsCount, codePointCounts.limit());
+        for (int i = 0; i < prevWordCount; i++) {
+            final WordInfo wordInfo = mPrevWordsInfo[i];
+            codePointCounts.put(i, 0);
+            isBeginningOfSentence.put(i, 0);
+            if (wordInfo == null || !wordInfo.isValid()) {
+                continue;
+            }
+            final CharSequence word = wordInfo.mWord;
+            final int start = i * maxCodePointCount;
+            int codePointCount = 0;
+            for (int index = 0; index < word.length();
+                    index = Character.offsetByCodePoints(word, index, 1)) {
+                if (codePointCount >= maxCodePointCount) {
+                    // Too long to be a word.
+                    codePointCount = 0;
+                    break;
+                }
+                codePoints.put(start + codePointCount, Character.codePointAt(word, index));
+                ++codePointCount;
+            }
+            codePointCounts.put(i, codePointCount);
+            isBeginningOfSentence.put(i, wordInfo.mIsBeginningOfSentence ? 1 : 0);
+        }
+    }
+
     public int getPrevWordCount() {
         return mPrevWordsCount;
     }
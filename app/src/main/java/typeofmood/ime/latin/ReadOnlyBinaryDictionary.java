@@ -20,33 +20,174 @@ import typeofmood.ime.latin.SuggestedWords.SuggestedWordInfo;
 import typeofmood.ime.latin.common.ComposedData;
 import typeofmood.ime.latin.settings.SettingsValuesForSuggestion;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.Locale;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * This class provides binary dictionary reading operations with locking. An instance of this class
- * can be used by multiple threads. Note that different session IDs must be used when multiple
- * threads get suggestions using this class.
+ * This class provides binary dictionary reading operations that never block each other. An
+ * instance of this class can be used by multiple threads. Note that different session IDs must be
+ * used when multiple threads get suggestions using this class.
+ *
+ * Instances reading the same data share the underlying native dictionary, so that the keyboard
+ * and the spell checker don't each map their own copy of the same main dictionary. The native
+ * dictionary is closed when the last instance using it is closed.
  */
 public final class ReadOnlyBinaryDictionary extends Dictionary {
-    /**
-     * A lock for accessing binary dictionary. Only closing binary dictionary is the operation
-     * that change the state of dictionary.
-     */
-    private final ReentrantReadWriteLock mLock = new ReentrantReadWriteLock();
+    // Session IDs of each instance are moved to their own range of the shared dictionary, so that
+    // instances sharing a dictionary never use the same traverse session.
+    private static final int SESSION_ID_SLOT_SHIFT = 16;
+    private static final int MAX_SESSION_ID = (1 << SESSION_ID_SLOT_SHIFT) - 1;
+
+    // Guards the map and the reference counts and slots of the dictionaries in it.
+    private static final HashMap<String, SharedDictionary> sSharedDictionaries = new HashMap<>();
+
+    private static final class SharedDictionary {
+        public final String mKey;
+        public final BinaryDictionary mBinaryDictionary;
+        public int mReferenceCount;
+        public final BitSet mUsedSessionIdSlots = new BitSet();
+        // Main dictionaries never change, so only closing has to wait for readers, and readers
+        // only have to tell whether closing has started. This is cheaper than a read lock, whose
+        // shared state and per-thread hold counts are updated on every read.
+        private final AtomicInteger mActiveReaderCount = new AtomicInteger();
+        private volatile boolean mIsClosing;
+
+        public SharedDictionary(final String key, final BinaryDictionary binaryDictionary) {
+            mKey = key;
+            mBinaryDictionary = binaryDictionary;
+        }
+
+        /**
+         * @return whether the dictionary may be read, in which case {@link #endRead()} must be
+         * called after reading.
+         */
+        public boolean tryBeginRead() {
+            mActiveReaderCount.incrementAndGet();
+            if (mIsClosing) {
+                endRead();
+                return false;
+            }
+            return true;
+        }
+
+        public void endRead() {
+            if (0 == mActiveReaderCount.decrementAndGet() && mIsClosing) {
+                synchronized (this) {
+                    notifyAll();
+                }
+            }
+        }
+
+        public void closeAfterReads() {
+            mIsClosing = true;
+            boolean isInterrupted = false;
+            synchronized (this) {
+                while (0 != mActiveReaderCount.get()) {
+                    try {
+                        wait();
+                    } catch (final InterruptedException e) {
+                        isInterrupted = true;
+                    }
+                }
+            }
+            mBinaryDictionary.close();
+            if (isInterrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
 
-    private final BinaryDictionary mBinaryDictionary;
+    private final SharedDictionary mSharedDictionary;
+    private final int mSessionIdOffset;
+    private volatile boolean mIsClosed;
+    // The reads of this instance, which may use traverse sessions in its range of session IDs.
+    // The range is only given back once they are done, so that no other instance gets it while
+    // they run.
+    private final AtomicInteger mActiveReaderCount = new AtomicInteger();
+    private final AtomicBoolean mIsSessionIdSlotReleased = new AtomicBoolean();
 
     public ReadOnlyBinaryDictionary(final String filename, final long offset, final long length,
             final boolean useFullEditDistance, final Locale locale, final String dictType) {
         super(dictType, locale);
-        mBinaryDictionary = new BinaryDictionary(filename, offset, length, useFullEditDistance,
-                locale, dictType, false /* isUpdatable */);
+        synchronized (sSharedDictionaries) {
+            mSharedDictionary = acquireSharedDictionaryLocked(filename, offset, length,
+                    useFullEditDistance, locale, dictType);
+            final int slot = mSharedDictionary.mUsedSessionIdSlots.nextClearBit(0);
+            mSharedDictionary.mUsedSessionIdSlots.set(slot);
+            mSessionIdOffset = slot << SESSION_ID_SLOT_SHIFT;
+        }
+    }
+
+    private static SharedDictionary acquireSharedDictionaryLocked(final String filename,
+            final long offset, final long length, final boolean useFullEditDistance,
+            final Locale locale, final String dictType) {
+        // The modification time tells apart successive files at the same path.
+        final String key = filename + ":" + offset + ":" + length + ":"
+                + new File(filename).lastModified() + ":" + useFullEditDistance + ":" + locale
+                + ":" + dictType;
+        SharedDictionary sharedDictionary = sSharedDictionaries.get(key);
+        if (null == sharedDictionary) {
+            sharedDictionary = new SharedDictionary(key, new BinaryDictionary(filename, offset,
+                    length, useFullEditDistance, locale, dictType, false /* isUpdatable */));
+            // Invalid dictionaries are closed right away by their only user.
+            if (sharedDictionary.mBinaryDictionary.isValidDictionary()) {
+                sSharedDictionaries.put(key, sharedDictionary);
+            }
+        }
+        ++sharedDictionary.mReferenceCount;
+        return sharedDictionary;
+    }
+
+    /**
+     * @return whether the dictionary may be read, in which case {@link #endRead()} must be
+     * called after reading.
+     */
+    private boolean tryBeginRead() {
+        mActiveReaderCount.incrementAndGet();
+        if (mIsClosed || !mSharedDictionary.tryBeginRead()) {
+            endInstanceRead();
+            return false;
+        }
+        return true;
+    }
+
+    private void endRead() {
+        mSharedDictionary.endRead();
+        endInstanceRead();
+    }
+
+    private void endInstanceRead() {
+        if (0 == mActiveReaderCount.decrementAndGet() && mIsClosed) {
+            releaseSessionIdSlot();
+        }
+    }
+
+    // Called once the instance is closed and its last read is done, which may happen on both
+    // the closing thread and the last reading one.
+    private void releaseSessionIdSlot() {
+        if (!mIsSessionIdSlotReleased.compareAndSet(false, true)) {
+            return;
+        }
+        synchronized (sSharedDictionaries) {
+            mSharedDictionary.mUsedSessionIdSlots.clear(mSessionIdOffset >> SESSION_ID_SLOT_SHIFT);
+        }
+    }
+
+    private int getSharedSessionId(final int sessionId) {
+        if (sessionId < 0 || sessionId > MAX_SESSION_ID) {
+            throw new IllegalArgumentException("Session ID out of range: " + sessionId);
+        }
+        return mSessionIdOffset + sessionId;
     }
 
     public boolean isValidDictionary() {
-        return mBinaryDictionary.isValidDictionary();
+        return !mIsClosed && mSharedDictionary.mBinaryDictionary.isValidDictionary();
     }
 
     @Override
@@ -55,13 +196,14 @@ public final class ReadOnlyBinaryDictionary extends Dictionary {
             final SettingsValuesForSuggestion settingsValuesForSuggestion,
             final int sessionId, final float weightForLocale,
             final float[] inOutWeightOfLangModelVsSpatialModel) {
-        if (mLock.readLock().tryLock()) {
+        if (tryBeginRead()) {
             try {
-                return mBinaryDictionary.getSuggestions(composedData, ngramContext,
-                        proximityInfoHandle, settingsValuesForSuggestion, sessionId,
-                        weightForLocale, inOutWeightOfLangModelVsSpatialModel);
+                return mSharedDictionary.mBinaryDictionary.getSuggestions(composedData,
+                        ngramContext, proximityInfoHandle, settingsValuesForSuggestion,
+                        getSharedSessionId(sessionId), weightForLocale,
+                        inOutWeightOfLangModelVsSpatialModel);
             } finally {
-                mLock.readLock().unlock();
+                endRead();
             }
         }
         return null;
@@ -69,23 +211,35 @@ public final class ReadOnlyBinaryDictionary extends Dictionary {
 
     @Override
     public boolean isInDictionary(final String word) {
-        if (mLock.readLock().tryLock()) {
+        if (tryBeginRead()) {
             try {
-                return mBinaryDictionary.isInDictionary(word);
+                return mSharedDictionary.mBinaryDictionary.isInDictionary(word);
             } finally {
-                mLock.readLock().unlock();
+                endRead();
             }
         }
         return false;
     }
 
+    @Override
+    public void markWordsInDictionary(final String[] words, final boolean[] inOutIsInDictionary) {
+        if (tryBeginRead()) {
+            try {
+                mSharedDictionary.mBinaryDictionary.markWordsInDictionary(words,
+                        inOutIsInDictionary);
+            } finally {
+                endRead();
+            }
+        }
+    }
+
     @Override
     public boolean shouldAutoCommit(final SuggestedWordInfo candidate) {
-        if (mLock.readLock().tryLock()) {
+        if (tryBeginRead()) {
             try {
-                return mBinaryDictionary.shouldAutoCommit(candidate);
+                return mSharedDictionary.mBinaryDictionary.shouldAutoCommit(candidate);
             } finally {
-                mLock.readLock().unlock();
+                endRead();
             }
         }
         return false;
@@ -93,35 +247,72 @@ public final class ReadOnlyBinaryDictionary extends Dictionary {
 
     @Override
     public int getFrequency(final String word) {
-        if (mLock.readLock().tryLock()) {
+        if (tryBeginRead()) {
             try {
-                return mBinaryDictionary.getFrequency(word);
+                return mSharedDictionary.mBinaryDictionary.getFrequency(word);
             } finally {
-                mLock.readLock().unlock();
+                endRead();
             }
         }
         return NOT_A_PROBABILITY;
     }
 
+    @Override
+    public void getFrequencies(final String[] words, final int[] outFrequencies) {
+        if (tryBeginRead()) {
+            try {
+                mSharedDictionary.mBinaryDictionary.getFrequencies(words, outFrequencies);
+            } finally {
+                endRead();
+            }
+            return;
+        }
+        Arrays.fill(outFrequencies, 0, words.length, NOT_A_PROBABILITY);
+    }
+
     @Override
     public int getMaxFrequencyOfExactMatches(final String word) {
-        if (mLock.readLock().tryLock()) {
+        if (tryBeginRead()) {
             try {
-                return mBinaryDictionary.getMaxFrequencyOfExactMatches(word);
+                return mSharedDictionary.mBinaryDictionary.getMaxFrequencyOfExactMatches(word);
             } finally {
-                mLock.readLock().unlock();
+                endRead();
             }
         }
         return NOT_A_PROBABILITY;
     }
 
+    @Override
+    public void releaseTraverseSession(final int sessionId) {
+        if (tryBeginRead()) {
+            try {
+                mSharedDictionary.mBinaryDictionary.releaseTraverseSession(
+                        getSharedSessionId(sessionId));
+            } finally {
+                endRead();
+            }
+        }
+    }
+
     @Override
     public void close() {
-        mLock.writeLock().lock();
-        try {
-            mBinaryDictionary.close();
-        } finally {
-            mLock.writeLock().unlock();
+        final boolean isLastReference;
+        synchronized (sSharedDictionaries) {
+            if (mIsClosed) {
+                return;
+            }
+            mIsClosed = true;
+            isLastReference = 0 == --mSharedDictionary.mReferenceCount;
+            if (isLastReference
+                    && sSharedDictionaries.get(mSharedDictionary.mKey) == mSharedDictionary) {
+                sSharedDictionaries.remove(mSharedDictionary.mKey);
+            }
+        }
+        if (0 == mActiveReaderCount.get()) {
+            releaseSessionIdSlot();
+        }
+        if (isLastReference) {
+            mSharedDictionary.closeAfterReads();
         }
     }
 }
@@ -83,11 +83,23 @@ public final class RichInputConnection implements PrivateCommandPerformer {
     private static final int OPERATION_GET_TEXT_AFTER_CURSOR = 1;
     private static final int OPERATION_GET_WORD_RANGE_AT_CURSOR = 2;
     private static final int OPERATION_RELOAD_TEXT_CACHE = 3;
+    private static final int OPERATION_COMMIT_TEXT = 4;
+    private static final int OPERATION_SET_COMPOSING_TEXT = 5;
+    private static final int OPERATION_SET_SELECTION = 6;
+    private static final int OPERATION_FINISH_COMPOSING_TEXT = 7;
+    private static final int OPERATION_DELETE_SURROUNDING_TEXT = 8;
+    private static final int OPERATION_GET_EXTRACTED_TEXT = 9;
     private static final String[] OPERATION_NAMES = new String[] {
             "GET_TEXT_BEFORE_CURSOR",
             "GET_TEXT_AFTER_CURSOR",
             "GET_WORD_RANGE_AT_CURSOR",
-            "RELOAD_TEXT_CACHE"};
+            "RELOAD_TEXT_CACHE",
+            "COMMIT_TEXT",
+            "SET_COMPOSING_TEXT",
+            "SET_SELECTION",
+            "FINISH_COMPOSING_TEXT",
+            "DELETE_SURROUNDING_TEXT",
+            "GET_EXTRACTED_TEXT"};
 
     /**
      * The amount of time the keyboard will persist in the {@link #hasSlowInputConnection} state
@@ -118,6 +130,83 @@ public final class RichInputConnection implements PrivateCommandPerformer {
      * This contains the currently composing text, as LatinIME thinks the TextView is seeing it.
      */
     private final StringBuilder mComposingText = new StringBuilder();
+    /**
+     * This contains the text immediately following the cursor, or the selection end, with its
+     * styles. It is only retrieved from the TextView when it is needed and none of our own edits
+     * touch it, so it stays valid until the cursor moves somewhere we did not expect, at which
+     * point we reload it lazily again. Only meaningful when mIsTextAfterCursorKnown is true.
+     */
+    private final SpannableStringBuilder mTextAfterCursor = new SpannableStringBuilder();
+    private boolean mIsTextAfterCursorKnown = false;
+    /**
+     * Whether mTextAfterCursor ends at the end of the text, as opposed to having been truncated.
+     */
+    private boolean mIsTextAfterCursorComplete = false;
+    /**
+     * Whether the composing region was set to extend after the cursor. The text after the cursor
+     * is going to be replaced by the next change to the composing text, so we don't keep it.
+     */
+    private boolean mDoesComposingRegionExtendAfterCursor = false;
+
+    /**
+     * The number of InputConnection calls for each operation, and their total and maximum
+     * durations, for debugging the cost of talking to the editor. The calls that only send a
+     * change to the editor do not wait for it, so their durations are the cost of sending it.
+     */
+    private final int[] mOperationCounts = new int[OPERATION_NAMES.length];
+    private final long[] mOperationTotalDurationsNanos = new long[OPERATION_NAMES.length];
+    private final long[] mOperationMaxDurationsNanos = new long[OPERATION_NAMES.length];
+    private int mTextAfterCursorCacheHitCount = 0;
+
+    /**
+     * Incremented after each change to the committed or composing text before the cursor or to
+     * the expected cursor position, so that what is computed from them can be reused until the
+     * next change.
+     */
+    private int mTextBeforeCursorVersion = 0;
+    /**
+     * The last n-gram context computed from the text before the cursor, or null.
+     */
+    private volatile CachedNgramContext mCachedNgramContext = null;
+
+    /**
+     * The last caps mode computed from the text before the cursor, or null.
+     */
+    private volatile CachedCapsMode mCachedCapsMode = null;
+
+    private static final class CachedCapsMode {
+        public final int mTextBeforeCursorVersion;
+        public final int mInputType;
+        public final SpacingAndPunctuations mSpacingAndPunctuations;
+        public final boolean mHasSpaceBefore;
+        public final int mCapsMode;
+
+        public CachedCapsMode(final int textBeforeCursorVersion, final int inputType,
+                final SpacingAndPunctuations spacingAndPunctuations,
+                final boolean hasSpaceBefore, final int capsMode) {
+            mTextBeforeCursorVersion = textBeforeCursorVersion;
+            mInputType = inputType;
+            mSpacingAndPunctuations = spacingAndPunctuations;
+            mHasSpaceBefore = hasSpaceBefore;
+            mCapsMode = capsMode;
+        }
+    }
+
+    private static final class CachedNgramContext {
+        public final int mTextBeforeCursorVersion;
+        public final int mNthPreviousWord;
+        public final SpacingAndPunctuations mSpacingAndPunctuations;
+        public final NgramContext mNgramContext;
+
+        public CachedNgramContext(final int textBeforeCursorVersion, final int nthPreviousWord,
+                final SpacingAndPunctuations spacingAndPunctuations,
+                final NgramContext ngramContext) {
+            mTextBeforeCursorVersion = textBeforeCursorVersion;
+            mNthPreviousWord = nthPreviousWord;
+            mSpacingAndPunctuations = spacingAndPunctuations;
+            mNgramContext = ngramContext;
+        }
+    }
 
     /**
      * This variable is a temporary object used in {@link #commitText(CharSequence,int)}
@@ -155,6 +244,7 @@ public final class RichInputConnection implements PrivateCommandPerformer {
 
     public void onStartInput() {
         mLastSlowInputConnectionTime = -SLOW_INPUTCONNECTION_PERSIST_MS;
+        invalidateTextAfterCursor();
     }
 
     private void checkConsistencyForDebug() {
@@ -163,7 +253,9 @@ public final class RichInputConnection implements PrivateCommandPerformer {
         r.hintMaxLines = 0;
         r.token = 1;
         r.flags = 0;
+        final long startTimeNanos = System.nanoTime();
         final ExtractedText et = mIC.getExtractedText(r, 0);
+        recordCall(OPERATION_GET_EXTRACTED_TEXT, startTimeNanos);
         final CharSequence beforeCursor = getTextBeforeCursor(Constants.EDITOR_CONTENTS_CACHE_SIZE,
                 0);
         final StringBuilder internal = new StringBuilder(mCommittedTextBeforeComposingText)
@@ -234,13 +326,15 @@ public final class RichInputConnection implements PrivateCommandPerformer {
         mExpectedSelStart = newSelStart;
         mExpectedSelEnd = newSelEnd;
         mComposingText.setLength(0);
+        mDoesComposingRegionExtendAfterCursor = false;
+        ++mTextBeforeCursorVersion;
         final boolean didReloadTextSuccessfully = reloadTextCache();
         if (!didReloadTextSuccessfully) {
             Log.d(TAG, "Will try to retrieve text later.");
             return false;
         }
         if (isConnected() && shouldFinishComposition) {
-            mIC.finishComposingText();
+            finishComposingTextOnConnection();
         }
         return true;
     }
@@ -252,6 +346,10 @@ public final class RichInputConnection implements PrivateCommandPerformer {
      */
     private boolean reloadTextCache() {
         mCommittedTextBeforeComposingText.setLength(0);
+        ++mTextBeforeCursorVersion;
+        // We don't know what happened to the text after the cursor either. It will be retrieved
+        // again the next time it's needed.
+        invalidateTextAfterCursor();
         mIC = mParent.getCurrentInputConnection();
         // Call upon the inputconnection directly since our own method is using the cache, and
         // we want to refresh it.
@@ -269,6 +367,7 @@ public final class RichInputConnection implements PrivateCommandPerformer {
             return false;
         }
         mCommittedTextBeforeComposingText.append(textBeforeCursor);
+        ++mTextBeforeCursorVersion;
         return true;
     }
 
@@ -288,8 +387,10 @@ public final class RichInputConnection implements PrivateCommandPerformer {
         // it works, but it's wrong and should be fixed.
         mCommittedTextBeforeComposingText.append(mComposingText);
         mComposingText.setLength(0);
+        mDoesComposingRegionExtendAfterCursor = false;
+        ++mTextBeforeCursorVersion;
         if (isConnected()) {
-            mIC.finishComposingText();
+            finishComposingTextOnConnection();
         }
     }
 
@@ -303,12 +404,19 @@ public final class RichInputConnection implements PrivateCommandPerformer {
         if (DEBUG_BATCH_NESTING) checkBatchEdit();
         if (DEBUG_PREVIOUS_TEXT) checkConsistencyForDebug();
         mCommittedTextBeforeComposingText.append(text);
+        ++mTextBeforeCursorVersion;
         // TODO: the following is exceedingly error-prone. Right now when the cursor is in the
         // middle of the composing word mComposingText only holds the part of the composing text
         // that is before the cursor, so this actually works, but it's terribly confusing. Fix this.
         mExpectedSelStart += text.length() - mComposingText.length();
         mExpectedSelEnd = mExpectedSelStart;
         mComposingText.setLength(0);
+        // Committing replaces the whole composing region, so if it used to extend after the
+        // cursor the text after the cursor is different now.
+        if (mDoesComposingRegionExtendAfterCursor) {
+            mDoesComposingRegionExtendAfterCursor = false;
+            invalidateTextAfterCursor();
+        }
         if (isConnected()) {
             mTempObjectForCommitText.clear();
             mTempObjectForCommitText.append(text);
@@ -331,7 +439,9 @@ public final class RichInputConnection implements PrivateCommandPerformer {
                     }
                 }
             }
+            final long startTimeNanos = System.nanoTime();
             mIC.commitText(mTempObjectForCommitText, newCursorPosition);
+            recordCall(OPERATION_COMMIT_TEXT, startTimeNanos);
         }
     }
 
@@ -385,12 +495,27 @@ public final class RichInputConnection implements PrivateCommandPerformer {
                         + "Setting caps mode without knowing text.");
             }
         }
+        // The caps mode is asked for several times per key press, by the keyboard for the shift
+        // state and by the suggestion process, while the text only changes once.
+        final int textBeforeCursorVersion = mTextBeforeCursorVersion;
+        final CachedCapsMode cachedCapsMode = mCachedCapsMode;
+        if (null != cachedCapsMode
+                && cachedCapsMode.mTextBeforeCursorVersion == textBeforeCursorVersion
+                && cachedCapsMode.mInputType == inputType
+                && cachedCapsMode.mSpacingAndPunctuations == spacingAndPunctuations
+                && cachedCapsMode.mHasSpaceBefore == hasSpaceBefore) {
+            return cachedCapsMode.mCapsMode;
+        }
         // This never calls InputConnection#getCapsMode - in fact, it's a static method that
         // never blocks or initiates IPC.
-        // TODO: don't call #toString() here. Instead, all accesses to
-        // mCommittedTextBeforeComposingText should be done on the main thread.
-        return CapsModeUtils.getCapsMode(mCommittedTextBeforeComposingText.toString(), inputType,
-                spacingAndPunctuations, hasSpaceBefore);
+        // TODO: all accesses to mCommittedTextBeforeComposingText should be done on the main
+        // thread. Until then, the end of the text is copied before being looked at.
+        final int capsMode = CapsModeUtils.getCapsModeAtEndOfText(
+                mCommittedTextBeforeComposingText, inputType, spacingAndPunctuations,
+                hasSpaceBefore);
+        mCachedCapsMode = new CachedCapsMode(textBeforeCursorVersion, inputType,
+                spacingAndPunctuations, hasSpaceBefore, capsMode);
+        return capsMode;
     }
 
     public int getCodePointBeforeCursor() {
@@ -399,7 +524,10 @@ public final class RichInputConnection implements PrivateCommandPerformer {
         return Character.codePointBefore(mCommittedTextBeforeComposingText, length);
     }
 
-    public CharSequence getTextBeforeCursor(final int n, final int flags) {
+    /**
+     * @return whether the last n characters before the cursor can be taken from the cache.
+     */
+    private boolean isTextBeforeCursorCached(final int n) {
         final int cachedLength =
                 mCommittedTextBeforeComposingText.length() + mComposingText.length();
         // If we have enough characters to satisfy the request, or if we have all characters in
@@ -407,9 +535,12 @@ public final class RichInputConnection implements PrivateCommandPerformer {
         // However, if we don't have an expected cursor position, then we should always
         // go fetch the cache again (as it happens, INVALID_CURSOR_POSITION < 0, so we need to
         // test for this explicitly)
-        if (INVALID_CURSOR_POSITION != mExpectedSelStart
-                && (cachedLength >= n || cachedLength >= mExpectedSelStart)) {
-            final StringBuilder s = new StringBuilder(mCommittedTextBeforeComposingText);
+        return INVALID_CURSOR_POSITION != mExpectedSelStart
+                && (cachedLength >= n || cachedLength >= mExpectedSelStart);
+    }
+
+    public CharSequence getTextBeforeCursor(final int n, final int flags) {
+        if (isTextBeforeCursorCached(n)) {
             // We call #toString() here to create a temporary object.
             // In some situations, this method is called on a worker thread, and it's possible
             // the main thread touches the contents of mComposingText while this worker thread
@@ -417,7 +548,15 @@ public final class RichInputConnection implements PrivateCommandPerformer {
             // so we call #toString() on it. That will result in the return value being strictly
             // speaking wrong, but since this is used for basing bigram probability off, and
             // it's only going to matter for one getSuggestions call, it's fine in the practice.
-            s.append(mComposingText.toString());
+            final String composingText = mComposingText.toString();
+            // Only copy the part of the committed text that we need.
+            final int committedLength = mCommittedTextBeforeComposingText.length();
+            final int committedCharsToCopy =
+                    Math.max(0, Math.min(n - composingText.length(), committedLength));
+            final StringBuilder s = new StringBuilder(committedCharsToCopy + composingText.length());
+            s.append(mCommittedTextBeforeComposingText,
+                    committedLength - committedCharsToCopy, committedLength);
+            s.append(composingText);
             if (s.length() > n) {
                 s.delete(0, s.length() - n);
             }
@@ -435,17 +574,63 @@ public final class RichInputConnection implements PrivateCommandPerformer {
         if (!isConnected()) {
             return null;
         }
-        final long startTime = SystemClock.uptimeMillis();
+        final long startTimeNanos = System.nanoTime();
         final CharSequence result = mIC.getTextBeforeCursor(n, flags);
-        detectLaggyConnection(operation, timeout, startTime);
+        detectLaggyConnection(operation, timeout, startTimeNanos);
         return result;
     }
 
     public CharSequence getTextAfterCursor(final int n, final int flags) {
-        return getTextAfterCursorAndDetectLaggyConnection(
+        if (!loadTextAfterCursorIfNeeded(n)) {
+            return getTextAfterCursorAndDetectLaggyConnection(
+                    OPERATION_GET_TEXT_AFTER_CURSOR,
+                    SLOW_INPUT_CONNECTION_ON_PARTIAL_RELOAD_MS,
+                    n, flags);
+        }
+        final CharSequence after =
+                mTextAfterCursor.subSequence(0, Math.min(n, mTextAfterCursor.length()));
+        return 0 != (flags & InputConnection.GET_TEXT_WITH_STYLES) ? after : after.toString();
+    }
+
+    /**
+     * Makes sure mTextAfterCursor holds at least n characters, or all the text after the cursor,
+     * retrieving it from the TextView if needed.
+     *
+     * @param n the number of characters needed.
+     * @return whether mTextAfterCursor can be used. If not, the caller should ask the TextView.
+     */
+    private boolean loadTextAfterCursorIfNeeded(final int n) {
+        if (mIsTextAfterCursorKnown
+                && (mTextAfterCursor.length() >= n || mIsTextAfterCursorComplete)) {
+            ++mTextAfterCursorCacheHitCount;
+            return true;
+        }
+        if (!isCursorPositionKnown() || mDoesComposingRegionExtendAfterCursor) {
+            // The text after the cursor is going to change under our feet: don't keep it.
+            return false;
+        }
+        final int length = Math.max(n, NUM_CHARS_TO_GET_AFTER_CURSOR);
+        final CharSequence after = getTextAfterCursorAndDetectLaggyConnection(
                 OPERATION_GET_TEXT_AFTER_CURSOR,
                 SLOW_INPUT_CONNECTION_ON_PARTIAL_RELOAD_MS,
-                n, flags);
+                length, InputConnection.GET_TEXT_WITH_STYLES);
+        if (null == after) {
+            invalidateTextAfterCursor();
+            return false;
+        }
+        mTextAfterCursor.clear();
+        mTextAfterCursor.clearSpans();
+        mTextAfterCursor.append(after);
+        mIsTextAfterCursorComplete = after.length() < length;
+        mIsTextAfterCursorKnown = true;
+        return true;
+    }
+
+    private void invalidateTextAfterCursor() {
+        mIsTextAfterCursorKnown = false;
+        mIsTextAfterCursorComplete = false;
+        mTextAfterCursor.clear();
+        mTextAfterCursor.clearSpans();
     }
 
     private CharSequence getTextAfterCursorAndDetectLaggyConnection(
@@ -454,14 +639,16 @@ public final class RichInputConnection implements PrivateCommandPerformer {
         if (!isConnected()) {
             return null;
         }
-        final long startTime = SystemClock.uptimeMillis();
+        final long startTimeNanos = System.nanoTime();
         final CharSequence result = mIC.getTextAfterCursor(n, flags);
-        detectLaggyConnection(operation, timeout, startTime);
+        detectLaggyConnection(operation, timeout, startTimeNanos);
         return result;
     }
 
-    private void detectLaggyConnection(final int operation, final long timeout, final long startTime) {
-        final long duration = SystemClock.uptimeMillis() - startTime;
+    private void detectLaggyConnection(final int operation, final long timeout,
+            final long startTimeNanos) {
+        final long durationNanos = recordCall(operation, startTimeNanos);
+        final long duration = TimeUnit.NANOSECONDS.toMillis(durationNanos);
         if (duration >= timeout) {
             final String operationName = OPERATION_NAMES[operation];
             Log.w(TAG, "Slow InputConnection: " + operationName + " took " + duration + " ms.");
@@ -470,11 +657,41 @@ public final class RichInputConnection implements PrivateCommandPerformer {
         }
     }
 
+    /**
+     * Counts an InputConnection call for {@link #dump()}.
+     *
+     * @param operation the operation the call was made for.
+     * @param startTimeNanos the value of {@link System#nanoTime()} before the call.
+     * @return the duration of the call in nanoseconds.
+     */
+    private long recordCall(final int operation, final long startTimeNanos) {
+        final long durationNanos = System.nanoTime() - startTimeNanos;
+        ++mOperationCounts[operation];
+        mOperationTotalDurationsNanos[operation] += durationNanos;
+        mOperationMaxDurationsNanos[operation] =
+                Math.max(mOperationMaxDurationsNanos[operation], durationNanos);
+        return durationNanos;
+    }
+
+    private void finishComposingTextOnConnection() {
+        final long startTimeNanos = System.nanoTime();
+        mIC.finishComposingText();
+        recordCall(OPERATION_FINISH_COMPOSING_TEXT, startTimeNanos);
+    }
+
+    private boolean setSelectionOnConnection(final int start, final int end) {
+        final long startTimeNanos = System.nanoTime();
+        final boolean isIcValid = mIC.setSelection(start, end);
+        recordCall(OPERATION_SET_SELECTION, startTimeNanos);
+        return isIcValid;
+    }
+
     public void deleteTextBeforeCursor(final int beforeLength) {
         if (DEBUG_BATCH_NESTING) checkBatchEdit();
         // TODO: the following is incorrect if the cursor is not immediately after the composition.
         // Right now we never come here in this case because we reset the composing state before we
         // come here in this case, but we need to fix this.
+        ++mTextBeforeCursorVersion;
         final int remainingChars = mComposingText.length() - beforeLength;
         if (remainingChars >= 0) {
             mComposingText.setLength(remainingChars);
@@ -495,7 +712,9 @@ public final class RichInputConnection implements PrivateCommandPerformer {
             mExpectedSelStart = 0;
         }
         if (isConnected()) {
+            final long startTimeNanos = System.nanoTime();
             mIC.deleteSurroundingText(beforeLength, 0);
+            recordCall(OPERATION_DELETE_SURROUNDING_TEXT, startTimeNanos);
         }
         if (DEBUG_PREVIOUS_TEXT) checkConsistencyForDebug();
     }
@@ -511,6 +730,7 @@ public final class RichInputConnection implements PrivateCommandPerformer {
         if (DEBUG_BATCH_NESTING) checkBatchEdit();
         if (keyEvent.getAction() == KeyEvent.ACTION_DOWN) {
             if (DEBUG_PREVIOUS_TEXT) checkConsistencyForDebug();
+            ++mTextBeforeCursorVersion;
             // This method is only called for enter or backspace when speaking to old applications
             // (target SDK <= 15 (Build.VERSION_CODES.ICE_CREAM_SANDWICH_MR1)), or for digits.
             // When talking to new applications we never use this method because it's inherently
@@ -565,6 +785,7 @@ public final class RichInputConnection implements PrivateCommandPerformer {
         final CharSequence textBeforeCursor =
                 getTextBeforeCursor(Constants.EDITOR_CONTENTS_CACHE_SIZE + (end - start), 0);
         mCommittedTextBeforeComposingText.setLength(0);
+        ++mTextBeforeCursorVersion;
         if (!TextUtils.isEmpty(textBeforeCursor)) {
             // The cursor is not necessarily at the end of the composing text, but we have its
             // position in mExpectedSelStart and mExpectedSelEnd. In this case we want the start
@@ -576,6 +797,11 @@ public final class RichInputConnection implements PrivateCommandPerformer {
                     textBeforeCursor.length()));
             mCommittedTextBeforeComposingText.append(
                     textBeforeCursor.subSequence(0, indexOfStartOfComposingText));
+            ++mTextBeforeCursorVersion;
+        }
+        if (end > mExpectedSelEnd) {
+            mDoesComposingRegionExtendAfterCursor = true;
+            invalidateTextAfterCursor();
         }
         if (isConnected()) {
             mIC.setComposingRegion(start, end);
@@ -589,10 +815,13 @@ public final class RichInputConnection implements PrivateCommandPerformer {
         mExpectedSelEnd = mExpectedSelStart;
         mComposingText.setLength(0);
         mComposingText.append(text);
+        ++mTextBeforeCursorVersion;
         // TODO: support values of newCursorPosition != 1. At this time, this is never called with
         // newCursorPosition != 1.
         if (isConnected()) {
+            final long startTimeNanos = System.nanoTime();
             mIC.setComposingText(text, newCursorPosition);
+            recordCall(OPERATION_SET_COMPOSING_TEXT, startTimeNanos);
         }
         if (DEBUG_PREVIOUS_TEXT) checkConsistencyForDebug();
     }
@@ -616,8 +845,9 @@ public final class RichInputConnection implements PrivateCommandPerformer {
         }
         mExpectedSelStart = start;
         mExpectedSelEnd = end;
+        ++mTextBeforeCursorVersion;
         if (isConnected()) {
-            final boolean isIcValid = mIC.setSelection(start, end);
+            final boolean isIcValid = setSelectionOnConnection(start, end);
             if (!isIcValid) {
                 return false;
             }
@@ -643,6 +873,7 @@ public final class RichInputConnection implements PrivateCommandPerformer {
         // text should never be null, but just in case, it's better to insert nothing than to crash
         if (null == text) text = "";
         mCommittedTextBeforeComposingText.append(text);
+        ++mTextBeforeCursorVersion;
         mExpectedSelStart += text.length() - mComposingText.length();
         mExpectedSelEnd = mExpectedSelStart;
         mComposingText.setLength(0);
@@ -660,6 +891,19 @@ public final class RichInputConnection implements PrivateCommandPerformer {
         if (!isConnected()) {
             return NgramContext.EMPTY_PREV_WORDS_INFO;
         }
+        // The same context is typically asked for several times between two edits, for example
+        // to get suggestions and then to commit or learn the word.
+        final int textBeforeCursorVersion = mTextBeforeCursorVersion;
+        final CachedNgramContext cachedNgramContext = mCachedNgramContext;
+        if (null != cachedNgramContext
+                && cachedNgramContext.mTextBeforeCursorVersion == textBeforeCursorVersion
+                && cachedNgramContext.mNthPreviousWord == n
+                && cachedNgramContext.mSpacingAndPunctuations == spacingAndPunctuations) {
+            return cachedNgramContext.mNgramContext;
+        }
+        // Only remember contexts computed from our own cache: if we have to ask the editor, we
+        // don't know the text well enough to tell when it changes.
+        final boolean isTextCached = isTextBeforeCursorCached(NUM_CHARS_TO_GET_BEFORE_CURSOR);
         final CharSequence prev = getTextBeforeCursor(NUM_CHARS_TO_GET_BEFORE_CURSOR, 0);
         if (DEBUG_PREVIOUS_TEXT && null != prev) {
             final int checkLength = NUM_CHARS_TO_GET_BEFORE_CURSOR - 1;
@@ -679,8 +923,13 @@ public final class RichInputConnection implements PrivateCommandPerformer {
                 }
             }
         }
-        return NgramContextUtils.getNgramContextFromNthPreviousWord(
+        final NgramContext ngramContext = NgramContextUtils.getNgramContextFromNthPreviousWord(
                 prev, spacingAndPunctuations, n);
+        if (isTextCached) {
+            mCachedNgramContext = new CachedNgramContext(textBeforeCursorVersion, n,
+                    spacingAndPunctuations, ngramContext);
+        }
+        return ngramContext;
     }
 
     private static boolean isPartOfCompositionForScript(final int codePoint,
@@ -710,11 +959,14 @@ public final class RichInputConnection implements PrivateCommandPerformer {
                 SLOW_INPUT_CONNECTION_ON_PARTIAL_RELOAD_MS,
                 NUM_CHARS_TO_GET_BEFORE_CURSOR,
                 InputConnection.GET_TEXT_WITH_STYLES);
-        final CharSequence after = getTextAfterCursorAndDetectLaggyConnection(
-                OPERATION_GET_WORD_RANGE_AT_CURSOR,
-                SLOW_INPUT_CONNECTION_ON_PARTIAL_RELOAD_MS,
-                NUM_CHARS_TO_GET_AFTER_CURSOR,
-                InputConnection.GET_TEXT_WITH_STYLES);
+        final CharSequence after = loadTextAfterCursorIfNeeded(NUM_CHARS_TO_GET_AFTER_CURSOR)
+                ? mTextAfterCursor.subSequence(0,
+                        Math.min(NUM_CHARS_TO_GET_AFTER_CURSOR, mTextAfterCursor.length()))
+                : getTextAfterCursorAndDetectLaggyConnection(
+                        OPERATION_GET_WORD_RANGE_AT_CURSOR,
+                        SLOW_INPUT_CONNECTION_ON_PARTIAL_RELOAD_MS,
+                        NUM_CHARS_TO_GET_AFTER_CURSOR,
+                        InputConnection.GET_TEXT_WITH_STYLES);
         if (before == null || after == null) {
             return null;
         }
@@ -940,6 +1192,7 @@ public final class RichInputConnection implements PrivateCommandPerformer {
             // Interestingly, in either case, chances are any action the user takes next will result
             // in a call to onUpdateSelection, which should set things right.
             mExpectedSelStart = mExpectedSelEnd = Constants.NOT_A_CURSOR_POSITION;
+            invalidateTextAfterCursor();
         } else {
             final int textLength = textBeforeCursor.length();
             if (textLength < Constants.EDITOR_CONTENTS_CACHE_SIZE
@@ -959,6 +1212,7 @@ public final class RichInputConnection implements PrivateCommandPerformer {
                 }
             }
         }
+        ++mTextBeforeCursorVersion;
     }
 
     @Override
@@ -989,6 +1243,28 @@ public final class RichInputConnection implements PrivateCommandPerformer {
         return INVALID_CURSOR_POSITION != mExpectedSelStart;
     }
 
+    /**
+     * @return the InputConnection calls made so far with their durations, for debugging.
+     */
+    public String dump() {
+        final StringBuilder sb = new StringBuilder("InputConnection calls :");
+        for (int i = 0; i < OPERATION_NAMES.length; ++i) {
+            final int count = mOperationCounts[i];
+            sb.append("\n  ").append(OPERATION_NAMES[i]).append(" = ").append(count);
+            if (count > 0) {
+                sb.append(" (avg ")
+                        .append(TimeUnit.NANOSECONDS.toMicros(
+                                mOperationTotalDurationsNanos[i] / count))
+                        .append(" us, max ")
+                        .append(TimeUnit.NANOSECONDS.toMicros(mOperationMaxDurationsNanos[i]))
+                        .append(" us)");
+            }
+        }
+        sb.append("\n  Text after cursor served from cache = ")
+                .append(mTextAfterCursorCacheHitCount);
+        return sb.toString();
+    }
+
     /**
      * Work around a bug that was present before Jelly Bean upon rotation.
      *
@@ -1002,11 +1278,11 @@ public final class RichInputConnection implements PrivateCommandPerformer {
     public void maybeMoveTheCursorAroundAndRestoreToWorkaroundABug() {
         if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
             if (mExpectedSelStart > 0) {
-                mIC.setSelection(mExpectedSelStart - 1, mExpectedSelStart - 1);
+                setSelectionOnConnection(mExpectedSelStart - 1, mExpectedSelStart - 1);
             } else {
-                mIC.setSelection(mExpectedSelStart + 1, mExpectedSelStart + 1);
+                setSelectionOnConnection(mExpectedSelStart + 1, mExpectedSelStart + 1);
             }
-            mIC.setSelection(mExpectedSelStart, mExpectedSelEnd);
+            setSelectionOnConnection(mExpectedSelStart, mExpectedSelEnd);
         }
     }
 
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package typeofmood.ime.latin;
+
+import android.util.Log;
+
+import typeofmood.ime.latin.define.DebugFlags;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records how long each phase of the startup of {@link LatinIME} takes, and how long it takes
+ * from the creation of the service until the first keyboard is shown.
+ *
+ * Phases are recorded on the UI thread. {@link #dump()} may be called from any thread.
+ */
+final class StartupTracer {
+    private static final String TAG = StartupTracer.class.getSimpleName();
+    private static final long NOT_YET = -1;
+
+    private final ArrayList<String> mPhaseNames = new ArrayList<>();
+    private final ArrayList<Long> mPhaseDurationsNanos = new ArrayList<>();
+    private long mStartTimeNanos = NOT_YET;
+    private long mLastPhaseEndTimeNanos;
+    private long mTimeToFirstInputViewNanos = NOT_YET;
+    private long mTimeToFirstWindowShownNanos = NOT_YET;
+
+    public synchronized void start() {
+        mPhaseNames.clear();
+        mPhaseDurationsNanos.clear();
+        mStartTimeNanos = System.nanoTime();
+        mLastPhaseEndTimeNanos = mStartTimeNanos;
+        mTimeToFirstInputViewNanos = NOT_YET;
+        mTimeToFirstWindowShownNanos = NOT_YET;
+    }
+
+    /**
+     * Ends a phase, which started when the previous one ended.
+     * @param name the name of the phase that just ended.
+     */
+    public synchronized void endPhase(final String name) {
+        final long now = System.nanoTime();
+        mPhaseNames.add(name);
+        mPhaseDurationsNanos.add(now - mLastPhaseEndTimeNanos);
+        if (DebugFlags.DEBUG_ENABLED) {
+            Log.d(TAG, name + ": " + toMicros(now - mLastPhaseEndTimeNanos) + "us");
+        }
+        mLastPhaseEndTimeNanos = now;
+    }
+
+    public synchronized void onInputViewStarted() {
+        if (NOT_YET == mStartTimeNanos || NOT_YET != mTimeToFirstInputViewNanos) {
+            return;
+        }
+        mTimeToFirstInputViewNanos = System.nanoTime() - mStartTimeNanos;
+    }
+
+    public synchronized void onWindowShown() {
+        if (NOT_YET == mStartTimeNanos || NOT_YET != mTimeToFirstWindowShownNanos) {
+            return;
+        }
+        mTimeToFirstWindowShownNanos = System.nanoTime() - mStartTimeNanos;
+        if (DebugFlags.DEBUG_ENABLED) {
+            Log.d(TAG, "Time to first keyboard: " + toMicros(mTimeToFirstWindowShownNanos)
+                    + "us");
+        }
+    }
+
+    private static long toMicros(final long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    private static String formatMicros(final long nanos) {
+        return NOT_YET == nanos ? "-" : toMicros(nanos) + "us";
+    }
+
+    public synchronized String dump() {
+        final StringBuilder sb = new StringBuilder("  Startup :");
+        for (int i = 0; i < mPhaseNames.size(); ++i) {
+            sb.append("\n    ").append(mPhaseNames.get(i)).append(" = ")
+                    .append(formatMicros(mPhaseDurationsNanos.get(i)));
+        }
+        sb.append("\n    Time to first input view = ")
+                .append(formatMicros(mTimeToFirstInputViewNanos));
+        sb.append("\n    Time to first keyboard = ")
+                .append(formatMicros(mTimeToFirstWindowShownNanos));
+        return sb.toString();
+    }
+}
@@ -30,6 +30,7 @@ import typeofmood.ime.latin.settings.SettingsValuesForSuggestion;
 import typeofmood.ime.latin.utils.AutoCorrectionUtils;
 import typeofmood.ime.latin.utils.BinaryDictionaryUtils;
 import typeofmood.ime.latin.utils.SuggestionResults;
+import typeofmood.ime.latin.utils.WordSet;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -69,6 +70,9 @@ public final class Suggest {
     private float mAutoCorrectionThreshold;
     private float mPlausibilityThreshold;
 
+    private final NextWordPredictionSpeculator mNextWordPredictionSpeculator =
+            new NextWordPredictionSpeculator();
+
     public Suggest(final DictionaryFacilitator dictionaryFacilitator) {
         mDictionaryFacilitator = dictionaryFacilitator;
     }
@@ -91,6 +95,30 @@ public final class Suggest {
         mPlausibilityThreshold = threshold;
     }
 
+    /**
+     * @return whether predictions for the word that is likely to be committed are to be computed
+     * by {@link #computeSpeculativePredictions()}.
+     */
+    public boolean hasPendingSpeculativePredictions() {
+        return mNextWordPredictionSpeculator.hasPendingSpeculation();
+    }
+
+    /**
+     * Computes the predictions for the word that is likely to be committed, so that they are
+     * ready if it is. This must be called on the thread that gets suggestions.
+     */
+    public void computeSpeculativePredictions() {
+        mNextWordPredictionSpeculator.computePendingSpeculation(mDictionaryFacilitator);
+    }
+
+    public void discardSpeculativePredictions() {
+        mNextWordPredictionSpeculator.discard();
+    }
+
+    public String dump() {
+        return mNextWordPredictionSpeculator.dump();
+    }
+
     public interface OnGetSuggestedWordsCallback {
         public void onGetSuggestedWords(final SuggestedWords suggestedWords);
     }
@@ -110,29 +138,56 @@ public final class Suggest {
         }
     }
 
-    private static ArrayList<SuggestedWordInfo> getTransformedSuggestedWordInfoList(
+    /**
+     * Transforms the suggestion results the way the typed word is capitalized and quoted, and
+     * removes the typed word and the duplicates from them, in one pass.
+     *
+     * Only the suggestions that are kept are transformed, and only those whose word changes get
+     * a new {@link SuggestedWordInfo}.
+     *
+     * @param outSuggestions the list the kept suggestions are added to.
+     * @param outTypedWordInfo gets the first suggestion that is the typed word, if any.
+     * @return the index in the results of the first suggestion that is the typed word, or -1.
+     */
+    private static int getTransformedSuggestedWordInfoList(
             final WordComposer wordComposer, final SuggestionResults results,
-            final int trailingSingleQuotesCount, final Locale defaultLocale) {
+            final String typedWord, final int trailingSingleQuotesCount,
+            final Locale defaultLocale, final ArrayList<SuggestedWordInfo> outSuggestions,
+            final SuggestedWordInfo[] outTypedWordInfo) {
         final boolean shouldMakeSuggestionsAllUpperCase = wordComposer.isAllUpperCase()
                 && !wordComposer.isResumed();
         final boolean isOnlyFirstCharCapitalized =
                 wordComposer.isOrWillBeOnlyFirstCharCapitalized();
+        final boolean shouldTransform = isOnlyFirstCharCapitalized
+                || shouldMakeSuggestionsAllUpperCase || 0 != trailingSingleQuotesCount;
 
-        final ArrayList<SuggestedWordInfo> suggestionsContainer = new ArrayList<>(results);
-        final int suggestionsCount = suggestionsContainer.size();
-        if (isOnlyFirstCharCapitalized || shouldMakeSuggestionsAllUpperCase
-                || 0 != trailingSingleQuotesCount) {
-            for (int i = 0; i < suggestionsCount; ++i) {
-                final SuggestedWordInfo wordInfo = suggestionsContainer.get(i);
+        final WordSet words = new WordSet(results.size() + 1);
+        if (!TextUtils.isEmpty(typedWord)) {
+            words.add(typedWord);
+        }
+        int firstOccurrenceOfTypedWord = -1;
+        int index = 0;
+        for (final SuggestedWordInfo wordInfo : results) {
+            final String word;
+            if (shouldTransform) {
                 final Locale wordLocale = wordInfo.mSourceDict.mLocale;
-                final SuggestedWordInfo transformedWordInfo = getTransformedSuggestedWordInfo(
-                        wordInfo, null == wordLocale ? defaultLocale : wordLocale,
+                word = getTransformedWord(wordInfo.mWord,
+                        null == wordLocale ? defaultLocale : wordLocale,
                         shouldMakeSuggestionsAllUpperCase, isOnlyFirstCharCapitalized,
                         trailingSingleQuotesCount);
-                suggestionsContainer.set(i, transformedWordInfo);
+            } else {
+                word = wordInfo.mWord;
+            }
+            if (words.add(word)) {
+                outSuggestions.add(word == wordInfo.mWord ? wordInfo
+                        : getSuggestedWordInfoWithWord(wordInfo, word));
+            } else if (-1 == firstOccurrenceOfTypedWord && word.equals(typedWord)) {
+                firstOccurrenceOfTypedWord = index;
+                outTypedWordInfo[0] = wordInfo;
             }
+            ++index;
         }
-        return suggestionsContainer;
+        return firstOccurrenceOfTypedWord;
     }
 
     private static SuggestedWordInfo getWhitelistedWordInfoOrNull(
@@ -161,35 +216,27 @@ public final class Suggest {
                 ? typedWordString.substring(0, typedWordString.length() - trailingSingleQuotesCount)
                 : typedWordString;
 
-        final SuggestionResults suggestionResults = mDictionaryFacilitator.getSuggestionResults(
-                wordComposer.getComposedDataSnapshot(), ngramContext, keyboard,
-                settingsValuesForSuggestion, SESSION_ID_TYPING, inputStyleIfNotPrediction);
+        final boolean resultsArePredictions = !wordComposer.isComposingWord();
         final Locale locale = mDictionaryFacilitator.getLocale();
+        final SuggestionResults suggestionResults = getSuggestionResults(wordComposer,
+                ngramContext, keyboard, settingsValuesForSuggestion, inputStyleIfNotPrediction,
+                resultsArePredictions, locale);
+        // Room for the typed word, which is added first.
         final ArrayList<SuggestedWordInfo> suggestionsContainer =
-                getTransformedSuggestedWordInfoList(wordComposer, suggestionResults,
-                        trailingSingleQuotesCount, locale);
-
-        boolean foundInDictionary = false;
-        Dictionary sourceDictionaryOfRemovedWord = null;
-        for (final SuggestedWordInfo info : suggestionsContainer) {
-            // Search for the best dictionary, defined as the first one with the highest match
-            // quality we can find.
-            if (!foundInDictionary && typedWordString.equals(info.mWord)) {
-                // Use this source if the old match had lower quality than this match
-                sourceDictionaryOfRemovedWord = info.mSourceDict;
-                foundInDictionary = true;
-                break;
-            }
-        }
-
-        final int firstOcurrenceOfTypedWordInSuggestions =
-                SuggestedWordInfo.removeDups(typedWordString, suggestionsContainer);
+                new ArrayList<>(suggestionResults.size() + 1);
+        final SuggestedWordInfo[] removedTypedWordInfo = new SuggestedWordInfo[1];
+        final int firstOcurrenceOfTypedWordInSuggestions = getTransformedSuggestedWordInfoList(
+                wordComposer, suggestionResults, typedWordString, trailingSingleQuotesCount,
+                locale, suggestionsContainer, removedTypedWordInfo);
+        // The dictionary of the first suggestion that is the typed word, as it has the highest
+        // match quality.
+        final Dictionary sourceDictionaryOfRemovedWord = null == removedTypedWordInfo[0] ? null
+                : removedTypedWordInfo[0].mSourceDict;
 
         final SuggestedWordInfo whitelistedWordInfo =
                 getWhitelistedWordInfoOrNull(suggestionsContainer);
         final String whitelistedWord = whitelistedWordInfo == null
                 ? null : whitelistedWordInfo.mWord;
-        final boolean resultsArePredictions = !wordComposer.isComposingWord();
 
         // We allow auto-correction if whitelisting is not required or the word is whitelisted,
         // or if the word had more than one char and was not suggested.
@@ -277,6 +324,23 @@ public final class Suggest {
 
         final boolean isTypedWordValid = firstOcurrenceOfTypedWordInSuggestions > -1
                 || (!resultsArePredictions && !allowsToBeAutoCorrected);
+
+        // The word that gets committed if the user types a separator next: the auto-correction,
+        // or else the typed word if no suggestion beats it.
+        final String likelyCommittedWord;
+        if (resultsArePredictions) {
+            likelyCommittedWord = null;
+        } else if (hasAutoCorrection) {
+            likelyCommittedWord = suggestionsContainer.size() > 1
+                    ? suggestionsContainer.get(1).mWord : null;
+        } else {
+            likelyCommittedWord = 0 == firstOcurrenceOfTypedWordInSuggestions
+                    ? typedWordString : null;
+        }
+        if (!resultsArePredictions) {
+            speculateNextWordPredictions(likelyCommittedWord, ngramContext, keyboard,
+                    settingsValuesForSuggestion, locale);
+        }
         callback.onGetSuggestedWords(new SuggestedWords(suggestionsList,
                 suggestionResults.mRawSuggestions, typedWordInfo,
                 isTypedWordValid,
@@ -297,18 +361,17 @@ public final class Suggest {
         // For transforming words that don't come from a dictionary, because it's our best bet
         final Locale locale = mDictionaryFacilitator.getLocale();
         final ArrayList<SuggestedWordInfo> suggestionsContainer =
-                new ArrayList<>(suggestionResults);
-        final int suggestionsCount = suggestionsContainer.size();
+                new ArrayList<>(suggestionResults.size());
         final boolean isFirstCharCapitalized = wordComposer.wasShiftedNoLock();
         final boolean isAllUpperCase = wordComposer.isAllUpperCase();
-        if (isFirstCharCapitalized || isAllUpperCase) {
-            for (int i = 0; i < suggestionsCount; ++i) {
-                final SuggestedWordInfo wordInfo = suggestionsContainer.get(i);
+        for (final SuggestedWordInfo wordInfo : suggestionResults) {
+            if (isFirstCharCapitalized || isAllUpperCase) {
                 final Locale wordlocale = wordInfo.mSourceDict.mLocale;
-                final SuggestedWordInfo transformedWordInfo = getTransformedSuggestedWordInfo(
+                suggestionsContainer.add(getTransformedSuggestedWordInfo(
                         wordInfo, null == wordlocale ? locale : wordlocale, isAllUpperCase,
-                        isFirstCharCapitalized, 0 /* trailingSingleQuotesCount */);
-                suggestionsContainer.set(i, transformedWordInfo);
+                        isFirstCharCapitalized, 0 /* trailingSingleQuotesCount */));
+            } else {
+                suggestionsContainer.add(wordInfo);
             }
         }
 
@@ -323,11 +386,14 @@ public final class Suggest {
 
         // For some reason some suggestions with MIN_VALUE are making their way here.
         // TODO: Find a more robust way to detect distracters.
-        for (int i = suggestionsContainer.size() - 1; i >= 0; --i) {
-            if (suggestionsContainer.get(i).mScore < SUPPRESS_SUGGEST_THRESHOLD) {
-                suggestionsContainer.remove(i);
+        int keptCount = 0;
+        for (int i = 0; i < suggestionsContainer.size(); ++i) {
+            final SuggestedWordInfo wordInfo = suggestionsContainer.get(i);
+            if (wordInfo.mScore >= SUPPRESS_SUGGEST_THRESHOLD) {
+                suggestionsContainer.set(keptCount++, wordInfo);
             }
         }
+        suggestionsContainer.subList(keptCount, suggestionsContainer.size()).clear();
 
         // In the batch input mode, the most relevant suggested word should act as a "typed word"
         // (typedWordValid=true), not as an "auto correct word" (willAutoCorrect=false).
@@ -335,6 +401,12 @@ public final class Suggest {
         // modify inputType such in getSuggestedWordsForNonBatchInput.
         final SuggestedWordInfo pseudoTypedWordInfo = suggestionsContainer.isEmpty() ? null
                 : suggestionsContainer.get(0);
+        if (SuggestedWords.INPUT_STYLE_TAIL_BATCH == inputStyle) {
+            // The first suggestion of a gesture is committed once the user goes on typing.
+            speculateNextWordPredictions(null == pseudoTypedWordInfo ? null
+                    : pseudoTypedWordInfo.mWord, ngramContext, keyboard,
+                    settingsValuesForSuggestion, locale);
+        }
 
         callback.onGetSuggestedWords(new SuggestedWords(suggestionsContainer,
                 suggestionResults.mRawSuggestions,
@@ -345,6 +417,43 @@ public final class Suggest {
                 inputStyle, sequenceNumber));
     }
 
+    // Gets the suggestion results from the dictionaries, or the predictions computed in advance
+    // for the context if any.
+    private SuggestionResults getSuggestionResults(final WordComposer wordComposer,
+            final NgramContext ngramContext, final Keyboard keyboard,
+            final SettingsValuesForSuggestion settingsValuesForSuggestion,
+            final int inputStyleIfNotPrediction, final boolean resultsArePredictions,
+            final Locale locale) {
+        if (!resultsArePredictions) {
+            return mDictionaryFacilitator.getSuggestionResults(
+                    wordComposer.getComposedDataSnapshot(), ngramContext, keyboard,
+                    settingsValuesForSuggestion, SESSION_ID_TYPING, inputStyleIfNotPrediction);
+        }
+        final SuggestionResults predictions = mNextWordPredictionSpeculator.takePredictions(
+                ngramContext, settingsValuesForSuggestion, locale);
+        if (null != predictions) {
+            return predictions;
+        }
+        final long startTimeNanos = System.nanoTime();
+        final SuggestionResults suggestionResults = mDictionaryFacilitator.getSuggestionResults(
+                wordComposer.getComposedDataSnapshot(), ngramContext, keyboard,
+                settingsValuesForSuggestion, SESSION_ID_TYPING, inputStyleIfNotPrediction);
+        mNextWordPredictionSpeculator.onPredictionsComputed(System.nanoTime() - startTimeNanos);
+        return suggestionResults;
+    }
+
+    private void speculateNextWordPredictions(final String likelyCommittedWord,
+            final NgramContext ngramContext, final Keyboard keyboard,
+            final SettingsValuesForSuggestion settingsValuesForSuggestion, final Locale locale) {
+        // Words with spaces are committed as several words, which is not worth predicting for.
+        final boolean isWorthSpeculating = !TextUtils.isEmpty(likelyCommittedWord)
+                && -1 == likelyCommittedWord.indexOf(Constants.CODE_SPACE)
+                && mDictionaryFacilitator.hasAtLeastOneInitializedMainDictionary();
+        mNextWordPredictionSpeculator.speculate(isWorthSpeculating
+                ? ngramContext.getNextNgramContext(new NgramContext.WordInfo(likelyCommittedWord))
+                : null, keyboard, settingsValuesForSuggestion, locale);
+    }
+
     private static ArrayList<SuggestedWordInfo> getSuggestionsInfoListWithDebugInfo(
             final String typedWord, final ArrayList<SuggestedWordInfo> suggestions) {
         final SuggestedWordInfo typedWordInfo = suggestions.get(0);
@@ -410,23 +519,58 @@ public final class Suggest {
     /* package for test */ static SuggestedWordInfo getTransformedSuggestedWordInfo(
             final SuggestedWordInfo wordInfo, final Locale locale, final boolean isAllUpperCase,
             final boolean isOnlyFirstCharCapitalized, final int trailingSingleQuotesCount) {
-        final StringBuilder sb = new StringBuilder(wordInfo.mWord.length());
-        if (isAllUpperCase) {
-            sb.append(wordInfo.mWord.toUpperCase(locale));
-        } else if (isOnlyFirstCharCapitalized) {
-            sb.append(StringUtils.capitalizeFirstCodePoint(wordInfo.mWord, locale));
-        } else {
-            sb.append(wordInfo.mWord);
-        }
+        final String word = getTransformedWord(wordInfo.mWord, locale, isAllUpperCase,
+                isOnlyFirstCharCapitalized, trailingSingleQuotesCount);
+        return word == wordInfo.mWord ? wordInfo : getSuggestedWordInfoWithWord(wordInfo, word);
+    }
+
+    // Returns the word itself if it is not changed, so that nothing is allocated for words that
+    // are already capitalized.
+    private static String getTransformedWord(final String word, final Locale locale,
+            final boolean isAllUpperCase, final boolean isOnlyFirstCharCapitalized,
+            final int trailingSingleQuotesCount) {
         // Appending quotes is here to help people quote words. However, it's not helpful
         // when they type words with quotes toward the end like "it's" or "didn't", where
         // it's more likely the user missed the last character (or didn't type it yet).
         final int quotesToAppend = trailingSingleQuotesCount
-                - (-1 == wordInfo.mWord.indexOf(Constants.CODE_SINGLE_QUOTE) ? 0 : 1);
+                - (-1 == word.indexOf(Constants.CODE_SINGLE_QUOTE) ? 0 : 1);
+        final String capitalizedWord;
+        if (isAllUpperCase) {
+            capitalizedWord = isUpperCaseAscii(word, word.length())
+                    ? word : word.toUpperCase(locale);
+        } else if (isOnlyFirstCharCapitalized) {
+            capitalizedWord = word.isEmpty()
+                    || isUpperCaseAscii(word, 1)
+                    ? word : StringUtils.capitalizeFirstCodePoint(word, locale);
+        } else {
+            capitalizedWord = word;
+        }
+        if (quotesToAppend <= 0) {
+            return capitalizedWord;
+        }
+        final StringBuilder sb = new StringBuilder(capitalizedWord.length() + quotesToAppend);
+        sb.append(capitalizedWord);
         for (int i = quotesToAppend - 1; i >= 0; --i) {
             sb.appendCodePoint(Constants.CODE_SINGLE_QUOTE);
         }
-        return new SuggestedWordInfo(sb.toString(), wordInfo.mPrevWordsContext,
+        return sb.toString();
+    }
+
+    // Whether the start of the word up to the end index is made of ASCII characters that are not
+    // lower case letters, which upper-casing leaves as they are in any locale.
+    private static boolean isUpperCaseAscii(final String word, final int end) {
+        for (int i = 0; i < end; ++i) {
+            final char c = word.charAt(i);
+            if (c >= 0x80 || (c >= 'a' && c <= 'z')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static SuggestedWordInfo getSuggestedWordInfoWithWord(
+            final SuggestedWordInfo wordInfo, final String word) {
+        return new SuggestedWordInfo(word, wordInfo.mPrevWordsContext,
                 wordInfo.mScore, wordInfo.mKindAndFlags,
                 wordInfo.mSourceDict, wordInfo.mIndexOfTouchPointOfSecondWord,
                 wordInfo.mAutoCommitFirstWordConfidence);
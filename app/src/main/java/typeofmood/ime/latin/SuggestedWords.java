@@ -22,6 +22,7 @@ import android.view.inputmethod.CompletionInfo;
 import typeofmood.ime.annotations.UsedForTesting;
 import typeofmood.ime.latin.common.StringUtils;
 import typeofmood.ime.latin.define.DebugFlags;
+import typeofmood.ime.latin.utils.WordSet;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -392,33 +393,22 @@ public class SuggestedWords {
             if (candidates.isEmpty()) {
                 return -1;
             }
-            int firstOccurrenceOfWord = -1;
+            final WordSet words = new WordSet(candidates.size() + 1);
             if (!TextUtils.isEmpty(typedWord)) {
-                firstOccurrenceOfWord = removeSuggestedWordInfoFromList(
-                        typedWord, candidates, -1 /* startIndexExclusive */);
-            }
-            for (int i = 0; i < candidates.size(); ++i) {
-                removeSuggestedWordInfoFromList(
-                        candidates.get(i).mWord, candidates, i /* startIndexExclusive */);
+                words.add(typedWord);
             }
-            return firstOccurrenceOfWord;
-        }
-
-        private static int removeSuggestedWordInfoFromList(
-                @Nonnull final String word,
-                @Nonnull final ArrayList<SuggestedWordInfo> candidates,
-                final int startIndexExclusive) {
             int firstOccurrenceOfWord = -1;
-            for (int i = startIndexExclusive + 1; i < candidates.size(); ++i) {
-                final SuggestedWordInfo previous = candidates.get(i);
-                if (word.equals(previous.mWord)) {
-                    if (firstOccurrenceOfWord == -1) {
-                        firstOccurrenceOfWord = i;
-                    }
-                    candidates.remove(i);
-                    --i;
+            int keptCount = 0;
+            final int candidatesCount = candidates.size();
+            for (int i = 0; i < candidatesCount; ++i) {
+                final SuggestedWordInfo candidate = candidates.get(i);
+                if (words.add(candidate.mWord)) {
+                    candidates.set(keptCount++, candidate);
+                } else if (-1 == firstOccurrenceOfWord && candidate.mWord.equals(typedWord)) {
+                    firstOccurrenceOfWord = i;
                 }
             }
+            candidates.subList(keptCount, candidatesCount).clear();
             return firstOccurrenceOfWord;
         }
     }
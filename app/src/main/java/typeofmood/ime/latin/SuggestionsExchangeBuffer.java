@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package typeofmood.ime.latin;
+
+import typeofmood.ime.latin.common.InputPointers;
+import typeofmood.ime.latin.define.DecoderSpecificConstants;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * A direct buffer holding all the inputs and outputs of a call to get suggestions, so that the
+ * call hands a single pointer to native code instead of having it copy a dozen arrays in and out.
+ *
+ * The buffer is a sequence of 32 bit values in the native byte order. Its layout must be kept in
+ * sync with the one in typeofmood_ime_latin_BinaryDictionary.cpp. The input pointers come last
+ * because their number is not bounded: the buffer is reallocated when a gesture has more of them
+ * than it can hold.
+ *
+ * Each {@link DicTraverseSession} has its own buffer, used by the thread that acquired it.
+ */
+final class SuggestionsExchangeBuffer {
+    // Must be equal to MAX_RESULTS in native/jni/src/defines.h
+    private static final int MAX_RESULTS = 18;
+    private static final int MAX_WORD_LENGTH = DecoderSpecificConstants.DICTIONARY_MAX_WORD_LENGTH;
+    private static final int MAX_PREV_WORD_COUNT =
+            DecoderSpecificConstants.MAX_PREV_WORD_COUNT_FOR_N_GRAM;
+    private static final int MAX_SUGGEST_OPTIONS_SIZE = 8;
+
+    // Header slots.
+    private static final int INPUT_SIZE = 0;
+    private static final int INPUT_POINTER_CAPACITY = 1;
+    private static final int PREV_WORD_COUNT = 2;
+    private static final int SUGGEST_OPTIONS_SIZE = 3;
+    private static final int IN_OUT_WEIGHT_OF_LANG_MODEL_VS_SPATIAL_MODEL = 4;
+    private static final int OUTPUT_SUGGESTION_COUNT = 5;
+    private static final int OUTPUT_AUTO_COMMIT_FIRST_WORD_CONFIDENCE = 6;
+    private static final int HEADER_SIZE = 8;
+
+    // Offsets of the arrays, in slots.
+    private static final int SUGGEST_OPTIONS = HEADER_SIZE;
+    private static final int PREV_WORD_CODE_POINT_COUNTS =
+            SUGGEST_OPTIONS + MAX_SUGGEST_OPTIONS_SIZE;
+    private static final int PREV_WORD_IS_BEGINNING_OF_SENTENCE =
+            PREV_WORD_CODE_POINT_COUNTS + MAX_PREV_WORD_COUNT;
+    private static final int PREV_WORD_CODE_POINTS =
+            PREV_WORD_IS_BEGINNING_OF_SENTENCE + MAX_PREV_WORD_COUNT;
+    private static final int INPUT_CODE_POINTS =
+            PREV_WORD_CODE_POINTS + MAX_PREV_WORD_COUNT * MAX_WORD_LENGTH;
+    private static final int OUTPUT_CODE_POINTS = INPUT_CODE_POINTS + MAX_WORD_LENGTH;
+    private static final int OUTPUT_SCORES = OUTPUT_CODE_POINTS + MAX_WORD_LENGTH * MAX_RESULTS;
+    private static final int OUTPUT_SPACE_INDICES = OUTPUT_SCORES + MAX_RESULTS;
+    private static final int OUTPUT_TYPES = OUTPUT_SPACE_INDICES + MAX_RESULTS;
+    // Followed by the x coordinates, the y coordinates, the times and the pointer ids of the
+    // input, each taking INPUT_POINTER_CAPACITY slots.
+    private static final int INPUT_POINTERS = OUTPUT_TYPES + MAX_RESULTS;
+    private static final int INPUT_POINTER_ARRAY_COUNT = 4;
+
+    // Enough for typing, and for short gestures.
+    private static final int DEFAULT_INPUT_POINTER_CAPACITY = 256;
+
+    private ByteBuffer mBuffer;
+    private IntBuffer mSlots;
+    private IntBuffer mPrevWordCodePoints;
+    private IntBuffer mPrevWordCodePointCounts;
+    private IntBuffer mPrevWordIsBeginningOfSentence;
+    private int mInputPointerCapacity;
+    // Only used to make strings of the output code points.
+    private final int[] mWordCodePoints = new int[MAX_WORD_LENGTH];
+
+    public SuggestionsExchangeBuffer() {
+        allocate(DEFAULT_INPUT_POINTER_CAPACITY);
+    }
+
+    private void allocate(final int inputPointerCapacity) {
+        final int slotCount = INPUT_POINTERS + INPUT_POINTER_ARRAY_COUNT * inputPointerCapacity;
+        final ByteBuffer oldBuffer = mBuffer;
+        mBuffer = ByteBuffer.allocateDirect(slotCount * (Integer.SIZE / Byte.SIZE))
+                .order(ByteOrder.nativeOrder());
+        if (oldBuffer != null) {
+            // Keep what has already been set.
+            final ByteBuffer fixedSlots = oldBuffer.duplicate();
+            fixedSlots.limit(INPUT_POINTERS * (Integer.SIZE / Byte.SIZE)).position(0);
+            mBuffer.put(fixedSlots).clear();
+        }
+        mSlots = mBuffer.asIntBuffer();
+        mPrevWordCodePoints = createView(PREV_WORD_CODE_POINTS,
+                MAX_PREV_WORD_COUNT * MAX_WORD_LENGTH);
+        mPrevWordCodePointCounts = createView(PREV_WORD_CODE_POINT_COUNTS, MAX_PREV_WORD_COUNT);
+        mPrevWordIsBeginningOfSentence = createView(PREV_WORD_IS_BEGINNING_OF_SENTENCE,
+                MAX_PREV_WORD_COUNT);
+        mInputPointerCapacity = inputPointerCapacity;
+        mSlots.put(INPUT_POINTER_CAPACITY, inputPointerCapacity);
+    }
+
+    private IntBuffer createView(final int offset, final int size) {
+        final int slotSize = Integer.SIZE / Byte.SIZE;
+        final ByteBuffer buffer = mBuffer.duplicate();
+        buffer.limit((offset + size) * slotSize).position(offset * slotSize);
+        // Slices are big endian whatever the order of the buffer they are made from.
+        return buffer.slice().order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+
+    /**
+     * @return the buffer to hand to native code. It may change after
+     * {@link #setInputPointers(InputPointers, int)}.
+     */
+    public ByteBuffer getBuffer() {
+        return mBuffer;
+    }
+
+    public void setInputPointers(final InputPointers inputPointers, final int inputSize) {
+        if (inputSize > mInputPointerCapacity) {
+            allocate(Math.max(inputSize, mInputPointerCapacity * 2));
+        }
+        mSlots.put(INPUT_SIZE, inputSize);
+        putInputPointerArray(0, inputPointers.getXCoordinates(), inputSize);
+        putInputPointerArray(1, inputPointers.getYCoordinates(), inputSize);
+        putInputPointerArray(2, inputPointers.getTimes(), inputSize);
+        putInputPointerArray(3, inputPointers.getPointerIds(), inputSize);
+    }
+
+    private void putInputPointerArray(final int index, final int[] array, final int size) {
+        mSlots.position(INPUT_POINTERS + index * mInputPointerCapacity);
+        mSlots.put(array, 0, Math.min(size, array.length));
+    }
+
+    /**
+     * @param codePoints the code points of the input, padded to the maximum word length.
+     */
+    public void setInputCodePoints(final int[] codePoints) {
+        mSlots.position(INPUT_CODE_POINTS);
+        mSlots.put(codePoints, 0, Math.min(codePoints.length, MAX_WORD_LENGTH));
+    }
+
+    public void setSuggestOptions(final int[] options) {
+        final int size = Math.min(options.length, MAX_SUGGEST_OPTIONS_SIZE);
+        mSlots.put(SUGGEST_OPTIONS_SIZE, size);
+        mSlots.position(SUGGEST_OPTIONS);
+        mSlots.put(options, 0, size);
+    }
+
+    public void setNgramContext(final NgramContext ngramContext) {
+        final int prevWordCount = Math.min(ngramContext.getPrevWordCount(), MAX_PREV_WORD_COUNT);
+        mSlots.put(PREV_WORD_COUNT, prevWordCount);
+        ngramContext.outputToBuffers(mPrevWordCodePoints, MAX_WORD_LENGTH,
+                mPrevWordCodePointCounts, mPrevWordIsBeginningOfSentence);
+    }
+
+    public void setWeightOfLangModelVsSpatialModel(final float weight) {
+        mSlots.put(IN_OUT_WEIGHT_OF_LANG_MODEL_VS_SPATIAL_MODEL, Float.floatToRawIntBits(weight));
+    }
+
+    public float getWeightOfLangModelVsSpatialModel() {
+        return Float.intBitsToFloat(mSlots.get(IN_OUT_WEIGHT_OF_LANG_MODEL_VS_SPATIAL_MODEL));
+    }
+
+    public int getSuggestionCount() {
+        return mSlots.get(OUTPUT_SUGGESTION_COUNT);
+    }
+
+    /**
+     * @return the index-th suggested word, or null if it is empty.
+     */
+    public String getSuggestedWord(final int index) {
+        final int start = OUTPUT_CODE_POINTS + index * MAX_WORD_LENGTH;
+        int length = 0;
+        while (length < MAX_WORD_LENGTH && mSlots.get(start + length) != 0) {
+            ++length;
+        }
+        if (length == 0) {
+            return null;
+        }
+        mSlots.position(start);
+        mSlots.get(mWordCodePoints, 0, length);
+        return new String(mWordCodePoints, 0, length);
+    }
+
+    public int getScore(final int index) {
+        return mSlots.get(OUTPUT_SCORES + index);
+    }
+
+    public int getSpaceIndex(final int index) {
+        return mSlots.get(OUTPUT_SPACE_INDICES + index);
+    }
+
+    public int getType(final int index) {
+        return mSlots.get(OUTPUT_TYPES + index);
+    }
+
+    public int getAutoCommitFirstWordConfidence() {
+        return mSlots.get(OUTPUT_AUTO_COMMIT_FIRST_WORD_CONFIDENCE);
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package typeofmood.ime.latin;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A Bloom filter of words, telling without a doubt that a word is not in a dictionary.
+ *
+ * Words are hashed in lower case, so that the filter of a dictionary also answers "maybe" for the
+ * other capitalizations of its words. Words can't be removed: the filter of a dictionary some
+ * words were removed from still answers "maybe" for them until it is rebuilt.
+ *
+ * Adding words is not thread-safe: the bits and the word count are updated without atomic
+ * read-modify-writes, so words must be added by one thread at a time, which the dictionary
+ * ensures by only adding them under its write lock. Any thread may query the filter at the same
+ * time as words are added.
+ */
+final class WordBloomFilter {
+    private static final int BITS_PER_WORD = 10;
+    // Best number of hashes for 10 bits per word. Gives about 1% of false positives when full.
+    private static final int HASH_COUNT = 7;
+    private static final int MIN_CAPACITY = 256;
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final AtomicLongArray mBits;
+    private final int mBitCount;
+    private final int mCapacity;
+    // The number of distinct words added, give or take a few hash collisions. Only written by
+    // the thread adding words, and read by any thread.
+    private volatile int mWordCount;
+
+    /**
+     * @param capacity the number of words the filter is sized for. It still works with more,
+     * with more false positives.
+     */
+    public WordBloomFilter(final int capacity) {
+        mCapacity = Math.max(capacity, MIN_CAPACITY);
+        final long bitCount = (long)mCapacity * BITS_PER_WORD;
+        mBits = new AtomicLongArray((int)Math.min((bitCount + Long.SIZE - 1) / Long.SIZE,
+                Integer.MAX_VALUE / Long.SIZE));
+        mBitCount = mBits.length() * Long.SIZE;
+    }
+
+    /**
+     * @return whether more words than the filter is sized for have been added to it.
+     */
+    public boolean isFull() {
+        return mWordCount > mCapacity;
+    }
+
+    public int getWordCount() {
+        return mWordCount;
+    }
+
+    public void add(final CharSequence word) {
+        if (word == null || word.length() == 0) {
+            return;
+        }
+        addHash(hash(word));
+    }
+
+    /**
+     * @param codePoints the code points of the word, which end at the end of the array or at the
+     * first 0.
+     */
+    public void add(final int[] codePoints) {
+        if (codePoints == null || codePoints.length == 0 || codePoints[0] == 0) {
+            return;
+        }
+        addHash(hash(codePoints));
+    }
+
+    /**
+     * @return false if the word has never been added, true if it may have been.
+     */
+    public boolean mightContain(final CharSequence word) {
+        if (word == null || word.length() == 0) {
+            return false;
+        }
+        final long hash = hash(word);
+        final int hash1 = (int)hash;
+        final int hash2 = (int)(hash >>> 32);
+        for (int i = 0; i < HASH_COUNT; ++i) {
+            final int bit = getBit(hash1, hash2, i);
+            if ((mBits.get(bit / Long.SIZE) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Must not be called by two threads at the same time, see the class comment.
+     * @param hash the hash of a word, as returned by {@link #hash(CharSequence)}.
+     */
+    public void addHash(final long hash) {
+        final int hash1 = (int)hash;
+        final int hash2 = (int)(hash >>> 32);
+        boolean isNew = false;
+        for (int i = 0; i < HASH_COUNT; ++i) {
+            final int bit = getBit(hash1, hash2, i);
+            final int index = bit / Long.SIZE;
+            final long bits = mBits.get(index);
+            if ((bits & (1L << bit)) == 0) {
+                // Readers may see some of the bits of a word before the others, which is fine:
+                // a word is only looked up once it has been added.
+                mBits.set(index, bits | (1L << bit));
+                isNew = true;
+            }
+        }
+        if (isNew) {
+            ++mWordCount;
+        }
+    }
+
+    private int getBit(final int hash1, final int hash2, final int i) {
+        return ((hash1 + i * hash2) & Integer.MAX_VALUE) % mBitCount;
+    }
+
+    public static long hash(final CharSequence word) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < word.length(); i = Character.offsetByCodePoints(word, i, 1)) {
+            hash = (hash ^ Character.toLowerCase(Character.codePointAt(word, i))) * FNV_PRIME;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * @param codePoints the code points of a word, which end at the end of the array or at the
+     * first 0.
+     */
+    public static long hash(final int[] codePoints) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < codePoints.length && codePoints[i] != 0; ++i) {
+            hash = (hash ^ Character.toLowerCase(codePoints[i])) * FNV_PRIME;
+        }
+        return mix(hash);
+    }
+
+    // Spreads the bits of an FNV hash, whose low bits are weak, over the two halves used as the
+    // hashes of the filter.
+    private static long mix(final long hash) {
+        long h = hash;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package typeofmood.ime.latin;
+
+import typeofmood.ime.latin.NgramContext.WordInfo;
+import typeofmood.ime.latin.define.DecoderSpecificConstants;
+import typeofmood.ime.latin.makedict.NgramProperty;
+import typeofmood.ime.latin.makedict.ProbabilityInfo;
+import typeofmood.ime.latin.makedict.WeightedString;
+import typeofmood.ime.latin.makedict.WordProperty;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+
+/**
+ * A direct buffer native code fills with the properties of many words at once while a dictionary
+ * is iterated, instead of handing them over one word at a time in a dozen new arrays and lists.
+ *
+ * The buffer is a sequence of 32 bit values in the native byte order. Its layout must be kept in
+ * sync with the one in typeofmood_ime_latin_BinaryDictionary.cpp. After the header come the code
+ * points of the skipped word, then the word properties up to the end of the buffer. Each word
+ * property is laid out as:
+ * - the code point count of the word, then its code points,
+ * - the flags, the probability, the timestamp, the level and the count of the word,
+ * - the n-gram count, then for each n-gram:
+ *   - the previous word count, then for each previous word whether it is the beginning of
+ *     sentence, its code point count and its code points,
+ *   - the code point count of the target word, its code points, then its probability, timestamp,
+ *     level and count.
+ *
+ * The buffer is reused for all the native calls of an iteration, and the word properties are
+ * read out of it before the next one.
+ */
+final class WordPropertiesExchangeBuffer {
+    private static final int MAX_WORD_LENGTH = DecoderSpecificConstants.DICTIONARY_MAX_WORD_LENGTH;
+
+    // Header slots.
+    private static final int SLOT_COUNT = 0;
+    private static final int OUTPUT_WORD_PROPERTY_COUNT = 1;
+    private static final int OUTPUT_WORD_PROPERTY_END = 2;
+    private static final int OUTPUT_SKIPPED_WORD_CODE_POINT_COUNT = 3;
+    private static final int OUTPUT_SKIPPED_WORD_IS_BEGINNING_OF_SENTENCE = 4;
+    private static final int HEADER_SIZE = 8;
+
+    // Offsets of the arrays, in slots.
+    private static final int OUTPUT_SKIPPED_WORD_CODE_POINTS = HEADER_SIZE;
+    private static final int OUTPUT_WORD_PROPERTIES = OUTPUT_SKIPPED_WORD_CODE_POINTS
+            + MAX_WORD_LENGTH;
+
+    // Flags of a word property.
+    private static final int FLAG_IS_NOT_A_WORD = 0x1;
+    private static final int FLAG_IS_POSSIBLY_OFFENSIVE = 0x2;
+    private static final int FLAG_HAS_NGRAMS = 0x4;
+    private static final int FLAG_IS_BEGINNING_OF_SENTENCE = 0x8;
+
+    // 256KB, which holds a few thousand words of a main dictionary, or a few hundred words with
+    // many n-grams each. Words whose property does not fit are skipped by native code.
+    private static final int DEFAULT_SLOT_COUNT = 64 * 1024;
+
+    private final ByteBuffer mBuffer;
+    private final IntBuffer mSlots;
+    // The slots filled by the last native call, copied out of the direct buffer at once.
+    private final int[] mOutput;
+    private int mPosition;
+    private int mRemainingWordPropertyCount;
+    // The previous words of the last n-gram that was read, and their context, which most n-grams
+    // of a word share.
+    private int mLastPrevWordsStart;
+    private int mLastPrevWordsEnd;
+    private NgramContext mLastNgramContext;
+
+    public WordPropertiesExchangeBuffer() {
+        this(DEFAULT_SLOT_COUNT);
+    }
+
+    public WordPropertiesExchangeBuffer(final int slotCount) {
+        final int size = Math.max(slotCount, OUTPUT_WORD_PROPERTIES);
+        mBuffer = ByteBuffer.allocateDirect(size * (Integer.SIZE / Byte.SIZE))
+                .order(ByteOrder.nativeOrder());
+        mSlots = mBuffer.asIntBuffer();
+        mSlots.put(SLOT_COUNT, size);
+        mOutput = new int[size];
+    }
+
+    /**
+     * @return the buffer to hand to native code.
+     */
+    public ByteBuffer getBuffer() {
+        return mBuffer;
+    }
+
+    /**
+     * Starts reading what the last native call output. Must be called after each native call.
+     */
+    public void startReading() {
+        final int end = Math.min(mSlots.get(OUTPUT_WORD_PROPERTY_END), mOutput.length);
+        mSlots.position(0);
+        mSlots.get(mOutput, 0, end);
+        mPosition = OUTPUT_WORD_PROPERTIES;
+        mRemainingWordPropertyCount = mOutput[OUTPUT_WORD_PROPERTY_COUNT];
+        mLastNgramContext = null;
+    }
+
+    /**
+     * @return the next word property, or null once all of them have been read.
+     */
+    public WordProperty readNextWordProperty() {
+        if (mRemainingWordPropertyCount <= 0) {
+            return null;
+        }
+        --mRemainingWordPropertyCount;
+        final String word = readString();
+        final int flags = mOutput[mPosition++];
+        final ProbabilityInfo probabilityInfo = readProbabilityInfo();
+        final int ngramCount = mOutput[mPosition++];
+        ArrayList<NgramProperty> ngrams = null;
+        if (ngramCount > 0) {
+            ngrams = new ArrayList<>(ngramCount);
+            for (int i = 0; i < ngramCount; ++i) {
+                final NgramContext ngramContext = readNgramContext();
+                final String target = readString();
+                ngrams.add(new NgramProperty(new WeightedString(target, readProbabilityInfo()),
+                        ngramContext));
+            }
+        }
+        return new WordProperty(word, probabilityInfo, ngrams,
+                (flags & FLAG_IS_NOT_A_WORD) != 0, (flags & FLAG_IS_POSSIBLY_OFFENSIVE) != 0,
+                (flags & FLAG_HAS_NGRAMS) != 0, (flags & FLAG_IS_BEGINNING_OF_SENTENCE) != 0);
+    }
+
+    /**
+     * @return whether the last native call skipped a word whose property did not fit.
+     */
+    public boolean hasSkippedWord() {
+        return mOutput[OUTPUT_SKIPPED_WORD_CODE_POINT_COUNT] >= 0;
+    }
+
+    /**
+     * @return the word skipped by the last native call, which is empty for the beginning of
+     * sentence.
+     */
+    public String getSkippedWord() {
+        return new String(mOutput, OUTPUT_SKIPPED_WORD_CODE_POINTS,
+                Math.min(mOutput[OUTPUT_SKIPPED_WORD_CODE_POINT_COUNT], MAX_WORD_LENGTH));
+    }
+
+    public boolean isSkippedWordBeginningOfSentence() {
+        return mOutput[OUTPUT_SKIPPED_WORD_IS_BEGINNING_OF_SENTENCE] != 0;
+    }
+
+    private String readString() {
+        final int codePointCount = mOutput[mPosition++];
+        final String string = new String(mOutput, mPosition, codePointCount);
+        mPosition += codePointCount;
+        return string;
+    }
+
+    private ProbabilityInfo readProbabilityInfo() {
+        final ProbabilityInfo probabilityInfo = new ProbabilityInfo(mOutput[mPosition],
+                mOutput[mPosition + 1], mOutput[mPosition + 2], mOutput[mPosition + 3]);
+        mPosition += 4;
+        return probabilityInfo;
+    }
+
+    private NgramContext readNgramContext() {
+        final int start = mPosition;
+        final int prevWordCount = mOutput[mPosition++];
+        for (int i = 0; i < prevWordCount; ++i) {
+            // Whether it is the beginning of sentence, then the code points.
+            mPosition += 1;
+            mPosition += 1 + mOutput[mPosition];
+        }
+        if (null != mLastNgramContext && hasSamePrevWords(start, mPosition)) {
+            mLastPrevWordsStart = start;
+            mLastPrevWordsEnd = mPosition;
+            return mLastNgramContext;
+        }
+        final WordInfo[] prevWordsInfo = new WordInfo[prevWordCount];
+        int position = start + 1;
+        for (int i = 0; i < prevWordCount; ++i) {
+            final boolean isBeginningOfSentence = mOutput[position++] != 0;
+            final int codePointCount = mOutput[position++];
+            prevWordsInfo[i] = isBeginningOfSentence ? WordInfo.BEGINNING_OF_SENTENCE_WORD_INFO
+                    : new WordInfo(new String(mOutput, position, codePointCount));
+            position += codePointCount;
+        }
+        mLastPrevWordsStart = start;
+        mLastPrevWordsEnd = mPosition;
+        mLastNgramContext = new NgramContext(prevWordsInfo);
+        return mLastNgramContext;
+    }
+
+    private boolean hasSamePrevWords(final int start, final int end) {
+        if (end - start != mLastPrevWordsEnd - mLastPrevWordsStart) {
+            return false;
+        }
+        for (int i = 0; i < end - start; ++i) {
+            if (mOutput[start + i] != mOutput[mLastPrevWordsStart + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
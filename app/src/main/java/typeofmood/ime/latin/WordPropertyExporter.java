@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package typeofmood.ime.latin;
+
+import typeofmood.ime.latin.NgramContext.WordInfo;
+import typeofmood.ime.latin.makedict.NgramProperty;
+import typeofmood.ime.latin.makedict.ProbabilityInfo;
+import typeofmood.ime.latin.makedict.WeightedString;
+import typeofmood.ime.latin.makedict.WordProperty;
+import typeofmood.ime.latin.utils.CombinedFormatUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Streams the words of a dictionary with their properties out, as they are iterated.
+ *
+ * The text format is the combined format, which the dictionary tools read. The binary format is
+ * a compact one meant to be read back by {@link #readBinary}: a magic number, the attributes of
+ * the header, then the words, each preceded by a non-zero byte and the last one followed by a
+ * zero byte.
+ */
+final class WordPropertyExporter {
+    private static final int BINARY_FORMAT_MAGIC_NUMBER = 0x57505831; // "WPX1"
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int FLAG_IS_NOT_A_WORD = 0x1;
+    private static final int FLAG_IS_POSSIBLY_OFFENSIVE = 0x2;
+    private static final int FLAG_HAS_NGRAMS = 0x4;
+    private static final int FLAG_IS_BEGINNING_OF_SENTENCE = 0x8;
+
+    private WordPropertyExporter() {
+        // This utility class is not publicly instantiable.
+    }
+
+    /**
+     * Writes the header attributes and the words of the dictionary in the combined format.
+     * @return the number of words written.
+     */
+    public static int exportAsText(final BinaryDictionary dictionary,
+            final Map<String, String> attributes, final Writer writer) throws IOException {
+        final BufferedWriter out = new BufferedWriter(writer, BUFFER_SIZE);
+        out.write(CombinedFormatUtils.formatAttributeMap(new HashMap<>(attributes)));
+        final int[] wordCount = new int[1];
+        final IOException[] exception = new IOException[1];
+        dictionary.forEachWordProperty(new BinaryDictionary.WordPropertyConsumer() {
+            @Override
+            public boolean onWordProperty(final WordProperty wordProperty) {
+                try {
+                    out.write(CombinedFormatUtils.formatWordProperty(wordProperty));
+                } catch (final IOException e) {
+                    exception[0] = e;
+                    return false;
+                }
+                ++wordCount[0];
+                return true;
+            }
+        });
+        if (null != exception[0]) {
+            throw exception[0];
+        }
+        out.flush();
+        return wordCount[0];
+    }
+
+    /**
+     * Writes the header attributes and the words of the dictionary in the binary format.
+     * @return the number of words written.
+     */
+    public static int exportAsBinary(final BinaryDictionary dictionary,
+            final Map<String, String> attributes, final OutputStream outputStream)
+            throws IOException {
+        final DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(outputStream, BUFFER_SIZE));
+        out.writeInt(BINARY_FORMAT_MAGIC_NUMBER);
+        out.writeInt(attributes.size());
+        for (final Map.Entry<String, String> attribute : attributes.entrySet()) {
+            out.writeUTF(attribute.getKey());
+            out.writeUTF(attribute.getValue());
+        }
+        final int[] wordCount = new int[1];
+        final IOException[] exception = new IOException[1];
+        dictionary.forEachWordProperty(new BinaryDictionary.WordPropertyConsumer() {
+            @Override
+            public boolean onWordProperty(final WordProperty wordProperty) {
+                try {
+                    out.writeByte(1);
+                    writeWordProperty(out, wordProperty);
+                } catch (final IOException e) {
+                    exception[0] = e;
+                    return false;
+                }
+                ++wordCount[0];
+                return true;
+            }
+        });
+        if (null != exception[0]) {
+            throw exception[0];
+        }
+        out.writeByte(0);
+        out.flush();
+        return wordCount[0];
+    }
+
+    /**
+     * Reads words written by {@link #exportAsBinary(BinaryDictionary, Map, OutputStream)}.
+     * @return the header attributes.
+     */
+    public static HashMap<String, String> readBinary(final InputStream inputStream,
+            final BinaryDictionary.WordPropertyConsumer consumer) throws IOException {
+        final DataInputStream in = new DataInputStream(inputStream);
+        if (in.readInt() != BINARY_FORMAT_MAGIC_NUMBER) {
+            throw new IOException("Not an exported dictionary");
+        }
+        final int attributeCount = in.readInt();
+        final HashMap<String, String> attributes = new HashMap<>();
+        for (int i = 0; i < attributeCount; ++i) {
+            attributes.put(in.readUTF(), in.readUTF());
+        }
+        while (in.readByte() != 0) {
+            if (!consumer.onWordProperty(readWordProperty(in))) {
+                break;
+            }
+        }
+        return attributes;
+    }
+
+    private static void writeWordProperty(final DataOutputStream out,
+            final WordProperty wordProperty) throws IOException {
+        out.writeUTF(wordProperty.mWord);
+        out.writeByte((wordProperty.mIsNotAWord ? FLAG_IS_NOT_A_WORD : 0)
+                | (wordProperty.mIsPossiblyOffensive ? FLAG_IS_POSSIBLY_OFFENSIVE : 0)
+                | (wordProperty.mHasNgrams ? FLAG_HAS_NGRAMS : 0)
+                | (wordProperty.mIsBeginningOfSentence ? FLAG_IS_BEGINNING_OF_SENTENCE : 0));
+        writeProbabilityInfo(out, wordProperty.mProbabilityInfo);
+        final ArrayList<NgramProperty> ngrams = wordProperty.mNgrams;
+        out.writeInt(null == ngrams ? 0 : ngrams.size());
+        if (null == ngrams) {
+            return;
+        }
+        for (final NgramProperty ngram : ngrams) {
+            final NgramContext ngramContext = ngram.mNgramContext;
+            out.writeByte(ngramContext.getPrevWordCount());
+            for (int i = 1; i <= ngramContext.getPrevWordCount(); ++i) {
+                final boolean isBeginningOfSentence =
+                        ngramContext.isNthPrevWordBeginningOfSentence(i);
+                out.writeBoolean(isBeginningOfSentence);
+                if (!isBeginningOfSentence) {
+                    out.writeUTF(ngramContext.getNthPrevWord(i).toString());
+                }
+            }
+            out.writeUTF(ngram.mTargetWord.mWord);
+            writeProbabilityInfo(out, ngram.mTargetWord.mProbabilityInfo);
+        }
+    }
+
+    private static WordProperty readWordProperty(final DataInputStream in) throws IOException {
+        final String word = in.readUTF();
+        final int flags = in.readByte();
+        final ProbabilityInfo probabilityInfo = readProbabilityInfo(in);
+        final int ngramCount = in.readInt();
+        final ArrayList<NgramProperty> ngrams = new ArrayList<>(ngramCount);
+        for (int i = 0; i < ngramCount; ++i) {
+            final WordInfo[] prevWordsInfo = new WordInfo[in.readByte()];
+            for (int j = 0; j < prevWordsInfo.length; ++j) {
+                prevWordsInfo[j] = in.readBoolean() ? WordInfo.BEGINNING_OF_SENTENCE_WORD_INFO
+                        : new WordInfo(in.readUTF());
+            }
+            final String target = in.readUTF();
+            ngrams.add(new NgramProperty(new WeightedString(target, readProbabilityInfo(in)),
+                    new NgramContext(prevWordsInfo)));
+        }
+        return new WordProperty(word, probabilityInfo, ngrams,
+                (flags & FLAG_IS_NOT_A_WORD) != 0, (flags & FLAG_IS_POSSIBLY_OFFENSIVE) != 0,
+                (flags & FLAG_HAS_NGRAMS) != 0, (flags & FLAG_IS_BEGINNING_OF_SENTENCE) != 0);
+    }
+
+    private static void writeProbabilityInfo(final DataOutputStream out,
+            final ProbabilityInfo probabilityInfo) throws IOException {
+        out.writeInt(probabilityInfo.mProbability);
+        out.writeInt(probabilityInfo.mTimestamp);
+        out.writeInt(probabilityInfo.mLevel);
+        out.writeInt(probabilityInfo.mCount);
+    }
+
+    private static ProbabilityInfo readProbabilityInfo(final DataInputStream in)
+            throws IOException {
+        return new ProbabilityInfo(in.readInt(), in.readInt(), in.readInt(), in.readInt());
+    }
+}
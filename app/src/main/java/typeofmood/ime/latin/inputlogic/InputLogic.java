@@ -209,6 +209,7 @@ public final class InputLogic {
         }
         resetComposingState(true /* alsoResetLastComposedWord */);
         mInputLogicHandler.reset();
+        mDictionaryFacilitator.releaseTraverseSession(Suggest.SESSION_ID_TYPING);
     }
 
     // Normally this class just gets out of scope after the process ends, but in unit tests, we
@@ -835,10 +836,8 @@ public final class InputLogic {
         // In languages with spaces, we only start composing a word when we are not already
         // touching a word. In languages without spaces, the above conditions are sufficient.
         // NOTE: If the InputConnection is slow, we skip the text-after-cursor check since it
-        // can incur a very expensive getTextAfterCursor() lookup, potentially making the
-        // keyboard UI slow and non-responsive.
-        // TODO: Cache the text after the cursor so we don't need to go to the InputConnection
-        // each time. We are already doing this for getTextBeforeCursor().
+        // can incur a very expensive getTextAfterCursor() lookup when the text after the cursor
+        // is not cached, potentially making the keyboard UI slow and non-responsive.
                 (!settingsValues.mSpacingAndPunctuations.mCurrentLanguageHasSpaces
                         || !mConnection.isCursorTouchingWord(settingsValues.mSpacingAndPunctuations,
                                 !mConnection.hasSlowInputConnection() /* checkTextAfter */))) {
@@ -38,6 +38,7 @@ class InputLogicHandler implements Handler.Callback {
     private boolean mInBatchInput; // synchronized using {@link #mLock}.
 
     private static final int MSG_GET_SUGGESTED_WORDS = 1;
+    private static final int MSG_COMPUTE_SPECULATIVE_PREDICTIONS = 2;
 
     // A handler that never does anything. This is used for cases where events come before anything
     // is initialized, though probably only the monkey can actually do this.
@@ -78,6 +79,7 @@ class InputLogicHandler implements Handler.Callback {
 
     public void reset() {
         mNonUIThreadHandler.removeCallbacksAndMessages(null);
+        mInputLogic.mSuggest.discardSpeculativePredictions();
     }
 
     // In unit tests, we create several instances of LatinIME, which results in several instances
@@ -97,6 +99,15 @@ class InputLogicHandler implements Handler.Callback {
             case MSG_GET_SUGGESTED_WORDS:
                 mLatinIME.getSuggestedWords(msg.arg1 /* inputStyle */,
                         msg.arg2 /* sequenceNumber */, (OnGetSuggestedWordsCallback) msg.obj);
+                // The predictions for the word that is likely to be committed are computed
+                // unless suggestions are requested again in the meantime.
+                if (mInputLogic.mSuggest.hasPendingSpeculativePredictions()
+                        && !mNonUIThreadHandler.hasMessages(MSG_GET_SUGGESTED_WORDS)) {
+                    mNonUIThreadHandler.sendEmptyMessage(MSG_COMPUTE_SPECULATIVE_PREDICTIONS);
+                }
+                break;
+            case MSG_COMPUTE_SPECULATIVE_PREDICTIONS:
+                mInputLogic.mSuggest.computeSpeculativePredictions();
                 break;
         }
         return true;
@@ -215,6 +226,8 @@ class InputLogicHandler implements Handler.Callback {
 
     public void getSuggestedWords(final int inputStyle, final int sequenceNumber,
             final OnGetSuggestedWordsCallback callback) {
+        // Suggestions are needed now, not predictions for what may come next.
+        mNonUIThreadHandler.removeMessages(MSG_COMPUTE_SPECULATIVE_PREDICTIONS);
         mNonUIThreadHandler.obtainMessage(
                 MSG_GET_SUGGESTED_WORDS, inputStyle, sequenceNumber, callback).sendToTarget();
     }
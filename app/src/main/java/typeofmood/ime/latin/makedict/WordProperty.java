@@ -114,6 +114,20 @@ public final class WordProperty implements Comparable<WordProperty> {
         mNgrams = ngrams.isEmpty() ? null : ngrams;
     }
 
+    // Construct word property using information that has already been read from native code.
+    public WordProperty(final String word, final ProbabilityInfo probabilityInfo,
+            @Nullable final ArrayList<NgramProperty> ngrams, final boolean isNotAWord,
+            final boolean isPossiblyOffensive, final boolean hasNgrams,
+            final boolean isBeginningOfSentence) {
+        mWord = word;
+        mProbabilityInfo = probabilityInfo;
+        mNgrams = (null == ngrams || ngrams.isEmpty()) ? null : ngrams;
+        mIsBeginningOfSentence = isBeginningOfSentence;
+        mIsNotAWord = isNotAWord;
+        mIsPossiblyOffensive = isPossiblyOffensive;
+        mHasNgrams = hasNgrams;
+    }
+
     // TODO: Remove
     @UsedForTesting
     public ArrayList<WeightedString> getBigrams() {
@@ -107,8 +107,9 @@ public class UserHistoryDictionary extends ExpandableBinaryDictionary {
 
     @Override
     public void close() {
-        // Flush pending writes.
-        asyncFlushBinaryDictionary();
+        // Flush pending writes, unless they have been flushed when the input view was hidden,
+        // and decay the dictionary when due.
+        asyncMaintainBinaryDictionary();
         super.close();
     }
 
@@ -132,4 +133,9 @@ public class UserHistoryDictionary extends ExpandableBinaryDictionary {
         // Strings out of this dictionary should not be considered existing words.
         return false;
     }
+
+    @Override
+    public void markValidWords(final String[] words, final boolean[] inOutIsValid) {
+        // Same as isValidWord(String): none of them is.
+    }
 }
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package typeofmood.ime.latin.settings;
+
+import java.util.Arrays;
+
+/**
+ * Flags telling how a code point is treated for spacing and punctuation in a locale.
+ *
+ * The flags of all code points up to the largest one of the BMP that has any are stored in a
+ * table indexed by code point, so that looking up a code point is a single array access. The few
+ * code points above that, if any, are binary searched.
+ */
+final class CodePointClassifier {
+    public static final int WORD_SEPARATOR = 0x01;
+    public static final int WORD_CONNECTOR = 0x02;
+    public static final int PRECEDED_BY_SPACE = 0x04;
+    public static final int FOLLOWED_BY_SPACE = 0x08;
+    public static final int CLUSTERING_SYMBOL = 0x10;
+    public static final int SENTENCE_TERMINATOR = 0x20;
+
+    private static final int[] EMPTY_INT_ARRAY = new int[0];
+
+    private final byte[] mFlags;
+    private final int[] mSortedSparseCodePoints;
+    private final byte[] mSparseFlags;
+
+    /**
+     * @param sortedCodePoints the sorted code points having each flag.
+     * @param flags the flag of each array of sortedCodePoints.
+     */
+    public CodePointClassifier(final int[][] sortedCodePoints, final int[] flags) {
+        int tableSize = 0;
+        int sparseCount = 0;
+        for (final int[] codePoints : sortedCodePoints) {
+            for (final int codePoint : codePoints) {
+                if (codePoint < 0) {
+                    continue;
+                }
+                if (codePoint <= Character.MAX_VALUE) {
+                    tableSize = Math.max(tableSize, codePoint + 1);
+                } else {
+                    ++sparseCount;
+                }
+            }
+        }
+        mFlags = new byte[tableSize];
+        int[] sparseCodePoints = sparseCount > 0 ? new int[sparseCount] : EMPTY_INT_ARRAY;
+        int[] sparseFlags = sparseCount > 0 ? new int[sparseCount] : EMPTY_INT_ARRAY;
+        int distinctSparseCount = 0;
+        for (int i = 0; i < sortedCodePoints.length; ++i) {
+            for (final int codePoint : sortedCodePoints[i]) {
+                if (codePoint < 0) {
+                    continue;
+                }
+                if (codePoint < tableSize) {
+                    mFlags[codePoint] |= flags[i];
+                    continue;
+                }
+                final int index = indexOf(sparseCodePoints, distinctSparseCount, codePoint);
+                if (index >= 0) {
+                    sparseFlags[index] |= flags[i];
+                } else {
+                    sparseCodePoints[distinctSparseCount] = codePoint;
+                    sparseFlags[distinctSparseCount] = flags[i];
+                    ++distinctSparseCount;
+                }
+            }
+        }
+        // Sort the code points above the table along with their flags.
+        final long[] sparseEntries = new long[distinctSparseCount];
+        for (int i = 0; i < distinctSparseCount; ++i) {
+            sparseEntries[i] = ((long)sparseCodePoints[i] << 32) | sparseFlags[i];
+        }
+        Arrays.sort(sparseEntries);
+        mSortedSparseCodePoints = new int[distinctSparseCount];
+        mSparseFlags = new byte[distinctSparseCount];
+        for (int i = 0; i < distinctSparseCount; ++i) {
+            mSortedSparseCodePoints[i] = (int)(sparseEntries[i] >>> 32);
+            mSparseFlags[i] = (byte)sparseEntries[i];
+        }
+    }
+
+    private static int indexOf(final int[] array, final int length, final int value) {
+        for (int i = 0; i < length; ++i) {
+            if (array[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public int getFlags(final int codePoint) {
+        if (codePoint >= 0 && codePoint < mFlags.length) {
+            return mFlags[codePoint];
+        }
+        if (0 == mSortedSparseCodePoints.length) {
+            return 0;
+        }
+        final int index = Arrays.binarySearch(mSortedSparseCodePoints, codePoint);
+        return index >= 0 ? mSparseFlags[index] : 0;
+    }
+
+    public boolean hasFlag(final int codePoint, final int flag) {
+        return (getFlags(codePoint) & flag) != 0;
+    }
+}
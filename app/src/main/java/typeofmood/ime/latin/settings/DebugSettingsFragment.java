@@ -27,6 +27,7 @@ import android.preference.Preference.OnPreferenceClickListener;
 import android.preference.PreferenceGroup;
 import android.preference.TwoStatePreference;
 
+import typeofmood.ime.keyboard.KeyboardBuildBenchmark;
 import typeofmood.ime.latin.DictionaryDumpBroadcastReceiver;
 import typeofmood.ime.latin.DictionaryFacilitatorImpl;
 import typeofmood.ime.R;
@@ -44,6 +45,8 @@ public final class DebugSettingsFragment extends SubScreenFragment
         implements OnPreferenceClickListener {
     private static final String PREF_KEY_DUMP_DICTS = "pref_key_dump_dictionaries";
     private static final String PREF_KEY_DUMP_DICT_PREFIX = "pref_key_dump_dictionaries";
+    private static final String PREF_KEY_BENCHMARK_KEYBOARD_BUILDS =
+            "pref_key_benchmark_keyboard_builds";
 
     private boolean mServiceNeedsRestart = false;
     private TwoStatePreference mDebugMode;
@@ -60,10 +63,21 @@ public final class DebugSettingsFragment extends SubScreenFragment
         final PreferenceGroup dictDumpPreferenceGroup =
                 (PreferenceGroup)findPreference(PREF_KEY_DUMP_DICTS);
         for (final String dictName : DictionaryFacilitatorImpl.DICT_TYPE_TO_CLASS.keySet()) {
-            final Preference pref = new DictDumpPreference(getActivity(), dictName);
+            final Preference pref = new DictDumpPreference(getActivity(), dictName,
+                    null /* exportFormat */);
             pref.setOnPreferenceClickListener(this);
             dictDumpPreferenceGroup.addPreference(pref);
+            final Preference exportPref = new DictDumpPreference(getActivity(), dictName,
+                    DictionaryDumpBroadcastReceiver.EXPORT_FORMAT_TEXT);
+            exportPref.setOnPreferenceClickListener(this);
+            dictDumpPreferenceGroup.addPreference(exportPref);
         }
+        final Preference benchmarkPref = new Preference(getActivity());
+        benchmarkPref.setKey(PREF_KEY_BENCHMARK_KEYBOARD_BUILDS);
+        benchmarkPref.setTitle("Benchmark keyboard builds");
+        benchmarkPref.setSummary("Logs how long building the keyboards of each subtype takes");
+        benchmarkPref.setOnPreferenceClickListener(this);
+        getPreferenceScreen().addPreference(benchmarkPref);
         final Resources res = getResources();
         setupKeyPreviewAnimationDuration(DebugSettings.PREF_KEY_PREVIEW_SHOW_UP_DURATION,
                 res.getInteger(R.integer.config_key_preview_show_up_duration));
@@ -91,12 +105,21 @@ public final class DebugSettingsFragment extends SubScreenFragment
 
     private static class DictDumpPreference extends Preference {
         public final String mDictName;
+        // The format to export the dictionary to a file in, or null to dump it to the log.
+        public final String mExportFormat;
 
-        public DictDumpPreference(final Context context, final String dictName) {
+        public DictDumpPreference(final Context context, final String dictName,
+                final String exportFormat) {
             super(context);
-            setKey(PREF_KEY_DUMP_DICT_PREFIX + dictName);
-            setTitle("Dump " + dictName + " dictionary");
+            if (exportFormat == null) {
+                setKey(PREF_KEY_DUMP_DICT_PREFIX + dictName);
+                setTitle("Dump " + dictName + " dictionary");
+            } else {
+                setKey(PREF_KEY_DUMP_DICT_PREFIX + dictName + "_" + exportFormat);
+                setTitle("Export " + dictName + " dictionary to a file");
+            }
             mDictName = dictName;
+            mExportFormat = exportFormat;
         }
     }
 
@@ -109,9 +132,17 @@ public final class DebugSettingsFragment extends SubScreenFragment
             final Intent intent = new Intent(
                     DictionaryDumpBroadcastReceiver.DICTIONARY_DUMP_INTENT_ACTION);
             intent.putExtra(DictionaryDumpBroadcastReceiver.DICTIONARY_NAME_KEY, dictName);
+            if (dictDumpPref.mExportFormat != null) {
+                intent.putExtra(DictionaryDumpBroadcastReceiver.EXPORT_FORMAT_KEY,
+                        dictDumpPref.mExportFormat);
+            }
             context.sendBroadcast(intent);
             return true;
         }
+        if (PREF_KEY_BENCHMARK_KEYBOARD_BUILDS.equals(pref.getKey())) {
+            KeyboardBuildBenchmark.run(context);
+            return true;
+        }
         return true;
     }
 
@@ -22,6 +22,7 @@ import android.content.pm.ApplicationInfo;
 import android.content.res.Configuration;
 import android.content.res.Resources;
 import android.os.Build;
+import android.os.SystemClock;
 import android.preference.PreferenceManager;
 import android.util.Log;
 
@@ -30,12 +31,16 @@ import typeofmood.ime.latin.AudioAndHapticFeedbackManager;
 import typeofmood.ime.latin.InputAttributes;
 import typeofmood.ime.R;
 import typeofmood.ime.latin.common.StringUtils;
+import typeofmood.ime.latin.define.DebugFlags;
 import typeofmood.ime.latin.utils.AdditionalSubtypeUtils;
 import typeofmood.ime.latin.utils.ResourceUtils;
 import typeofmood.ime.latin.utils.RunInLocale;
 import typeofmood.ime.latin.utils.StatsUtils;
+import typeofmood.ime.latin.utils.StatsUtilsManager;
 
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Locale;
 import java.util.Set;
 import java.util.concurrent.locks.ReentrantLock;
@@ -100,6 +105,7 @@ public final class Settings implements SharedPreferences.OnSharedPreferenceChang
     public static final String PREF_KEY_IS_INTERNAL = "pref_key_is_internal";
 
     public static final String PREF_ENABLE_METRICS_LOGGING = "pref_enable_metrics_logging";
+    public static final String PREF_LOG_KEYSTROKES = "pref_log_keystrokes";
     // This preference key is deprecated. Use {@link #PREF_SHOW_LANGUAGE_SWITCH_KEY} instead.
     // This is being used only for the backward compatibility.
     private static final String PREF_SUPPRESS_LANGUAGE_SWITCH_KEY =
@@ -117,13 +123,23 @@ public final class Settings implements SharedPreferences.OnSharedPreferenceChang
     public static final String PREF_EMOJI_CATEGORY_LAST_TYPED_ID = "emoji_category_last_typed_id";
     public static final String PREF_LAST_SHOWN_EMOJI_CATEGORY_ID = "last_shown_emoji_category_id";
 
+    // Preferences that are written while typing but never read by {@link SettingsValues}, so that
+    // changing them doesn't need to reload the settings.
+    private static final HashSet<String> PREFS_NOT_IN_SETTINGS_VALUES = new HashSet<>(
+            Arrays.asList(PREF_LAST_USED_PERSONALIZATION_TOKEN,
+                    PREF_LAST_PERSONALIZATION_DICT_WIPED_TIME,
+                    PREF_CORPUS_HANDLES_FOR_PERSONALIZATION, PREF_EMOJI_RECENT_KEYS,
+                    PREF_LAST_SHOWN_EMOJI_CATEGORY_ID));
+
     private static final float UNDEFINED_PREFERENCE_VALUE_FLOAT = -1.0f;
     private static final int UNDEFINED_PREFERENCE_VALUE_INT = -1;
 
     private Context mContext;
     private Resources mRes;
     private SharedPreferences mPrefs;
-    private SettingsValues mSettingsValues;
+    // Settings values are immutable. They are only replaced as a whole under
+    // {@link #mSettingsValuesLock}, so that {@link #getCurrent()} can read them without locking.
+    private volatile SettingsValues mSettingsValues;
     private final ReentrantLock mSettingsValuesLock = new ReentrantLock();
 
     private static final Settings sInstance = new Settings();
@@ -152,8 +168,19 @@ public final class Settings implements SharedPreferences.OnSharedPreferenceChang
         mPrefs.unregisterOnSharedPreferenceChangeListener(this);
     }
 
+    private static boolean isReadBySettingsValues(final String key) {
+        if (null == key) {
+            return true;
+        }
+        return !PREFS_NOT_IN_SETTINGS_VALUES.contains(key)
+                && !key.startsWith(PREF_EMOJI_CATEGORY_LAST_TYPED_ID);
+    }
+
     @Override
     public void onSharedPreferenceChanged(final SharedPreferences prefs, final String key) {
+        if (!isReadBySettingsValues(key)) {
+            return;
+        }
         mSettingsValuesLock.lock();
         try {
             if (mSettingsValues == null) {
@@ -164,6 +191,9 @@ public final class Settings implements SharedPreferences.OnSharedPreferenceChang
             }
             loadSettings(mContext, mSettingsValues.mLocale, mSettingsValues.mInputAttributes);
             StatsUtils.onLoadSettings(mSettingsValues);
+            // Apply the new settings right away rather than when the input view is next shown,
+            // so that keystroke logging stops as soon as the user turns it off.
+            StatsUtilsManager.getInstance().onLoadSettings(mContext, mSettingsValues);
         } finally {
             mSettingsValuesLock.unlock();
         }
@@ -174,6 +204,7 @@ public final class Settings implements SharedPreferences.OnSharedPreferenceChang
         mSettingsValuesLock.lock();
         mContext = context;
         try {
+            final long startTime = SystemClock.uptimeMillis();
             final SharedPreferences prefs = mPrefs;
             final RunInLocale<SettingsValues> job = new RunInLocale<SettingsValues>() {
                 @Override
@@ -182,6 +213,10 @@ public final class Settings implements SharedPreferences.OnSharedPreferenceChang
                 }
             };
             mSettingsValues = job.runInLocale(mRes, locale);
+            if (DebugFlags.DEBUG_ENABLED) {
+                Log.d(TAG, "Settings loaded in " + (SystemClock.uptimeMillis() - startTime)
+                        + "ms");
+            }
         } finally {
             mSettingsValuesLock.unlock();
         }
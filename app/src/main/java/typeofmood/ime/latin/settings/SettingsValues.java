@@ -34,6 +34,7 @@ import typeofmood.ime.latin.utils.ResourceUtils;
 import typeofmood.ime.latin.utils.TargetPackageInfoGetterTask;
 
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Locale;
 
 import javax.annotation.Nonnull;
@@ -53,6 +54,11 @@ public class SettingsValues {
     private static final int TIMEOUT_TO_GET_TARGET_PACKAGE = 5; // seconds
     public static final float DEFAULT_SIZE_SCALE = 1.0f; // 100%
 
+    // Spacing and punctuations only depend on the locale of the resources, and are immutable, so
+    // they are shared by all settings values of the same locale.
+    private static final HashMap<Locale, SpacingAndPunctuations> sSpacingAndPunctuationsCache =
+            new HashMap<>();
+
     // From resources:
     public final SpacingAndPunctuations mSpacingAndPunctuations;
     public final int mDelayInMillisecondsToUpdateOldSuggestions;
@@ -85,6 +91,7 @@ public class SettingsValues {
     public final boolean mIsShowAppIconSettingInPreferences;
     public final boolean mCloudSyncEnabled;
     public final boolean mEnableMetricsLogging;
+    public final boolean mLogKeystrokes;
     public final boolean mShouldShowLxxSuggestionUi;
     // Use split layout for keyboard.
     public final boolean mIsSplitKeyboardEnabled;
@@ -125,7 +132,7 @@ public class SettingsValues {
         // Get the resources
         mDelayInMillisecondsToUpdateOldSuggestions =
                 res.getInteger(R.integer.config_delay_in_milliseconds_to_update_old_suggestions);
-        mSpacingAndPunctuations = new SpacingAndPunctuations(res);
+        mSpacingAndPunctuations = getSpacingAndPunctuations(res);
 
         // Store the input attributes
         mInputAttributes = inputAttributes;
@@ -158,6 +165,7 @@ public class SettingsValues {
         mDoubleSpacePeriodTimeout = res.getInteger(R.integer.config_double_space_period_timeout);
         mHasHardwareKeyboard = Settings.readHasHardwareKeyboard(res.getConfiguration());
         mEnableMetricsLogging = prefs.getBoolean(Settings.PREF_ENABLE_METRICS_LOGGING, true);
+        mLogKeystrokes = prefs.getBoolean(Settings.PREF_LOG_KEYSTROKES, false);
         mIsSplitKeyboardEnabled = prefs.getBoolean(Settings.PREF_ENABLE_SPLIT_KEYBOARD, false);
         mScreenMetrics = Settings.readScreenMetrics(res);
 
@@ -224,6 +232,19 @@ public class SettingsValues {
         }
     }
 
+    private static SpacingAndPunctuations getSpacingAndPunctuations(final Resources res) {
+        final Locale locale = res.getConfiguration().locale;
+        synchronized (sSpacingAndPunctuationsCache) {
+            SpacingAndPunctuations spacingAndPunctuations =
+                    sSpacingAndPunctuationsCache.get(locale);
+            if (null == spacingAndPunctuations) {
+                spacingAndPunctuations = new SpacingAndPunctuations(res);
+                sSpacingAndPunctuationsCache.put(locale, spacingAndPunctuations);
+            }
+            return spacingAndPunctuations;
+        }
+    }
+
     public boolean isMetricsLoggingEnabled() {
         return mEnableMetricsLogging;
     }
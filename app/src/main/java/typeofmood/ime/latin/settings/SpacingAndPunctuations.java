@@ -42,6 +42,8 @@ public final class SpacingAndPunctuations {
     public final boolean mCurrentLanguageHasSpaces;
     public final boolean mUsesAmericanTypography;
     public final boolean mUsesGermanRules;
+    // The sorted arrays above, merged for the is* methods below.
+    private final CodePointClassifier mClassifier;
 
     public SpacingAndPunctuations(final Resources res) {
         // To be able to binary search the code point. See {@link #isUsuallyPrecededBySpace(int)}.
@@ -72,6 +74,7 @@ public final class SpacingAndPunctuations {
         final String[] suggestPuncsSpec = MoreKeySpec.splitKeySpecs(
                 res.getString(R.string.suggested_punctuations));
         mSuggestPuncList = PunctuationSuggestions.newPunctuationSuggestions(suggestPuncsSpec);
+        mClassifier = newClassifier();
     }
 
     @UsedForTesting
@@ -90,14 +93,33 @@ public final class SpacingAndPunctuations {
         mCurrentLanguageHasSpaces = model.mCurrentLanguageHasSpaces;
         mUsesAmericanTypography = model.mUsesAmericanTypography;
         mUsesGermanRules = model.mUsesGermanRules;
+        mClassifier = newClassifier();
+    }
+
+    private CodePointClassifier newClassifier() {
+        return new CodePointClassifier(new int[][] {
+                mSortedWordSeparators,
+                mSortedWordConnectors,
+                mSortedSymbolsPrecededBySpace,
+                mSortedSymbolsFollowedBySpace,
+                mSortedSymbolsClusteringTogether,
+                mSortedSentenceTerminators
+        }, new int[] {
+                CodePointClassifier.WORD_SEPARATOR,
+                CodePointClassifier.WORD_CONNECTOR,
+                CodePointClassifier.PRECEDED_BY_SPACE,
+                CodePointClassifier.FOLLOWED_BY_SPACE,
+                CodePointClassifier.CLUSTERING_SYMBOL,
+                CodePointClassifier.SENTENCE_TERMINATOR
+        });
     }
 
     public boolean isWordSeparator(final int code) {
-        return Arrays.binarySearch(mSortedWordSeparators, code) >= 0;
+        return mClassifier.hasFlag(code, CodePointClassifier.WORD_SEPARATOR);
     }
 
     public boolean isWordConnector(final int code) {
-        return Arrays.binarySearch(mSortedWordConnectors, code) >= 0;
+        return mClassifier.hasFlag(code, CodePointClassifier.WORD_CONNECTOR);
     }
 
     public boolean isWordCodePoint(final int code) {
@@ -105,19 +127,19 @@ public final class SpacingAndPunctuations {
     }
 
     public boolean isUsuallyPrecededBySpace(final int code) {
-        return Arrays.binarySearch(mSortedSymbolsPrecededBySpace, code) >= 0;
+        return mClassifier.hasFlag(code, CodePointClassifier.PRECEDED_BY_SPACE);
     }
 
     public boolean isUsuallyFollowedBySpace(final int code) {
-        return Arrays.binarySearch(mSortedSymbolsFollowedBySpace, code) >= 0;
+        return mClassifier.hasFlag(code, CodePointClassifier.FOLLOWED_BY_SPACE);
     }
 
     public boolean isClusteringSymbol(final int code) {
-        return Arrays.binarySearch(mSortedSymbolsClusteringTogether, code) >= 0;
+        return mClassifier.hasFlag(code, CodePointClassifier.CLUSTERING_SYMBOL);
     }
 
     public boolean isSentenceTerminator(final int code) {
-        return Arrays.binarySearch(mSortedSentenceTerminators, code) >= 0;
+        return mClassifier.hasFlag(code, CodePointClassifier.SENTENCE_TERMINATOR);
     }
 
     public boolean isAbbreviationMarker(final int code) {
@@ -42,7 +42,6 @@ import typeofmood.ime.latin.utils.SuggestionResults;
 
 import java.util.Locale;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Semaphore;
 
 import javax.annotation.Nonnull;
@@ -67,8 +66,14 @@ public final class AndroidSpellCheckerService extends SpellCheckerService
     private final int MAX_NUM_OF_THREADS_READ_DICTIONARY = 2;
     private final Semaphore mSemaphore = new Semaphore(MAX_NUM_OF_THREADS_READ_DICTIONARY,
             true /* fair */);
-    // TODO: Make each spell checker session has its own session id.
-    private final ConcurrentLinkedQueue<Integer> mSessionIdPool = new ConcurrentLinkedQueue<>();
+    // Each spell checker session gets its own traverse sessions through its id. Ids are
+    // recycled, so that they stay in the range dictionaries keep for the ids of one user. Past
+    // that many open sessions, sessions share ids and take turns using them.
+    private static final int MAX_SESSION_ID_COUNT = 32;
+    // The number of open spell checker sessions using each id. Guarded by itself.
+    private final int[] mSessionIdUseCounts = new int[MAX_SESSION_ID_COUNT];
+    // Held while the traverse sessions of an id are used or released.
+    private final Object[] mSessionIdLocks = new Object[MAX_SESSION_ID_COUNT];
 
     private final DictionaryFacilitatorLruCache mDictionaryFacilitatorCache =
             new DictionaryFacilitatorLruCache(this /* context */, DICTIONARY_NAME_PREFIX);
@@ -85,8 +90,8 @@ public final class AndroidSpellCheckerService extends SpellCheckerService
 
     public AndroidSpellCheckerService() {
         super();
-        for (int i = 0; i < MAX_NUM_OF_THREADS_READ_DICTIONARY; i++) {
-            mSessionIdPool.add(i);
+        for (int i = 0; i < MAX_SESSION_ID_COUNT; ++i) {
+            mSessionIdLocks[i] = new Object();
         }
     }
 
@@ -168,24 +173,74 @@ public final class AndroidSpellCheckerService extends SpellCheckerService
         }
     }
 
-    public SuggestionResults getSuggestionResults(final Locale locale,
-            final ComposedData composedData, final NgramContext ngramContext,
-            @Nonnull final Keyboard keyboard) {
-        Integer sessionId = null;
+    /**
+     * Same as {@link #isValidWord(Locale, String)} for many words at once.
+     * @return whether each word is valid.
+     */
+    public boolean[] isValidWords(final Locale locale, final String[] words) {
+        final boolean[] isValid = new boolean[words.length];
         mSemaphore.acquireUninterruptibly();
         try {
-            sessionId = mSessionIdPool.poll();
             DictionaryFacilitator dictionaryFacilitatorForLocale =
                     mDictionaryFacilitatorCache.get(locale);
-            return dictionaryFacilitatorForLocale.getSuggestionResults(composedData, ngramContext,
-                    keyboard, mSettingsValuesForSuggestion,
-                    sessionId, SuggestedWords.INPUT_STYLE_TYPING);
+            dictionaryFacilitatorForLocale.isValidSpellingWords(words, isValid);
         } finally {
-            if (sessionId != null) {
-                mSessionIdPool.add(sessionId);
-            }
             mSemaphore.release();
         }
+        return isValid;
+    }
+
+    /**
+     * @return an id for a spell checker session to get suggestions with, which must be given
+     * back with {@link #releaseSessionId(int)} when the session is closed.
+     */
+    public int acquireSessionId() {
+        synchronized (mSessionIdUseCounts) {
+            int sessionId = 0;
+            for (int i = 1; i < MAX_SESSION_ID_COUNT; ++i) {
+                if (mSessionIdUseCounts[i] < mSessionIdUseCounts[sessionId]) {
+                    sessionId = i;
+                }
+            }
+            ++mSessionIdUseCounts[sessionId];
+            return sessionId;
+        }
+    }
+
+    /**
+     * Gives back the id of a spell checker session that is closed. Once no other session uses
+     * it, the dictionaries reuse or free its traverse sessions, and the sessions of the other
+     * ids keep working.
+     */
+    public void releaseSessionId(final int sessionId) {
+        synchronized (mSessionIdLocks[sessionId]) {
+            synchronized (mSessionIdUseCounts) {
+                if (0 != --mSessionIdUseCounts[sessionId]) {
+                    return;
+                }
+            }
+            mDictionaryFacilitatorCache.releaseTraverseSession(sessionId);
+        }
+    }
+
+    /**
+     * Gets suggestions with the traverse sessions of the id of a spell checker session.
+     */
+    public SuggestionResults getSuggestionResults(final int sessionId, final Locale locale,
+            final ComposedData composedData, final NgramContext ngramContext,
+            @Nonnull final Keyboard keyboard) {
+        synchronized (mSessionIdLocks[sessionId]) {
+            mSemaphore.acquireUninterruptibly();
+            try {
+                DictionaryFacilitator dictionaryFacilitatorForLocale =
+                        mDictionaryFacilitatorCache.get(locale);
+                return dictionaryFacilitatorForLocale.getSuggestionResults(composedData,
+                        ngramContext, keyboard, mSettingsValuesForSuggestion,
+                        sessionId, SuggestedWords.INPUT_STYLE_TYPING);
+            } finally {
+                mSemaphore.release();
+            }
+        }
     }
 
     public boolean hasMainDictionaryForLocale(final Locale locale) {
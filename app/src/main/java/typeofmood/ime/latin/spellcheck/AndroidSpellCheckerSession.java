@@ -199,6 +199,8 @@ public final class AndroidSpellCheckerSession extends AndroidWordLevelSpellCheck
         try {
             final int length = textInfos.length;
             final SuggestionsInfo[] retval = new SuggestionsInfo[length];
+            // Look up all the words at once rather than one by one.
+            final Boolean[] isInDict = isInDictForAnyCapitalization(textInfos);
             for (int i = 0; i < length; ++i) {
                 final CharSequence prevWord;
                 if (sequentialWords && i > 0) {
@@ -214,7 +216,8 @@ public final class AndroidSpellCheckerSession extends AndroidWordLevelSpellCheck
                 final NgramContext ngramContext =
                         new NgramContext(new NgramContext.WordInfo(prevWord));
                 final TextInfo textInfo = textInfos[i];
-                retval[i] = onGetSuggestionsInternal(textInfo, ngramContext, suggestionsLimit);
+                retval[i] = onGetSuggestionsInternal(textInfo, ngramContext, suggestionsLimit,
+                        isInDict[i]);
                 retval[i].setCookieAndSequence(textInfo.getCookie(), textInfo.getSequence());
             }
             return retval;
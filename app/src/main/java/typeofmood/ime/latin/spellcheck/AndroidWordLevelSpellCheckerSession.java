@@ -42,6 +42,7 @@ import typeofmood.ime.latin.utils.StatsUtils;
 import typeofmood.ime.latin.utils.SuggestionResults;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
 
@@ -55,6 +56,9 @@ public abstract class AndroidWordLevelSpellCheckerSession extends Session {
     // Cache this for performance
     private int mScript; // One of SCRIPT_LATIN or SCRIPT_CYRILLIC for now.
     private final AndroidSpellCheckerService mService;
+    // The id of the traverse sessions of this session, which the service may share with other
+    // sessions.
+    private final int mSessionId;
     protected final SuggestionsCache mSuggestionsCache = new SuggestionsCache();
     private final ContentObserver mObserver;
 
@@ -100,6 +104,7 @@ public abstract class AndroidWordLevelSpellCheckerSession extends Session {
 
     AndroidWordLevelSpellCheckerSession(final AndroidSpellCheckerService service) {
         mService = service;
+        mSessionId = service.acquireSessionId();
         final ContentResolver cres = service.getContentResolver();
 
         mObserver = new ContentObserver(null) {
@@ -123,6 +128,7 @@ public abstract class AndroidWordLevelSpellCheckerSession extends Session {
     public void onClose() {
         final ContentResolver cres = mService.getContentResolver();
         cres.unregisterContentObserver(mObserver);
+        mService.releaseSessionId(mSessionId);
     }
 
     private static final int CHECKABILITY_CHECKABLE = 0;
@@ -209,6 +215,64 @@ public abstract class AndroidWordLevelSpellCheckerSession extends Session {
                 StringUtils.capitalizeFirstAndDowncaseRest(lowerCaseText, mLocale));
     }
 
+    // The text as is, in lower case, and capitalized.
+    private static final int CAPITALIZATIONS_TO_CHECK = 3;
+
+    /**
+     * Same as {@link #isInDictForAnyCapitalization(String, int)} for the texts of many text
+     * infos, looking up all their capitalizations in a single batch.
+     * @return for each text info, whether its text is in the dictionary, or null if its text is
+     * not a checkable word or couldn't be looked up.
+     */
+    protected Boolean[] isInDictForAnyCapitalization(final TextInfo[] textInfos) {
+        final int length = textInfos.length;
+        final Boolean[] isInDict = new Boolean[length];
+        try {
+            if (!mService.hasMainDictionaryForLocale(mLocale)) {
+                return isInDict;
+            }
+            // Each text is looked up in at most CAPITALIZATIONS_TO_CHECK ways, from index
+            // i * CAPITALIZATIONS_TO_CHECK. The unused ones stay null.
+            final String[] candidates = new String[length * CAPITALIZATIONS_TO_CHECK];
+            for (int i = 0; i < length; ++i) {
+                final String text = getTextToCheck(textInfos[i]);
+                if (CHECKABILITY_CHECKABLE != getCheckabilityInScript(text, mScript)) {
+                    continue;
+                }
+                isInDict[i] = Boolean.FALSE;
+                final int start = i * CAPITALIZATIONS_TO_CHECK;
+                candidates[start] = text;
+                final int capitalizeType = StringUtils.getCapitalizationType(text);
+                if (StringUtils.CAPITALIZE_NONE == capitalizeType) continue;
+                final String lowerCaseText = text.toLowerCase(mLocale);
+                candidates[start + 1] = lowerCaseText;
+                if (StringUtils.CAPITALIZE_FIRST == capitalizeType) continue;
+                candidates[start + 2] =
+                        StringUtils.capitalizeFirstAndDowncaseRest(lowerCaseText, mLocale);
+            }
+            final boolean[] isValid = mService.isValidWords(mLocale, candidates);
+            for (int i = 0; i < length; ++i) {
+                if (null == isInDict[i]) continue;
+                final int start = i * CAPITALIZATIONS_TO_CHECK;
+                isInDict[i] = isValid[start] || isValid[start + 1] || isValid[start + 2];
+            }
+        } catch (RuntimeException e) {
+            // Don't kill the keyboard if there is a bug in the spell checker. The words are
+            // looked up again one by one.
+            Log.e(TAG, "Exception while looking up words", e);
+            Arrays.fill(isInDict, null);
+        }
+        return isInDict;
+    }
+
+    private static String getTextToCheck(final TextInfo textInfo) {
+        return textInfo.getText().
+                replaceAll(AndroidSpellCheckerService.APOSTROPHE,
+                        AndroidSpellCheckerService.SINGLE_QUOTE).
+                replaceAll("^" + quotesRegexp, "").
+                replaceAll(quotesRegexp + "$", "");
+    }
+
     // Note : this must be reentrant
     /**
      * Gets a list of suggestions for a specific string. This returns a list of possible
@@ -222,12 +286,19 @@ public abstract class AndroidWordLevelSpellCheckerSession extends Session {
 
     protected SuggestionsInfo onGetSuggestionsInternal(
             final TextInfo textInfo, final NgramContext ngramContext, final int suggestionsLimit) {
+        return onGetSuggestionsInternal(textInfo, ngramContext, suggestionsLimit,
+                null /* knownIsInDict */);
+    }
+
+    /**
+     * @param knownIsInDict whether the text is in the dictionary as of
+     * {@link #isInDictForAnyCapitalization(TextInfo[])}, or null to look it up.
+     */
+    protected SuggestionsInfo onGetSuggestionsInternal(final TextInfo textInfo,
+            final NgramContext ngramContext, final int suggestionsLimit,
+            final Boolean knownIsInDict) {
         try {
-            final String text = textInfo.getText().
-                    replaceAll(AndroidSpellCheckerService.APOSTROPHE,
-                            AndroidSpellCheckerService.SINGLE_QUOTE).
-                    replaceAll("^" + quotesRegexp, "").
-                    replaceAll(quotesRegexp + "$", "");
+            final String text = getTextToCheck(textInfo);
 
             if (!mService.hasMainDictionaryForLocale(mLocale)) {
                 return AndroidSpellCheckerService.getNotInDictEmptySuggestions(
@@ -262,7 +333,9 @@ public abstract class AndroidWordLevelSpellCheckerSession extends Session {
             // Handle normal words.
             final int capitalizeType = StringUtils.getCapitalizationType(text);
 
-            if (isInDictForAnyCapitalization(text, capitalizeType)) {
+            final boolean isInDict = null != knownIsInDict ? knownIsInDict
+                    : isInDictForAnyCapitalization(text, capitalizeType);
+            if (isInDict) {
                 if (DebugFlags.DEBUG_ENABLED) {
                     Log.i(TAG, "onGetSuggestionsInternal() : [" + text + "] is a valid word");
                 }
@@ -287,7 +360,8 @@ public abstract class AndroidWordLevelSpellCheckerSession extends Session {
             composer.setComposingWord(codePoints, coordinates);
             // TODO: Don't gather suggestions if the limit is <= 0 unless necessary
             final SuggestionResults suggestionResults = mService.getSuggestionResults(
-                    mLocale, composer.getComposedDataSnapshot(), ngramContext, keyboard);
+                    mSessionId, mLocale, composer.getComposedDataSnapshot(), ngramContext,
+                    keyboard);
             final Result result = getResult(capitalizeType, mLocale, suggestionsLimit,
                     mService.getRecommendedThreshold(), text, suggestionResults);
             if (DebugFlags.DEBUG_ENABLED) {
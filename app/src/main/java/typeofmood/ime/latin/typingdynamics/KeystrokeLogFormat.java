@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package typeofmood.ime.latin.typingdynamics;
+
+import typeofmood.ime.keyboard.internal.KeystrokeRecorder;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * The binary format of keystroke log files.
+ *
+ * A file starts with a header:
+ *   int    magic number
+ *   byte   format version
+ *   long   wall clock time of the start of the session, in milliseconds
+ * then contains blocks of at most {@link #MAX_KEYSTROKES_PER_BLOCK} keystrokes, each written with
+ * a single append:
+ *   int    size of the block in bytes, not counting this int
+ *   varint number of keystrokes n
+ *   n bytes       key classes (as of KeystrokeRecorder#KEY_CLASS_*)
+ *   n varints     down times, as zigzag deltas from the previous down time in the file (the
+ *                 first one of a file is a delta from 0, that is the uptime itself). Apart from
+ *                 the first one, these are the flight times between key presses.
+ *   n varints     hold times (up time - down time), zigzag encoded
+ *   n varints     x coordinates, zigzag encoded
+ *   n varints     y coordinates, zigzag encoded
+ *   n bytes       pressures, quantized to 0..254 for 0.0..1.0, or 255 when not available
+ *   n bytes       sizes, quantized like pressures
+ * Storing each field in its own column keeps similar values together, and with the deltas most
+ * keystrokes take between 8 and 12 bytes.
+ */
+public final class KeystrokeLogFormat {
+    public static final int MAGIC_NUMBER = 0x544D4B53;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 4 + 1 + 8;
+
+    public static final int MAX_KEYSTROKES_PER_BLOCK = 256;
+    // A varint takes at most 10 bytes for a long and 5 for an int.
+    private static final int MAX_KEYSTROKE_SIZE = 1 + 10 + 10 + 5 + 5 + 1 + 1;
+    public static final int MAX_BLOCK_SIZE = 4 + 5 + MAX_KEYSTROKES_PER_BLOCK * MAX_KEYSTROKE_SIZE;
+
+    public static final String FILE_PREFIX = "keystrokes-";
+    public static final String FILE_SUFFIX = ".bin";
+
+    private static final int QUANTIZED_MAX = 254;
+    private static final int QUANTIZED_NOT_AVAILABLE = 255;
+
+    private KeystrokeLogFormat() {
+        // This utility class is not publicly instantiable.
+    }
+
+    public static void writeHeader(final ByteBuffer buffer, final long sessionStartTime) {
+        buffer.putInt(MAGIC_NUMBER);
+        buffer.put((byte)VERSION);
+        buffer.putLong(sessionStartTime);
+    }
+
+    /**
+     * Encodes a block of keystrokes.
+     * @param buffer the buffer to write to. It must have at least {@link #MAX_BLOCK_SIZE} bytes
+     *  remaining.
+     * @param batch the keystrokes to write.
+     * @param previousDownTime the down time of the last keystroke written to the same file, or 0.
+     * @return the down time of the last keystroke of this block.
+     */
+    public static long writeBlock(final ByteBuffer buffer, final KeystrokeRecorder.Batch batch,
+            final long previousDownTime) {
+        final int count = batch.size();
+        final int sizePosition = buffer.position();
+        buffer.putInt(0); // Placeholder for the size of the block.
+        putVarLong(buffer, count);
+        for (int i = 0; i < count; ++i) {
+            buffer.put((byte)batch.mKeyClasses[i]);
+        }
+        long lastDownTime = previousDownTime;
+        for (int i = 0; i < count; ++i) {
+            putVarLong(buffer, zigzag(batch.mDownTimes[i] - lastDownTime));
+            lastDownTime = batch.mDownTimes[i];
+        }
+        for (int i = 0; i < count; ++i) {
+            putVarLong(buffer, zigzag(batch.mUpTimes[i] - batch.mDownTimes[i]));
+        }
+        for (int i = 0; i < count; ++i) {
+            putVarLong(buffer, zigzag(batch.mXs[i]));
+        }
+        for (int i = 0; i < count; ++i) {
+            putVarLong(buffer, zigzag(batch.mYs[i]));
+        }
+        for (int i = 0; i < count; ++i) {
+            buffer.put(quantize(batch.mPressures[i]));
+        }
+        for (int i = 0; i < count; ++i) {
+            buffer.put(quantize(batch.mSizes[i]));
+        }
+        buffer.putInt(sizePosition, buffer.position() - sizePosition - 4);
+        return lastDownTime;
+    }
+
+    /**
+     * Decodes a block of keystrokes, the size int excluded.
+     * @param buffer the buffer holding exactly the block.
+     * @param batch the batch to read keystrokes into.
+     * @param previousDownTime the down time of the last keystroke read from the same file, or 0.
+     * @return the down time of the last keystroke of this block.
+     * @throws KeystrokeLogFormatException if the block is malformed.
+     */
+    public static long readBlock(final ByteBuffer buffer, final KeystrokeRecorder.Batch batch,
+            final long previousDownTime) throws KeystrokeLogFormatException {
+        try {
+            final long count = getVarLong(buffer);
+            if (count < 0 || count > batch.capacity()) {
+                throw new KeystrokeLogFormatException("Bad keystroke count: " + count);
+            }
+            final int n = (int)count;
+            for (int i = 0; i < n; ++i) {
+                batch.mKeyClasses[i] = buffer.get() & 0xFF;
+            }
+            long lastDownTime = previousDownTime;
+            for (int i = 0; i < n; ++i) {
+                lastDownTime += unzigzag(getVarLong(buffer));
+                batch.mDownTimes[i] = lastDownTime;
+            }
+            for (int i = 0; i < n; ++i) {
+                batch.mUpTimes[i] = batch.mDownTimes[i] + unzigzag(getVarLong(buffer));
+            }
+            for (int i = 0; i < n; ++i) {
+                batch.mXs[i] = (int)unzigzag(getVarLong(buffer));
+            }
+            for (int i = 0; i < n; ++i) {
+                batch.mYs[i] = (int)unzigzag(getVarLong(buffer));
+            }
+            for (int i = 0; i < n; ++i) {
+                batch.mPressures[i] = unquantize(buffer.get());
+            }
+            for (int i = 0; i < n; ++i) {
+                batch.mSizes[i] = unquantize(buffer.get());
+            }
+            batch.setSize(n);
+            return lastDownTime;
+        } catch (final BufferUnderflowException e) {
+            throw new KeystrokeLogFormatException("Truncated block");
+        }
+    }
+
+    private static long zigzag(final long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(final long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void putVarLong(final ByteBuffer buffer, final long value) {
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            buffer.put((byte)((remaining & 0x7F) | 0x80));
+            remaining >>>= 7;
+        }
+        buffer.put((byte)remaining);
+    }
+
+    private static long getVarLong(final ByteBuffer buffer) throws KeystrokeLogFormatException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final byte b = buffer.get();
+            result |= (long)(b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new KeystrokeLogFormatException("Malformed varint");
+    }
+
+    private static byte quantize(final float value) {
+        if (value < 0.0f) {
+            return (byte)QUANTIZED_NOT_AVAILABLE;
+        }
+        return (byte)Math.min(QUANTIZED_MAX, Math.round(value * QUANTIZED_MAX));
+    }
+
+    private static float unquantize(final byte value) {
+        final int quantized = value & 0xFF;
+        if (quantized == QUANTIZED_NOT_AVAILABLE) {
+            return KeystrokeRecorder.NOT_A_PRESSURE;
+        }
+        return (float)quantized / QUANTIZED_MAX;
+    }
+
+    /**
+     * Thrown when a keystroke log file does not follow this format.
+     */
+    public static final class KeystrokeLogFormatException extends Exception {
+        public KeystrokeLogFormatException(final String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package typeofmood.ime.latin.typingdynamics;
+
+import typeofmood.ime.keyboard.internal.KeystrokeRecorder;
+import typeofmood.ime.latin.typingdynamics.KeystrokeLogFormat.KeystrokeLogFormatException;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Reads keystroke log files written by {@link KeystrokeLogWriter}, for offline analysis.
+ *
+ * Usage:
+ *   final KeystrokeLogReader reader = new KeystrokeLogReader(file);
+ *   final KeystrokeRecorder.Batch batch = KeystrokeLogReader.newBatch();
+ *   try {
+ *       while (reader.readBlock(batch)) { ... }
+ *   } finally {
+ *       reader.close();
+ *   }
+ */
+public final class KeystrokeLogReader implements Closeable {
+    private final FileChannel mChannel;
+    private final ByteBuffer mSizeBuffer = ByteBuffer.allocate(4);
+    private final ByteBuffer mBlockBuffer = ByteBuffer.allocate(KeystrokeLogFormat.MAX_BLOCK_SIZE);
+    private final long mSessionStartTime;
+    private long mPreviousDownTime = 0;
+
+    public KeystrokeLogReader(final File file) throws IOException, KeystrokeLogFormatException {
+        mChannel = new FileInputStream(file).getChannel();
+        try {
+            final ByteBuffer header = ByteBuffer.allocate(KeystrokeLogFormat.HEADER_SIZE);
+            if (!readFully(header) || KeystrokeLogFormat.MAGIC_NUMBER != header.getInt()) {
+                throw new KeystrokeLogFormatException("Not a keystroke log: " + file);
+            }
+            final int version = header.get();
+            if (KeystrokeLogFormat.VERSION != version) {
+                throw new KeystrokeLogFormatException("Unsupported version " + version);
+            }
+            mSessionStartTime = header.getLong();
+        } catch (final IOException | KeystrokeLogFormatException e) {
+            mChannel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return a batch large enough for any block.
+     */
+    public static KeystrokeRecorder.Batch newBatch() {
+        return new KeystrokeRecorder.Batch(KeystrokeLogFormat.MAX_KEYSTROKES_PER_BLOCK);
+    }
+
+    /**
+     * Lists the keystroke log files of a directory, oldest session first.
+     */
+    public static File[] listLogFiles(final File directory) {
+        final File[] files = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(final File dir, final String name) {
+                return name.startsWith(KeystrokeLogFormat.FILE_PREFIX)
+                        && name.endsWith(KeystrokeLogFormat.FILE_SUFFIX);
+            }
+        });
+        if (null == files) {
+            return new File[0];
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(final File lhs, final File rhs) {
+                final long[] lhsKey = getSortKey(lhs.getName());
+                final long[] rhsKey = getSortKey(rhs.getName());
+                if (lhsKey[0] != rhsKey[0]) {
+                    return lhsKey[0] < rhsKey[0] ? -1 : 1;
+                }
+                return lhsKey[1] < rhsKey[1] ? -1 : (lhsKey[1] == rhsKey[1] ? 0 : 1);
+            }
+        });
+        return files;
+    }
+
+    // Names hold the session start time and then the file index, as
+    // {@link KeystrokeLogFormat#FILE_PREFIX}<start time>-<index>{@link KeystrokeLogFormat#FILE_SUFFIX}
+    private static long[] getSortKey(final String name) {
+        final String key = name.substring(KeystrokeLogFormat.FILE_PREFIX.length(),
+                name.length() - KeystrokeLogFormat.FILE_SUFFIX.length());
+        final int separatorIndex = key.indexOf('-');
+        try {
+            return new long[] { Long.parseLong(key.substring(0, separatorIndex)),
+                    Long.parseLong(key.substring(separatorIndex + 1)) };
+        } catch (final NumberFormatException | IndexOutOfBoundsException e) {
+            return new long[] { Long.MAX_VALUE, Long.MAX_VALUE };
+        }
+    }
+
+    public long getSessionStartTime() {
+        return mSessionStartTime;
+    }
+
+    /**
+     * Reads the next block of keystrokes.
+     * @param batch the batch to read into. Its capacity must be at least
+     *  {@link KeystrokeLogFormat#MAX_KEYSTROKES_PER_BLOCK}.
+     * @return false at the end of the file.
+     */
+    public boolean readBlock(final KeystrokeRecorder.Batch batch)
+            throws IOException, KeystrokeLogFormatException {
+        mSizeBuffer.clear();
+        if (!readFully(mSizeBuffer)) {
+            return false;
+        }
+        final int size = mSizeBuffer.getInt();
+        if (size < 0 || size > mBlockBuffer.capacity()) {
+            throw new KeystrokeLogFormatException("Bad block size: " + size);
+        }
+        mBlockBuffer.clear();
+        mBlockBuffer.limit(size);
+        if (!readFully(mBlockBuffer)) {
+            throw new KeystrokeLogFormatException("Truncated block");
+        }
+        mPreviousDownTime = KeystrokeLogFormat.readBlock(mBlockBuffer, batch, mPreviousDownTime);
+        return true;
+    }
+
+    private boolean readFully(final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (mChannel.read(buffer) < 0) {
+                return false;
+            }
+        }
+        buffer.flip();
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mChannel.close();
+    }
+}
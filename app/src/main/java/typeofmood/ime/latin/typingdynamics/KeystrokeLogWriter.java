@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package typeofmood.ime.latin.typingdynamics;
+
+import android.util.Log;
+
+import typeofmood.ime.keyboard.internal.KeystrokeRecorder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Drains a {@link KeystrokeRecorder} into keystroke log files, one or more per typing session.
+ *
+ * Each drain encodes the pending keystrokes into a preallocated buffer and appends it to the
+ * current file with a single write. Files are rotated when they reach a maximum size. Files older
+ * than a maximum age are deleted, and so are the oldest files when all of them take more than a
+ * maximum total size. See {@link KeystrokeLogFormat} for the format.
+ *
+ * All methods must be called from the same background thread.
+ */
+public final class KeystrokeLogWriter {
+    private static final String TAG = KeystrokeLogWriter.class.getSimpleName();
+
+    private final File mDirectory;
+    private final KeystrokeRecorder mRecorder;
+    private final long mMaxFileSize;
+    private final long mMaxTotalSize;
+    private final long mMaxAgeMillis;
+    private final KeystrokeRecorder.Batch mBatch =
+            new KeystrokeRecorder.Batch(KeystrokeLogFormat.MAX_KEYSTROKES_PER_BLOCK);
+    private final ByteBuffer mBuffer = ByteBuffer.allocate(
+            KeystrokeLogFormat.HEADER_SIZE + KeystrokeLogFormat.MAX_BLOCK_SIZE);
+
+    private long mSessionStartTime;
+    private int mFileIndex;
+    private FileChannel mChannel;
+    private long mFileSize;
+    private long mPreviousDownTime;
+
+    // Statistics for the current session.
+    private long mKeystrokeCount;
+    private long mByteCount;
+    private long mWriteTimeNanos;
+
+    public KeystrokeLogWriter(final File directory, final KeystrokeRecorder recorder,
+            final long maxFileSize, final long maxTotalSize, final long maxAgeMillis) {
+        mDirectory = directory;
+        mRecorder = recorder;
+        mMaxFileSize = maxFileSize;
+        mMaxTotalSize = maxTotalSize;
+        mMaxAgeMillis = maxAgeMillis;
+    }
+
+    /**
+     * Starts a new session. Keystrokes recorded before this are not logged.
+     * @param sessionStartTime the wall clock time of the start of the session.
+     */
+    public void startSession(final long sessionStartTime) {
+        endSession();
+        while (mRecorder.drainTo(mBatch) > 0) {
+            // Skip keystrokes from before this session.
+        }
+        deleteExpiredFiles(sessionStartTime);
+        mSessionStartTime = sessionStartTime;
+        mFileIndex = 0;
+        mKeystrokeCount = 0;
+        mByteCount = 0;
+        mWriteTimeNanos = 0;
+    }
+
+    /**
+     * Writes the keystrokes recorded since the last drain.
+     */
+    public void drain() {
+        if (0 == mSessionStartTime) return;
+        final long startTime = System.nanoTime();
+        while (mRecorder.drainTo(mBatch) > 0) {
+            try {
+                writeBatch();
+            } catch (final IOException e) {
+                Log.e(TAG, "Could not write keystrokes", e);
+                closeFile();
+                break;
+            }
+        }
+        mWriteTimeNanos += System.nanoTime() - startTime;
+    }
+
+    /**
+     * Writes pending keystrokes and closes the current session, if any.
+     */
+    public void endSession() {
+        if (0 == mSessionStartTime) return;
+        drain();
+        closeFile();
+        if (mKeystrokeCount > 0) {
+            Log.i(TAG, "Logged " + mKeystrokeCount + " keystrokes in " + mByteCount + " bytes ("
+                    + ((float)mByteCount / mKeystrokeCount) + " bytes per keystroke), "
+                    + (mWriteTimeNanos / 1000) + "us spent writing, "
+                    + mRecorder.getDroppedCount() + " keystrokes dropped so far");
+        }
+        mSessionStartTime = 0;
+    }
+
+    private void writeBatch() throws IOException {
+        mBuffer.clear();
+        if (null == mChannel) {
+            openFile();
+            KeystrokeLogFormat.writeHeader(mBuffer, mSessionStartTime);
+        }
+        mPreviousDownTime = KeystrokeLogFormat.writeBlock(mBuffer, mBatch, mPreviousDownTime);
+        mBuffer.flip();
+        final int size = mBuffer.remaining();
+        while (mBuffer.hasRemaining()) {
+            mChannel.write(mBuffer);
+        }
+        mFileSize += size;
+        mByteCount += size;
+        mKeystrokeCount += mBatch.size();
+        if (mFileSize >= mMaxFileSize) {
+            closeFile();
+            deleteExpiredFiles(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Ends the current session, if any, and deletes all the log files. Keystrokes recorded
+     * since the last drain are dropped rather than written.
+     */
+    public void deleteAllFiles() {
+        while (mRecorder.drainTo(mBatch) > 0) {
+            // Drop keystrokes that were not written yet.
+        }
+        endSession();
+        for (final File file : KeystrokeLogReader.listLogFiles(mDirectory)) {
+            deleteFile(file);
+        }
+    }
+
+    // Deletes the files that are too old, then the oldest files while they take too much space.
+    // This must not be called while a file is open.
+    private void deleteExpiredFiles(final long now) {
+        final File[] files = KeystrokeLogReader.listLogFiles(mDirectory);
+        long totalSize = 0;
+        for (final File file : files) {
+            totalSize += file.length();
+        }
+        for (final File file : files) {
+            if (totalSize <= mMaxTotalSize && now - file.lastModified() <= mMaxAgeMillis) {
+                continue;
+            }
+            final long size = file.length();
+            if (deleteFile(file)) {
+                totalSize -= size;
+            }
+        }
+    }
+
+    private static boolean deleteFile(final File file) {
+        if (file.delete()) {
+            return true;
+        }
+        Log.e(TAG, "Could not delete " + file);
+        return false;
+    }
+
+    private void openFile() throws IOException {
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            throw new IOException("Can't create " + mDirectory);
+        }
+        final File file = new File(mDirectory, KeystrokeLogFormat.FILE_PREFIX + mSessionStartTime
+                + "-" + mFileIndex + KeystrokeLogFormat.FILE_SUFFIX);
+        ++mFileIndex;
+        mChannel = new FileOutputStream(file, true /* append */).getChannel();
+        mFileSize = 0;
+        mPreviousDownTime = 0;
+    }
+
+    private void closeFile() {
+        if (null == mChannel) return;
+        try {
+            mChannel.close();
+        } catch (final IOException e) {
+            Log.e(TAG, "Could not close keystroke log", e);
+        }
+        mChannel = null;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package typeofmood.ime.latin.typingdynamics;
+
+import android.content.Context;
+import android.view.inputmethod.EditorInfo;
+
+import typeofmood.ime.compat.EditorInfoCompatUtils;
+import typeofmood.ime.keyboard.PointerTracker;
+import typeofmood.ime.latin.utils.ExecutorUtils;
+import typeofmood.ime.latin.utils.InputTypeUtils;
+
+import java.io.File;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persists the keystrokes recorded by {@link PointerTracker} while the input view is shown.
+ *
+ * Logging is off unless the user turned it on in the settings, and it never covers password
+ * fields or fields that ask for no personalized learning. Turning it off deletes the logs.
+ *
+ * One session spans from {@link #onStartInputView(EditorInfo)} to {@link #onFinishInputView()}.
+ * Keystrokes are written on the keyboard background executor every few seconds, and when the
+ * session ends, so that the input path never waits for the disk. Logs are kept for a week at
+ * most and take a bounded amount of space, the oldest ones being deleted first.
+ */
+public final class KeystrokeLogger {
+    private static final String LOG_DIRECTORY_NAME = "keystrokes";
+    private static final long DRAIN_INTERVAL_SECONDS = 5;
+    private static final long MAX_FILE_SIZE = 256 * 1024;
+    private static final long MAX_TOTAL_SIZE = 2 * 1024 * 1024;
+    private static final long MAX_AGE_MILLIS = TimeUnit.DAYS.toMillis(7);
+
+    private final KeystrokeLogWriter mWriter;
+    // Only accessed on the UI thread.
+    private boolean mIsEnabled;
+    private boolean mHasDeletedLogs;
+    private ScheduledFuture<?> mDrainFuture;
+
+    public KeystrokeLogger(final Context context) {
+        mWriter = new KeystrokeLogWriter(getLogDirectory(context),
+                PointerTracker.getKeystrokeRecorder(), MAX_FILE_SIZE, MAX_TOTAL_SIZE,
+                MAX_AGE_MILLIS);
+    }
+
+    public static File getLogDirectory(final Context context) {
+        return new File(context.getFilesDir(), LOG_DIRECTORY_NAME);
+    }
+
+    /**
+     * Turns logging on or off. Turning it off ends the current session, closing its file without
+     * writing the pending keystrokes, and deletes the logs. This is called as soon as the setting
+     * changes.
+     */
+    public void setEnabled(final boolean enabled) {
+        if (enabled) {
+            mIsEnabled = true;
+            mHasDeletedLogs = false;
+            return;
+        }
+        mIsEnabled = false;
+        if (mHasDeletedLogs) return;
+        mHasDeletedLogs = true;
+        cancelDrain();
+        ExecutorUtils.getBackgroundExecutor(ExecutorUtils.KEYBOARD).execute(new Runnable() {
+            @Override
+            public void run() {
+                mWriter.deleteAllFiles();
+            }
+        });
+    }
+
+    public void onStartInputView(final EditorInfo editorInfo) {
+        if (!mIsEnabled || !isLoggingAllowed(editorInfo)) {
+            // Keystrokes recorded in the meantime are skipped when the next session starts.
+            onFinishInputView();
+            return;
+        }
+        cancelDrain();
+        final long sessionStartTime = System.currentTimeMillis();
+        ExecutorUtils.getBackgroundExecutor(ExecutorUtils.KEYBOARD).execute(new Runnable() {
+            @Override
+            public void run() {
+                mWriter.startSession(sessionStartTime);
+            }
+        });
+        mDrainFuture = ExecutorUtils.getBackgroundExecutor(ExecutorUtils.KEYBOARD)
+                .scheduleWithFixedDelay(new Runnable() {
+                    @Override
+                    public void run() {
+                        mWriter.drain();
+                    }
+                }, DRAIN_INTERVAL_SECONDS, DRAIN_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public void onFinishInputView() {
+        cancelDrain();
+        ExecutorUtils.getBackgroundExecutor(ExecutorUtils.KEYBOARD).execute(new Runnable() {
+            @Override
+            public void run() {
+                mWriter.endSession();
+            }
+        });
+    }
+
+    private static boolean isLoggingAllowed(final EditorInfo editorInfo) {
+        if (null == editorInfo) return false;
+        return !InputTypeUtils.isPasswordInputType(editorInfo.inputType)
+                && !InputTypeUtils.isVisiblePasswordInputType(editorInfo.inputType)
+                && !EditorInfoCompatUtils.hasFlagNoPersonalizedLearning(editorInfo.imeOptions);
+    }
+
+    private void cancelDrain() {
+        if (null != mDrainFuture) {
+            mDrainFuture.cancel(false /* mayInterruptIfRunning */);
+            mDrainFuture = null;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package typeofmood.ime.latin.typingdynamics;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size histogram of non-negative latencies in milliseconds, for approximate percentiles.
+ *
+ * Values below {@link #EXACT_LIMIT} have their own bucket. Above that, each power of two is split
+ * into {@link #SUB_BUCKET_COUNT} buckets, so the relative error stays under 1/32. Values over
+ * about 17 minutes all go to the last bucket.
+ */
+public final class LatencySketch {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int EXACT_LIMIT = SUB_BUCKET_COUNT * 2;
+    // log2(EXACT_LIMIT)
+    private static final int FIRST_EXPONENT = SUB_BUCKET_BITS + 1;
+    private static final int LAST_EXPONENT = 19;
+    private static final int BUCKET_COUNT =
+            EXACT_LIMIT + (LAST_EXPONENT - FIRST_EXPONENT + 1) * SUB_BUCKET_COUNT;
+
+    private final int[] mCounts = new int[BUCKET_COUNT];
+    private int mTotalCount;
+
+    private static int getBucketIndex(final long value) {
+        if (value < EXACT_LIMIT) {
+            return value < 0 ? 0 : (int)value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > LAST_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        final int subBucket = (int)(value >> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return EXACT_LIMIT + (exponent - FIRST_EXPONENT) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    // The middle of the range of values that go to this bucket.
+    private static long getBucketValue(final int index) {
+        if (index < EXACT_LIMIT) {
+            return index;
+        }
+        final int exponent = FIRST_EXPONENT + (index - EXACT_LIMIT) / SUB_BUCKET_COUNT;
+        final int subBucket = (index - EXACT_LIMIT) % SUB_BUCKET_COUNT;
+        final long bucketWidth = 1L << (exponent - SUB_BUCKET_BITS);
+        return (1L << exponent) + subBucket * bucketWidth + bucketWidth / 2;
+    }
+
+    public void add(final long value) {
+        ++mCounts[getBucketIndex(value)];
+        ++mTotalCount;
+    }
+
+    public int getCount() {
+        return mTotalCount;
+    }
+
+    /**
+     * @param fraction the percentile, between 0 and 1.
+     * @return the approximate value at this percentile, or -1 if nothing was added.
+     */
+    public long getPercentile(final float fraction) {
+        if (0 == mTotalCount) {
+            return -1;
+        }
+        final long rank = Math.max(1, (long)Math.ceil(fraction * mTotalCount));
+        long cumulativeCount = 0;
+        for (int i = 0; i < BUCKET_COUNT; ++i) {
+            cumulativeCount += mCounts[i];
+            if (cumulativeCount >= rank) {
+                return getBucketValue(i);
+            }
+        }
+        return getBucketValue(BUCKET_COUNT - 1);
+    }
+
+    public void reset() {
+        Arrays.fill(mCounts, 0);
+        mTotalCount = 0;
+    }
+}
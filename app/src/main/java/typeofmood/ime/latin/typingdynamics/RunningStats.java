@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package typeofmood.ime.latin.typingdynamics;
+
+/**
+ * Count, mean, standard deviation, min and max of a stream of values, in constant memory.
+ *
+ * The mean and variance are updated with Welford's method, which stays accurate over long streams.
+ */
+public final class RunningStats {
+    private long mCount;
+    private double mMean;
+    private double mSumOfSquaredDeviations;
+    private long mMin;
+    private long mMax;
+
+    public void add(final long value) {
+        if (0 == mCount) {
+            mMin = value;
+            mMax = value;
+        } else {
+            mMin = Math.min(mMin, value);
+            mMax = Math.max(mMax, value);
+        }
+        ++mCount;
+        final double delta = value - mMean;
+        mMean += delta / mCount;
+        mSumOfSquaredDeviations += delta * (value - mMean);
+    }
+
+    public long getCount() {
+        return mCount;
+    }
+
+    public double getMean() {
+        return mMean;
+    }
+
+    public double getStandardDeviation() {
+        return mCount < 2 ? 0.0 : Math.sqrt(mSumOfSquaredDeviations / (mCount - 1));
+    }
+
+    public long getMin() {
+        return mMin;
+    }
+
+    public long getMax() {
+        return mMax;
+    }
+
+    public void reset() {
+        mCount = 0;
+        mMean = 0.0;
+        mSumOfSquaredDeviations = 0.0;
+        mMin = 0;
+        mMax = 0;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package typeofmood.ime.latin.typingdynamics;
+
+import typeofmood.ime.keyboard.internal.KeystrokeRecorder;
+
+/**
+ * Maintains typing rhythm features of the current session as keystrokes and editing events come
+ * in, in constant memory, so that they never need to be computed again from the raw keystrokes.
+ *
+ * Events are fed on the UI thread through {@link typeofmood.ime.latin.utils.StatsUtils}.
+ * {@link #getSnapshot()} may be called from any thread.
+ */
+public final class TypingRhythmAggregator {
+    // Gaps longer than this are pauses rather than part of the typing rhythm.
+    private static final long PAUSE_THRESHOLD_MS = 2000;
+
+    private static final TypingRhythmAggregator sInstance = new TypingRhythmAggregator();
+
+    private final RunningStats mHoldTimes = new RunningStats();
+    private final RunningStats mFlightTimes = new RunningStats();
+    private final LatencySketch mInterKeyLatencies = new LatencySketch();
+    private final RunningStats mBurstLengths = new RunningStats();
+    private long mKeystrokeCount;
+    private long mLastDownTime;
+    private long mLastUpTime;
+    private int mPauseCount;
+    private int mBackspaceCount;
+    private int mDeletedCharCount;
+    private int mRevertedAutoCorrectionCount;
+    private int mCurrentBurstLength;
+
+    public static TypingRhythmAggregator getInstance() {
+        return sInstance;
+    }
+
+    private TypingRhythmAggregator() {
+        // This class is a singleton.
+    }
+
+    public synchronized void startSession() {
+        mHoldTimes.reset();
+        mFlightTimes.reset();
+        mInterKeyLatencies.reset();
+        mBurstLengths.reset();
+        mKeystrokeCount = 0;
+        mPauseCount = 0;
+        mBackspaceCount = 0;
+        mDeletedCharCount = 0;
+        mRevertedAutoCorrectionCount = 0;
+        mCurrentBurstLength = 0;
+    }
+
+    /**
+     * Adds a keystroke.
+     * @param keyClass the class of the key, as of KeystrokeRecorder#KEY_CLASS_*.
+     * @param downTime the time the key was pressed.
+     * @param upTime the time the key was released.
+     * @param isInFastTyping whether the key was pressed in fast typing.
+     */
+    public synchronized void onKeystroke(final int keyClass, final long downTime,
+            final long upTime, final boolean isInFastTyping) {
+        if (KeystrokeRecorder.KEY_CLASS_MODIFIER == keyClass) {
+            // Modifier keys don't produce text and are often held while typing.
+            return;
+        }
+        mHoldTimes.add(upTime - downTime);
+        if (mKeystrokeCount > 0) {
+            final long latency = downTime - mLastDownTime;
+            if (latency > PAUSE_THRESHOLD_MS) {
+                ++mPauseCount;
+            } else {
+                mInterKeyLatencies.add(latency);
+                mFlightTimes.add(downTime - mLastUpTime);
+            }
+        }
+        if (isInFastTyping) {
+            // The keystroke that started the burst was not itself in fast typing.
+            mCurrentBurstLength = 0 == mCurrentBurstLength ? 2 : mCurrentBurstLength + 1;
+        } else {
+            endBurst();
+        }
+        ++mKeystrokeCount;
+        mLastDownTime = downTime;
+        mLastUpTime = upTime;
+    }
+
+    private void endBurst() {
+        if (mCurrentBurstLength > 0) {
+            mBurstLengths.add(mCurrentBurstLength);
+            mCurrentBurstLength = 0;
+        }
+    }
+
+    public synchronized void onBackspace(final int deletedCharCount) {
+        ++mBackspaceCount;
+        mDeletedCharCount += deletedCharCount;
+    }
+
+    public synchronized void onRevertAutoCorrect() {
+        ++mRevertedAutoCorrectionCount;
+    }
+
+    public synchronized TypingRhythmSnapshot getSnapshot() {
+        // Count the ongoing burst without ending it.
+        final long burstCount = mBurstLengths.getCount() + (mCurrentBurstLength > 0 ? 1 : 0);
+        final double burstLengthMean = 0 == burstCount ? 0.0
+                : (mBurstLengths.getMean() * mBurstLengths.getCount() + mCurrentBurstLength)
+                        / burstCount;
+        final long maxBurstLength = Math.max(mBurstLengths.getMax(), mCurrentBurstLength);
+        return new TypingRhythmSnapshot(mKeystrokeCount, mHoldTimes.getMean(),
+                mHoldTimes.getStandardDeviation(), mFlightTimes.getMean(),
+                mFlightTimes.getStandardDeviation(), mInterKeyLatencies.getPercentile(0.5f),
+                mInterKeyLatencies.getPercentile(0.9f), mInterKeyLatencies.getPercentile(0.99f),
+                mPauseCount, mBackspaceCount, mDeletedCharCount, mRevertedAutoCorrectionCount,
+                (int)burstCount, (int)maxBurstLength, burstLengthMean);
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package typeofmood.ime.latin.typingdynamics;
+
+/**
+ * The typing rhythm features of a session at some point in time. Times are in milliseconds.
+ *
+ * Instances of this class are immutable.
+ */
+public final class TypingRhythmSnapshot {
+    public final long mKeystrokeCount;
+    public final double mHoldTimeMean;
+    public final double mHoldTimeStandardDeviation;
+    // Time between releasing a key and pressing the next one. May be negative with overlapping
+    // key presses.
+    public final double mFlightTimeMean;
+    public final double mFlightTimeStandardDeviation;
+    // Time between pressing a key and pressing the next one, -1 when unknown.
+    public final long mInterKeyLatencyMedian;
+    public final long mInterKeyLatency90thPercentile;
+    public final long mInterKeyLatency99thPercentile;
+    // Number of times the user stopped typing for long enough for the gap not to count in the
+    // flight time and latency statistics.
+    public final int mPauseCount;
+    public final int mBackspaceCount;
+    public final int mDeletedCharCount;
+    public final int mRevertedAutoCorrectionCount;
+    // Bursts are runs of keystrokes in fast typing, as of TypingTimeRecorder#isInFastTyping.
+    public final int mBurstCount;
+    public final int mMaxBurstLength;
+    public final double mBurstLengthMean;
+
+    public TypingRhythmSnapshot(final long keystrokeCount, final double holdTimeMean,
+            final double holdTimeStandardDeviation, final double flightTimeMean,
+            final double flightTimeStandardDeviation, final long interKeyLatencyMedian,
+            final long interKeyLatency90thPercentile, final long interKeyLatency99thPercentile,
+            final int pauseCount, final int backspaceCount, final int deletedCharCount,
+            final int revertedAutoCorrectionCount, final int burstCount,
+            final int maxBurstLength, final double burstLengthMean) {
+        mKeystrokeCount = keystrokeCount;
+        mHoldTimeMean = holdTimeMean;
+        mHoldTimeStandardDeviation = holdTimeStandardDeviation;
+        mFlightTimeMean = flightTimeMean;
+        mFlightTimeStandardDeviation = flightTimeStandardDeviation;
+        mInterKeyLatencyMedian = interKeyLatencyMedian;
+        mInterKeyLatency90thPercentile = interKeyLatency90thPercentile;
+        mInterKeyLatency99thPercentile = interKeyLatency99thPercentile;
+        mPauseCount = pauseCount;
+        mBackspaceCount = backspaceCount;
+        mDeletedCharCount = deletedCharCount;
+        mRevertedAutoCorrectionCount = revertedAutoCorrectionCount;
+        mBurstCount = burstCount;
+        mMaxBurstLength = maxBurstLength;
+        mBurstLengthMean = burstLengthMean;
+    }
+
+    /**
+     * @return the number of backspaces per keystroke.
+     */
+    public float getBackspaceRate() {
+        return 0 == mKeystrokeCount ? 0.0f : (float)mBackspaceCount / mKeystrokeCount;
+    }
+
+    @Override
+    public String toString() {
+        return "TypingRhythmSnapshot{keystrokes=" + mKeystrokeCount
+                + " hold=" + mHoldTimeMean + "+-" + mHoldTimeStandardDeviation
+                + " flight=" + mFlightTimeMean + "+-" + mFlightTimeStandardDeviation
+                + " latency p50/p90/p99=" + mInterKeyLatencyMedian + "/"
+                + mInterKeyLatency90thPercentile + "/" + mInterKeyLatency99thPercentile
+                + " pauses=" + mPauseCount + " backspaces=" + mBackspaceCount
+                + " deleted=" + mDeletedCharCount + " reverts=" + mRevertedAutoCorrectionCount
+                + " bursts=" + mBurstCount + " maxBurst=" + mMaxBurstLength
+                + " meanBurst=" + mBurstLengthMean + "}";
+    }
+}
@@ -328,6 +328,74 @@ public final class CapsModeUtils {
         return (START == state || LETTER == state) ? noCaps : caps;
     }
 
+    /**
+     * The number of chars at the end of the text that {@link #getCapsModeAtEndOfText} copies.
+     * Enough for getCapsMode to reach a decision in all but contrived cases.
+     */
+    private static final int TAIL_LENGTH = 64;
+
+    /**
+     * The end of a text, remembering whether its first char was looked at.
+     */
+    private static final class TextTail implements CharSequence {
+        private final String mText;
+        public boolean mHasReadFirstChar = false;
+
+        public TextTail(final String text) {
+            mText = text;
+        }
+
+        @Override
+        public int length() {
+            return mText.length();
+        }
+
+        @Override
+        public char charAt(final int index) {
+            if (0 == index) {
+                mHasReadFirstChar = true;
+            }
+            return mText.charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(final int start, final int end) {
+            if (0 == start) {
+                mHasReadFirstChar = true;
+            }
+            return mText.subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return mText;
+        }
+    }
+
+    /**
+     * Same as {@link #getCapsMode}, but only copies the end of the text instead of all of it.
+     *
+     * getCapsMode only looks back from the end of the text until it can decide, which is seldom
+     * further than the previous word. If it does reach the start of the copied part, the answer
+     * may depend on what comes before, so it is computed again on the whole text.
+     *
+     * @param text The text that should be checked for caps modes. It is not kept.
+     */
+    public static int getCapsModeAtEndOfText(final CharSequence text, final int reqModes,
+            final SpacingAndPunctuations spacingAndPunctuations, final boolean hasSpaceBefore) {
+        final int length = text.length();
+        if (length > TAIL_LENGTH) {
+            final TextTail tail =
+                    new TextTail(text.subSequence(length - TAIL_LENGTH, length).toString());
+            final int capsMode = getCapsMode(tail, reqModes, spacingAndPunctuations,
+                    hasSpaceBefore);
+            if (!tail.mHasReadFirstChar) {
+                return capsMode;
+            }
+        }
+        return getCapsMode(text.toString(), reqModes, spacingAndPunctuations, hasSpaceBefore);
+    }
+
     /**
      * Convert capitalize mode flags into human readable text.
      *
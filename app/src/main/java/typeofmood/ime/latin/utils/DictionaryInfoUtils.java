@@ -288,7 +288,8 @@ public class DictionaryInfoUtils {
         return stagingDirectory + File.separator + fileName;
     }
 
-    public static void moveStagingFilesIfExists(Context context) {
+    // Both the keyboard and the merging of word lists move the staging files.
+    public static synchronized void moveStagingFilesIfExists(Context context) {
         final File[] stagingFiles = DictionaryInfoUtils.getStagingDirectoryList(context);
         if (stagingFiles != null && stagingFiles.length > 0) {
             for (final File stagingFile : stagingFiles) {
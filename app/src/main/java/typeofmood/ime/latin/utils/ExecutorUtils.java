@@ -35,24 +35,39 @@ public class ExecutorUtils {
 
     public static final String KEYBOARD = "Keyboard";
     public static final String SPELLING = "Spelling";
+    public static final String DICTIONARY_MERGING = "DictionaryMerging";
+    public static final String DICTIONARY_PRELOADING = "DictionaryPreloading";
 
     private static ScheduledExecutorService sKeyboardExecutorService = newExecutorService(KEYBOARD);
     private static ScheduledExecutorService sSpellingExecutorService = newExecutorService(SPELLING);
+    private static ScheduledExecutorService sDictionaryMergingExecutorService =
+            newExecutorService(DICTIONARY_MERGING);
+    // Preloading is speculative, so it runs at a low priority not to slow down anything else.
+    private static ScheduledExecutorService sDictionaryPreloadingExecutorService =
+            newExecutorService(DICTIONARY_PRELOADING, Thread.MIN_PRIORITY);
 
     private static ScheduledExecutorService newExecutorService(final String name) {
-        return Executors.newSingleThreadScheduledExecutor(new ExecutorFactory(name));
+        return newExecutorService(name, Thread.NORM_PRIORITY);
+    }
+
+    private static ScheduledExecutorService newExecutorService(final String name,
+            final int priority) {
+        return Executors.newSingleThreadScheduledExecutor(new ExecutorFactory(name, priority));
     }
 
     private static class ExecutorFactory implements ThreadFactory {
         private final String mName;
+        private final int mPriority;
 
-        private ExecutorFactory(final String name) {
+        private ExecutorFactory(final String name, final int priority) {
             mName = name;
+            mPriority = priority;
         }
 
         @Override
         public Thread newThread(final Runnable runnable) {
             Thread thread = new Thread(runnable, TAG);
+            thread.setPriority(mPriority);
             thread.setUncaughtExceptionHandler(new UncaughtExceptionHandler() {
                 @Override
                 public void uncaughtException(Thread thread, Throwable ex) {
@@ -89,6 +104,10 @@ public class ExecutorUtils {
                 return sKeyboardExecutorService;
             case SPELLING:
                 return sSpellingExecutorService;
+            case DICTIONARY_MERGING:
+                return sDictionaryMergingExecutorService;
+            case DICTIONARY_PRELOADING:
+                return sDictionaryPreloadingExecutorService;
             default:
                 throw new IllegalArgumentException("Invalid executor: " + name);
         }
@@ -113,6 +132,13 @@ public class ExecutorUtils {
             case SPELLING:
                 sSpellingExecutorService = newExecutorService(SPELLING);
                 break;
+            case DICTIONARY_MERGING:
+                sDictionaryMergingExecutorService = newExecutorService(DICTIONARY_MERGING);
+                break;
+            case DICTIONARY_PRELOADING:
+                sDictionaryPreloadingExecutorService =
+                        newExecutorService(DICTIONARY_PRELOADING, Thread.MIN_PRIORITY);
+                break;
             default:
                 throw new IllegalArgumentException("Invalid executor: " + name);
         }
@@ -22,7 +22,6 @@ import typeofmood.ime.latin.define.DecoderSpecificConstants;
 import typeofmood.ime.latin.settings.SpacingAndPunctuations;
 
 import java.util.Arrays;
-import java.util.regex.Pattern;
 
 import javax.annotation.Nonnull;
 
@@ -31,8 +30,6 @@ public final class NgramContextUtils {
         // Intentional empty constructor for utility class.
     }
 
-    private static final Pattern NEWLINE_REGEX = Pattern.compile("[\\r\\n]+");
-    private static final Pattern SPACE_REGEX = Pattern.compile("\\s+");
     // Get context information from nth word before the cursor. n = 1 retrieves the words
     // immediately before the cursor, n = 2 retrieves the words before that, and so on. This splits
     // on whitespace only.
@@ -55,25 +52,41 @@ public final class NgramContextUtils {
     // (n = 2) "abc|" -> beginning-of-sentence
     // (n = 2) "abc |" -> beginning-of-sentence
     // (n = 2) "abc. def|" -> beginning-of-sentence
+    // The text is scanned backward from the cursor and only the words needed are looked at, so
+    // this does not depend on the length of the text. It behaves as if the last line were split
+    // on whitespace, ignoring newlines at the end of the text.
     @Nonnull
     public static NgramContext getNgramContextFromNthPreviousWord(final CharSequence prev,
             final SpacingAndPunctuations spacingAndPunctuations, final int n) {
         if (prev == null) return NgramContext.EMPTY_PREV_WORDS_INFO;
-        final String[] lines = NEWLINE_REGEX.split(prev);
-        if (lines.length == 0) {
+        int lineEnd = prev.length();
+        while (lineEnd > 0 && isNewline(prev.charAt(lineEnd - 1))) {
+            --lineEnd;
+        }
+        if (lineEnd == 0 && prev.length() > 0) {
             return new NgramContext(WordInfo.BEGINNING_OF_SENTENCE_WORD_INFO);
         }
-        final String[] w = SPACE_REGEX.split(lines[lines.length - 1]);
+        int lineStart = lineEnd;
+        while (lineStart > 0 && !isNewline(prev.charAt(lineStart - 1))) {
+            --lineStart;
+        }
         final WordInfo[] prevWordsInfo =
                 new WordInfo[DecoderSpecificConstants.MAX_PREV_WORD_COUNT_FOR_N_GRAM];
         Arrays.fill(prevWordsInfo, WordInfo.EMPTY_WORD_INFO);
+        // Find the words we may look at, from the last one. wordBounds[2 * k] and
+        // wordBounds[2 * k + 1] are the start and end of the kth word from the end of the line.
+        final int maxWordCount = n + prevWordsInfo.length - 1;
+        final int[] wordBounds = new int[maxWordCount * 2];
+        final int wordCount = findLastWords(prev, lineStart, lineEnd, wordBounds, maxWordCount);
         for (int i = 0; i < prevWordsInfo.length; i++) {
-            final int focusedWordIndex = w.length - n - i;
+            // Index of the focused word from the end of the line.
+            final int focusedWordIndex = n - 1 + i;
             // Referring to the word after the focused word.
-            if ((focusedWordIndex + 1) >= 0 && (focusedWordIndex + 1) < w.length) {
-                final String wordFollowingTheNthPrevWord = w[focusedWordIndex + 1];
-                if (!wordFollowingTheNthPrevWord.isEmpty()) {
-                    final char firstChar = wordFollowingTheNthPrevWord.charAt(0);
+            final int followingWordIndex = focusedWordIndex - 1;
+            if (followingWordIndex >= 0 && followingWordIndex < wordCount) {
+                final int wordStart = wordBounds[followingWordIndex * 2];
+                if (wordStart < wordBounds[followingWordIndex * 2 + 1]) {
+                    final char firstChar = prev.charAt(wordStart);
                     if (spacingAndPunctuations.isWordConnector(firstChar)) {
                         // The word following the focused word is starting with a word connector.
                         // TODO: Return meaningful context for this case.
@@ -82,20 +95,20 @@ public final class NgramContextUtils {
                 }
             }
             // If we can't find (n + i) words, the context is beginning-of-sentence.
-            if (focusedWordIndex < 0) {
+            if (focusedWordIndex >= wordCount) {
                 prevWordsInfo[i] = WordInfo.BEGINNING_OF_SENTENCE_WORD_INFO;
                 break;
             }
 
-            final String focusedWord = w[focusedWordIndex];
+            final int wordStart = wordBounds[focusedWordIndex * 2];
+            final int wordEnd = wordBounds[focusedWordIndex * 2 + 1];
             // If the word is empty, the context is beginning-of-sentence.
-            final int length = focusedWord.length();
-            if (length <= 0) {
+            if (wordEnd <= wordStart) {
                 prevWordsInfo[i] = WordInfo.BEGINNING_OF_SENTENCE_WORD_INFO;
                 break;
             }
             // If the word ends in a sentence terminator, the context is beginning-of-sentence.
-            final char lastChar = focusedWord.charAt(length - 1);
+            final char lastChar = prev.charAt(wordEnd - 1);
             if (spacingAndPunctuations.isSentenceTerminator(lastChar)) {
                 prevWordsInfo[i] = WordInfo.BEGINNING_OF_SENTENCE_WORD_INFO;
                 break;
@@ -106,8 +119,58 @@ public final class NgramContextUtils {
                     || spacingAndPunctuations.isWordConnector(lastChar)) {
                 break;
             }
-            prevWordsInfo[i] = new WordInfo(focusedWord);
+            prevWordsInfo[i] = new WordInfo(prev.subSequence(wordStart, wordEnd).toString());
         }
         return new NgramContext(prevWordsInfo);
     }
+
+    /**
+     * Finds the last words of a line, words being separated by whitespace. Like splitting the
+     * line on whitespace, whitespace at the start of a line that has words makes an empty first
+     * word, and an empty line has one empty word.
+     *
+     * @return the number of words found, at most maxWordCount.
+     */
+    private static int findLastWords(final CharSequence text, final int lineStart,
+            final int lineEnd, final int[] outWordBounds, final int maxWordCount) {
+        if (lineStart == lineEnd) {
+            outWordBounds[0] = lineStart;
+            outWordBounds[1] = lineStart;
+            return 1;
+        }
+        int wordCount = 0;
+        int index = lineEnd;
+        while (wordCount < maxWordCount) {
+            int wordEnd = index;
+            while (wordEnd > lineStart && isWhitespace(text.charAt(wordEnd - 1))) {
+                --wordEnd;
+            }
+            if (wordEnd == lineStart) {
+                if (wordEnd < index && wordCount > 0) {
+                    outWordBounds[wordCount * 2] = lineStart;
+                    outWordBounds[wordCount * 2 + 1] = lineStart;
+                    ++wordCount;
+                }
+                break;
+            }
+            int wordStart = wordEnd;
+            while (wordStart > lineStart && !isWhitespace(text.charAt(wordStart - 1))) {
+                --wordStart;
+            }
+            outWordBounds[wordCount * 2] = wordStart;
+            outWordBounds[wordCount * 2 + 1] = wordEnd;
+            ++wordCount;
+            index = wordStart;
+        }
+        return wordCount;
+    }
+
+    private static boolean isNewline(final char c) {
+        return c == '\r' || c == '\n';
+    }
+
+    // Same as \s in regular expressions.
+    private static boolean isWhitespace(final char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
 }
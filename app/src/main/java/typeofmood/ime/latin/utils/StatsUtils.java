@@ -22,6 +22,7 @@ import typeofmood.ime.latin.DictionaryFacilitator;
 import typeofmood.ime.latin.RichInputMethodManager;
 import typeofmood.ime.latin.SuggestedWords;
 import typeofmood.ime.latin.settings.SettingsValues;
+import typeofmood.ime.latin.typingdynamics.TypingRhythmAggregator;
 
 @SuppressWarnings("unused")
 public final class StatsUtils {
@@ -40,18 +41,22 @@ public final class StatsUtils {
     }
 
     public static void onBackspaceWordDelete(int wordLength) {
+        TypingRhythmAggregator.getInstance().onBackspace(wordLength);
     }
 
     public static void onBackspacePressed(int lengthToDelete) {
+        TypingRhythmAggregator.getInstance().onBackspace(lengthToDelete);
     }
 
     public static void onBackspaceSelectedText(int selectedTextLength) {
+        TypingRhythmAggregator.getInstance().onBackspace(selectedTextLength);
     }
 
     public static void onDeleteMultiCharInput(int multiCharLength) {
     }
 
     public static void onRevertAutoCorrect() {
+        TypingRhythmAggregator.getInstance().onRevertAutoCorrect();
     }
 
     public static void onRevertDoubleSpacePeriod() {
@@ -67,6 +72,15 @@ public final class StatsUtils {
     }
 
     public static void onStartInputView(int inputType, int displayOrientation, boolean restarting) {
+        if (!restarting) {
+            TypingRhythmAggregator.getInstance().startSession();
+        }
+    }
+
+    public static void onKeystroke(final int keyClass, final long downTime, final long upTime,
+            final boolean isInFastTyping) {
+        TypingRhythmAggregator.getInstance().onKeystroke(keyClass, downTime, upTime,
+                isInFastTyping);
     }
 
     public static void onAutoCorrection(final String typedWord, final String autoCorrectionWord,
@@ -18,9 +18,11 @@
 package typeofmood.ime.latin.utils;
 
 import android.content.Context;
+import android.view.inputmethod.EditorInfo;
 
 import typeofmood.ime.latin.DictionaryFacilitator;
 import typeofmood.ime.latin.settings.SettingsValues;
+import typeofmood.ime.latin.typingdynamics.KeystrokeLogger;
 
 @SuppressWarnings("unused")
 public class StatsUtilsManager {
@@ -28,6 +30,8 @@ public class StatsUtilsManager {
     private static final StatsUtilsManager sInstance = new StatsUtilsManager();
     private static StatsUtilsManager sTestInstance = null;
 
+    private KeystrokeLogger mKeystrokeLogger;
+
     /**
      * @return the singleton instance of {@link StatsUtilsManager}.
      */
@@ -40,17 +44,31 @@ public class StatsUtilsManager {
     }
 
     public void onCreate(final Context context, final DictionaryFacilitator dictionaryFacilitator) {
+        mKeystrokeLogger = new KeystrokeLogger(context);
     }
 
     public void onLoadSettings(final Context context, final SettingsValues settingsValues) {
+        if (null != mKeystrokeLogger) {
+            mKeystrokeLogger.setEnabled(settingsValues.mLogKeystrokes);
+        }
     }
 
-    public void onStartInputView() {
+    public void onStartInputView(final EditorInfo editorInfo) {
+        if (null != mKeystrokeLogger) {
+            mKeystrokeLogger.onStartInputView(editorInfo);
+        }
     }
 
     public void onFinishInputView() {
+        if (null != mKeystrokeLogger) {
+            mKeystrokeLogger.onFinishInputView();
+        }
     }
 
     public void onDestroy(final Context context) {
+        if (null != mKeystrokeLogger) {
+            mKeystrokeLogger.onFinishInputView();
+            mKeystrokeLogger = null;
+        }
     }
 }
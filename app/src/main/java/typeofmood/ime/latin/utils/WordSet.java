@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package typeofmood.ime.latin.utils;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A set of a few words, to tell duplicate suggestions apart.
+ *
+ * Words are kept in an open-addressed table that is sized for the number of words it is made
+ * for, so that adding them allocates nothing and never rehashes. The table is probed linearly
+ * from the hash code of the word, which strings cache.
+ */
+public final class WordSet {
+    private final String[] mWords;
+    private final int mMask;
+
+    /**
+     * @param capacity the maximum number of words the set holds.
+     */
+    public WordSet(final int capacity) {
+        // At most half full, so that probe sequences stay short.
+        final int tableSize = Integer.highestOneBit(Math.max(capacity, 1) * 2 - 1) * 2;
+        mWords = new String[tableSize];
+        mMask = tableSize - 1;
+    }
+
+    /**
+     * Adds a word to the set, which must not end up holding more words than its capacity.
+     * @return true if the word was added, false if it was in the set already.
+     */
+    public boolean add(@Nonnull final String word) {
+        final int hashCode = word.hashCode();
+        int index = (hashCode ^ (hashCode >>> 16)) & mMask;
+        while (true) {
+            final String wordInSet = mWords[index];
+            if (null == wordInSet) {
+                mWords[index] = word;
+                return true;
+            }
+            if (wordInSet.equals(word)) {
+                return false;
+            }
+            index = (index + 1) & mMask;
+        }
+    }
+}